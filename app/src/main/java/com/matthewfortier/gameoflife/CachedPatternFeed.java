@@ -0,0 +1,182 @@
+package com.matthewfortier.gameoflife;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A PatternFeed that writes everything another feed sends through to a PatternLibrary.
+ *
+ * Pages, changes and opened patterns are stored as they go by, so next time the list can
+ * be filled from the library before the network answers, and a pattern opened once opens
+ * again without downloading its cells. If a page can't be fetched the library's copy of
+ * it is used instead.
+ *
+ * The library is only used from one background thread; callbacks still arrive on the
+ * main thread.
+ */
+public class CachedPatternFeed implements PatternFeed {
+
+    private final PatternFeed mRemote;
+    private final PatternLibrary mLibrary;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    public CachedPatternFeed(PatternFeed remote, PatternLibrary library) {
+        mRemote = remote;
+        mLibrary = library;
+    }
+
+    // The first count shared patterns the library has, for showing before any page arrives
+    public void loadCached(final int count, final PageCallback callback) {
+        background(new Runnable() {
+            @Override
+            public void run() {
+                postPage(mLibrary.list(null, count, true), callback);
+            }
+        });
+    }
+
+    // Patterns in the library, saved ones included, whose titles start with the text
+    public void search(final String text, final int count, final PageCallback callback) {
+        background(new Runnable() {
+            @Override
+            public void run() {
+                postPage(mLibrary.search(text, count), callback);
+            }
+        });
+    }
+
+    @Override
+    public void loadPage(final String afterKey, final int count, final PageCallback callback) {
+        mRemote.loadPage(afterKey, count, new PageCallback() {
+            @Override
+            public void onPage(final List<PatternInfo> page) {
+                callback.onPage(page);
+                background(new Runnable() {
+                    @Override
+                    public void run() {
+                        mLibrary.putPage(afterKey, page, page.size() < count);
+                    }
+                });
+            }
+
+            @Override
+            public void onError(Exception e) {
+                e.printStackTrace();
+                background(new Runnable() {
+                    @Override
+                    public void run() {
+                        postPage(mLibrary.list(afterKey, count, true), callback);
+                    }
+                });
+            }
+        });
+    }
+
+    @Override
+    public void setWatcher(final Watcher watcher) {
+        mRemote.setWatcher(new Watcher() {
+            @Override
+            public void onPatternChanged(final PatternInfo info) {
+                watcher.onPatternChanged(info);
+                background(new Runnable() {
+                    @Override
+                    public void run() {
+                        mLibrary.putInfo(info);
+                    }
+                });
+            }
+
+            @Override
+            public void onPatternRemoved(final String key) {
+                watcher.onPatternRemoved(key);
+                background(new Runnable() {
+                    @Override
+                    public void run() {
+                        mLibrary.removeShared(key);
+                    }
+                });
+            }
+        });
+    }
+
+    @Override
+    public void loadPattern(final String key, final PatternCallback callback) {
+        background(new Runnable() {
+            @Override
+            public void run() {
+                final GamePattern stored = mLibrary.getPattern(key);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (stored != null) callback.onPattern(stored);
+                        else loadRemotePattern(key, callback);
+                    }
+                });
+            }
+        });
+    }
+
+    @Override
+    public String publish(final GamePattern pattern) {
+        final String key = mRemote.publish(pattern);
+        background(new Runnable() {
+            @Override
+            public void run() {
+                mLibrary.putPattern(key, pattern);
+            }
+        });
+        return key;
+    }
+
+    // Stops watching, and closes the library once everything queued for it is written
+    @Override
+    public void close() {
+        mRemote.close();
+        background(new Runnable() {
+            @Override
+            public void run() {
+                mLibrary.close();
+            }
+        });
+        mExecutor.shutdown();
+    }
+
+    private void loadRemotePattern(final String key, final PatternCallback callback) {
+        mRemote.loadPattern(key, new PatternCallback() {
+            @Override
+            public void onPattern(final GamePattern pattern) {
+                callback.onPattern(pattern);
+                background(new Runnable() {
+                    @Override
+                    public void run() {
+                        mLibrary.putPattern(key, pattern);
+                    }
+                });
+            }
+
+            @Override
+            public void onError(Exception e) {
+                callback.onError(e);
+            }
+        });
+    }
+
+    // Runs on the library's thread, unless the feed is closed and the library with it
+    private void background(Runnable task) {
+        if (!mExecutor.isShutdown()) mExecutor.execute(task);
+    }
+
+    private void postPage(final List<PatternInfo> page, final PageCallback callback) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                callback.onPage(page);
+            }
+        });
+    }
+}
@@ -0,0 +1,233 @@
+package com.matthewfortier.gameoflife;
+
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A PatternFeed over the Realtime Database.
+ *
+ * Full records, cells included, stay under the pattern node they have always been in,
+ * and each one has its metadata copied under the info node with the same key. Pages are
+ * orderByKey().startAt(cursor).limitToFirst(n) queries on the info node, so the list
+ * never downloads any cells. Each page query also keeps a ChildEventListener, which is
+ * how later changes to the patterns in it are heard about.
+ *
+ * Records published before the info node existed are given their info by a one-time
+ * pass over the pattern node before the first page is listed. A marker next to the info
+ * node records that the pass is done, so only the first client to list pays for it.
+ * Publishing writes the record and its info in one multi-path update.
+ *
+ * A record still holding its cells as a list of booleans is rewritten in the compact
+ * form the first time it is opened.
+ */
+public class FirebasePatternFeed implements PatternFeed {
+
+    private final DatabaseReference mPatterns;
+    private final DatabaseReference mInfo;
+    private final DatabaseReference mParent;
+    private final DatabaseReference mBackfillMarker;
+    private boolean mBackfilled;
+    private final List<Query> mQueries = new ArrayList<Query>();
+    private final List<ChildEventListener> mListeners = new ArrayList<ChildEventListener>();
+    private Watcher mWatcher;
+
+    // The two nodes must be children of the same parent, so they can be updated together
+    public FirebasePatternFeed(DatabaseReference patterns, DatabaseReference info) {
+        mPatterns = patterns;
+        mInfo = info;
+        mParent = info.getParent();
+        mBackfillMarker = mParent.child(info.getKey() + "_backfilled");
+    }
+
+    @Override
+    public void loadPage(final String afterKey, final int count, final PageCallback callback) {
+        whenBackfilled(new Runnable() {
+            @Override
+            public void run() {
+                queryPage(afterKey, count, callback);
+            }
+        });
+    }
+
+    private void queryPage(final String afterKey, final int count, final PageCallback callback) {
+        Query query = mInfo.orderByKey();
+        // startAt is inclusive, so ask for one more and drop the cursor itself
+        if (afterKey != null) query = query.startAt(afterKey);
+        query = query.limitToFirst(afterKey != null ? count + 1 : count);
+
+        ChildEventListener listener = new ChildEventListener() {
+            @Override
+            public void onChildAdded(DataSnapshot snapshot, String previousKey) {
+                // Also called for everything already in the page, which the watcher ignores
+                if (mWatcher != null && !snapshot.getKey().equals(afterKey))
+                    mWatcher.onPatternChanged(toInfo(snapshot));
+            }
+
+            @Override
+            public void onChildChanged(DataSnapshot snapshot, String previousKey) {
+                if (mWatcher != null) mWatcher.onPatternChanged(toInfo(snapshot));
+            }
+
+            @Override
+            public void onChildRemoved(DataSnapshot snapshot) {
+                if (mWatcher != null) mWatcher.onPatternRemoved(snapshot.getKey());
+            }
+
+            @Override
+            public void onChildMoved(DataSnapshot snapshot, String previousKey) {
+            }
+
+            @Override
+            public void onCancelled(DatabaseError error) {
+            }
+        };
+
+        // The value event comes after the child events for the same data, so the page is complete
+        query.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot snapshot) {
+                List<PatternInfo> page = new ArrayList<PatternInfo>();
+                for (DataSnapshot child : snapshot.getChildren())
+                    if (!child.getKey().equals(afterKey))
+                        page.add(toInfo(child));
+                callback.onPage(page);
+            }
+
+            @Override
+            public void onCancelled(DatabaseError error) {
+                callback.onError(error.toException());
+            }
+        });
+        query.addChildEventListener(listener);
+        mQueries.add(query);
+        mListeners.add(listener);
+    }
+
+    @Override
+    public void setWatcher(Watcher watcher) {
+        mWatcher = watcher;
+    }
+
+    @Override
+    public void loadPattern(final String key, final PatternCallback callback) {
+        mPatterns.child(key).addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot snapshot) {
+                GamePattern pattern = snapshot.getValue(GamePattern.class);
+                if (pattern == null) {
+                    callback.onError(new IllegalStateException("Pattern " + key + " is gone"));
+                    return;
+                }
+
+                if (pattern.hasLegacyData()) {
+                    try {
+                        pattern = pattern.toCompact();
+                        mPatterns.child(key).setValue(pattern);
+                    } catch (IllegalArgumentException e) {
+                        callback.onError(e);
+                        return;
+                    }
+                }
+                callback.onPattern(pattern);
+            }
+
+            @Override
+            public void onCancelled(DatabaseError error) {
+                callback.onError(error.toException());
+            }
+        });
+    }
+
+    @Override
+    public String publish(GamePattern pattern) {
+        String key = mPatterns.push().getKey();
+        // Both or neither, so there is never a record the list can't see
+        Map<String, Object> update = new HashMap<String, Object>();
+        update.put(mPatterns.getKey() + "/" + key, pattern);
+        update.put(mInfo.getKey() + "/" + key, new PatternInfo(key, pattern));
+        mParent.updateChildren(update);
+        return key;
+    }
+
+    @Override
+    public void close() {
+        for (int i = 0; i < mQueries.size(); i++)
+            mQueries.get(i).removeEventListener(mListeners.get(i));
+        mQueries.clear();
+        mListeners.clear();
+    }
+
+    // Runs next once every record has its info, filling in any that are missing first.
+    // If that can't be checked or written, whatever info there is gets listed anyway
+    private void whenBackfilled(final Runnable next) {
+        if (mBackfilled) {
+            next.run();
+            return;
+        }
+        mBackfillMarker.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot snapshot) {
+                if (Boolean.TRUE.equals(snapshot.getValue(Boolean.class))) {
+                    mBackfilled = true;
+                    next.run();
+                } else {
+                    backfill(next);
+                }
+            }
+
+            @Override
+            public void onCancelled(DatabaseError error) {
+                next.run();
+            }
+        });
+    }
+
+    // Writes info for every record, along with the marker, in one update
+    private void backfill(final Runnable next) {
+        mPatterns.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot snapshot) {
+                Map<String, Object> update = new HashMap<String, Object>();
+                for (DataSnapshot child : snapshot.getChildren()) {
+                    GamePattern pattern = child.getValue(GamePattern.class);
+                    if (pattern == null) continue;
+                    try {
+                        // Old records have no size until they are in the compact form
+                        if (pattern.hasLegacyData()) pattern = pattern.toCompact();
+                        update.put(mInfo.getKey() + "/" + child.getKey(), new PatternInfo(child.getKey(), pattern));
+                    } catch (IllegalArgumentException e) {
+                        // A record too damaged to read can't be opened either, so it stays unlisted
+                    }
+                }
+                update.put(mBackfillMarker.getKey(), true);
+                mParent.updateChildren(update, new DatabaseReference.CompletionListener() {
+                    @Override
+                    public void onComplete(DatabaseError error, DatabaseReference ref) {
+                        mBackfilled = error == null;
+                        next.run();
+                    }
+                });
+            }
+
+            @Override
+            public void onCancelled(DatabaseError error) {
+                next.run();
+            }
+        });
+    }
+
+    private static PatternInfo toInfo(DataSnapshot snapshot) {
+        PatternInfo info = snapshot.getValue(PatternInfo.class);
+        info.setKey(snapshot.getKey());
+        return info;
+    }
+}
@@ -0,0 +1,48 @@
+package com.matthewfortier.gameoflife;
+
+import android.view.Choreographer;
+
+/**
+ * Counts the frames the main thread missed, from the gaps between Choreographer callbacks.
+ *
+ * A callback is asked for every vsync while the monitor runs, which keeps the main
+ * thread waking up each frame, so it should only run while someone is watching.
+ */
+public class FrameMonitor implements Choreographer.FrameCallback {
+
+    private final StepMetrics mMetrics;
+    private final long mFrameNanos;
+    private long mLastFrame;
+    private boolean mRunning;
+
+    // refreshRate is the display's, in frames per second
+    public FrameMonitor(StepMetrics metrics, float refreshRate) {
+        mMetrics = metrics;
+        mFrameNanos = (long) (1e9 / (refreshRate > 0 ? refreshRate : 60));
+    }
+
+    public void start() {
+        if (mRunning) return;
+        mRunning = true;
+        mLastFrame = 0;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    public void stop() {
+        if (!mRunning) return;
+        mRunning = false;
+        Choreographer.getInstance().removeFrameCallback(this);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!mRunning) return;
+        if (mLastFrame != 0) {
+            // Rounded, so a little jitter in the vsync times isn't counted
+            long frames = (frameTimeNanos - mLastFrame + mFrameNanos / 2) / mFrameNanos;
+            if (frames > 1) mMetrics.recordDroppedFrames((int) (frames - 1));
+        }
+        mLastFrame = frameTimeNanos;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+}
@@ -3,16 +3,15 @@ package com.matthewfortier.gameoflife;
 import android.annotation.SuppressLint;
 import android.content.DialogInterface;
 import android.content.Intent;
-import android.graphics.Bitmap;
 import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.Trace;
 import android.support.v4.app.Fragment;
+import android.support.v4.content.ContextCompat;
 import android.support.v4.content.FileProvider;
 import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
-import android.support.v7.widget.GridLayoutManager;
-import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.Menu;
 import android.view.MenuInflater;
@@ -21,6 +20,8 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Button;
 import android.widget.EditText;
+import android.widget.SeekBar;
+import android.widget.TextView;
 import android.widget.Toast;
 
 import com.flask.colorpicker.ColorPickerView;
@@ -28,34 +29,116 @@ import com.flask.colorpicker.builder.ColorPickerClickListener;
 import com.flask.colorpicker.builder.ColorPickerDialogBuilder;
 
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-public class LifeFragment extends Fragment implements RecyclerViewAdapter.ItemClickListener {
+public class LifeFragment extends Fragment implements LifeGridView.OnCellClickListener,
+        LifeGridView.OnViewportChangeListener {
 
     private static final String COLOR_ALIVE = "alive";
     private static final String COLOR_DEAD = "dead";
-    private static final String GRID = "data";
+    private static final String GRID = "grid";
     private static final String IMAGE_DIRECTORY = "images";
     private static final String FILENAME = "filename";
-    private static final int ROWS = 20;
-    private static final int COLS = 20;
-    RecyclerView mRecyclerView;
-    RecyclerViewAdapter mAdapter;
-    boolean[][] mData;
-    int mGeneration = 0;
+    private static final String ROWS = "rows";
+    private static final String COLS = "cols";
+    private static final String RULE = "rule";
+    private static final String GENERATION = "generation";
+    private static final String STORE = "store";
+    // Largest side of the window shown onto a board kept in a file
+    private static final int MAX_WINDOW = 1024;
+    // Most generations Jump will step one at a time, on a board HashLife can't run
+    private static final int MAX_STEPPED_JUMP = 10000;
+    // Longest side of saved and shared images, in pixels
+    private static final int THUMBNAIL_SIZE = 1024;
+    private static final long METRICS_REFRESH_MILLIS = 500;
+    private static final double NANOS_PER_MILLI = 1e6;
+    // Paths of the board files screens have open, across every screen in the process
+    private static final Set<String> sOpenStores = Collections.synchronizedSet(new HashSet<String>());
+    LifeGridView mGridView;
+    SimulationScheduler mScheduler;
+    volatile GridSnapshot mSnapshot;
+    GridSize mSize = GridSize.DEFAULT;
+    long mGeneration = 0;
+    // Whether the board is a torus or a window onto an endless plane
+    boolean mWrapping = true;
+    // Size of the board kept in a file, which the grid is a window onto, or 0 without one
+    int mStoreRows;
+    int mStoreCols;
+    // The file the store was opened from, deleted once this screen is done with it
+    String mStorePath;
+    Rule mRule = Rule.CONWAY;
     Button mSpeedButton;
     Button mStartStopButton;
     Button mDeadButton;
     Button mAliveButton;
     Button mCloneButton;
     Button mNextButton;
+    Button mJumpButton;
     Button mClearButton;
+    Button mBackButton;
+    // Scrubs through the generations the engine still remembers
+    SeekBar mHistoryBar;
     int mDeadCellColor = 0;
     int mAliveCellColor = 0;
     int mRefreshInterval = 1000;
+    // Stepping threads; small boards stay on one regardless
+    int mThreads = Runtime.getRuntime().availableProcessors();
     int mCount = 0;
 
+    // Draws and encodes the images for saving and sharing
+    final ThumbnailRenderer mThumbnails = new ThumbnailRenderer();
+
+    // Always recorded, since it is cheap; only shown when the overlay is on
+    final StepMetrics mMetrics = new StepMetrics();
+    // Wakes the main thread every frame, so dropped frames are only counted with the overlay on
+    FrameMonitor mFrameMonitor;
+    TextView mMetricsOverlay;
+    boolean mShowMetrics;
+    final Runnable mUpdateMetrics = new Runnable() {
+        @Override
+        public void run() {
+            if (!isAdded() || !mShowMetrics) return;
+            showMetrics(mMetrics.summarize());
+            mHandler.postDelayed(this, METRICS_REFRESH_MILLIS);
+        }
+    };
+
+    // The board this screen was opened with, released once the screen is gone for good
+    long mGridId = GridRepository.NO_GRID;
+    // This screen's own handle on the last snapshot handed to another screen
+    GridSnapshot mSharedSnapshot;
+    long mSharedId = GridRepository.NO_GRID;
+
+    // Kept between jumps so its memoized results can be reused; only used on the simulation thread
+    HashLife mHashLife;
+
+    // Snapshots arrive on the simulation thread; only the newest one is shown
+    final Handler mHandler = new Handler();
+    final AtomicBoolean mSnapshotPosted = new AtomicBoolean();
+    final Runnable mShowSnapshot = new Runnable() {
+        @Override
+        public void run() {
+            mSnapshotPosted.set(false);
+            if (isAdded()) showSnapshot(mSnapshot);
+        }
+    };
+    final SimulationScheduler.Listener mSnapshotListener = new SimulationScheduler.Listener() {
+        @Override
+        public void onSnapshot(GridSnapshot snapshot) {
+            mSnapshot = snapshot;
+            mGridView.submit(snapshot.getGrid(), snapshot.getChanges(), snapshot.getOriginRow(),
+                    snapshot.getOriginCol());
+            if (mSnapshotPosted.compareAndSet(false, true))
+                mHandler.post(mShowSnapshot);
+        }
+    };
+
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -71,8 +154,17 @@ public class LifeFragment extends Fragment implements RecyclerViewAdapter.ItemCl
         View v = inflater.inflate(R.layout.fragment_life, container, false);
 
         // Get the data and colors if added to the intent
+        BitGrid grid = null;
+        MappedGrid store = null;
+        long generation = 0;
         if (getArguments() != null) {
-            mData = (boolean[][]) getArguments().getSerializable(GRID);
+            generation = getArguments().getLong(GENERATION);
+            mGridId = getArguments().getLong(GRID, GridRepository.NO_GRID);
+            grid = GridRepository.getInstance().get(mGridId);
+            store = openStore(getArguments().getString(STORE));
+            if (getArguments().getInt(ROWS) != 0 && getArguments().getInt(COLS) != 0)
+                mSize = new GridSize(getArguments().getInt(ROWS), getArguments().getInt(COLS));
+            mRule = Rule.parseOrDefault(getArguments().getString(RULE));
             if (getArguments().getInt(COLOR_ALIVE) != 0)
                 mAliveCellColor = getArguments().getInt(COLOR_ALIVE);
 
@@ -80,35 +172,46 @@ public class LifeFragment extends Fragment implements RecyclerViewAdapter.ItemCl
                 mDeadCellColor = getArguments().getInt(COLOR_DEAD);
         }
 
-        // Just in case there are arguments and mData is still null
-        if (mData == null) {
-            mData = new boolean[ROWS][COLS];
-            // data to populate the RecyclerView with
-            for (int i = 0; i < ROWS; i++)
-                for (int j = 0; j < COLS; j++)
-                    mData[i][j] = false;
+        // A loaded grid brings its own size, otherwise start with an empty board
+        if (grid != null)
+            mSize = new GridSize(grid.getRows(), grid.getCols());
+
+        // A board in a file keeps its own rule and generation, and is shown through a window
+        if (store != null) {
+            generation = store.getGeneration();
+            mRule = store.getRule();
+            mSize = new GridSize(Math.min(store.getRows(), MAX_WINDOW), Math.min(store.getCols(), MAX_WINDOW));
         }
 
-        // set up the RecyclerView
-        mRecyclerView = v.findViewById(R.id.grid);
-        mRecyclerView.setLayoutManager(new GridLayoutManager(getContext(), COLS));
-        mAdapter = new RecyclerViewAdapter(getContext(), mData);
-        mAdapter.setClickListener(this);
-        mRecyclerView.setAdapter(mAdapter);
+        // set up the grid view
+        mGridView = v.findViewById(R.id.grid);
+        mGridView.setOnCellClickListener(this);
+        mGridView.setOnViewportChangeListener(this);
+        LifeEngine engine = createEngine(grid, store, generation);
 
         // Set the colors in the grid if they are not the default
-        if (mAliveCellColor != 0) mAdapter.setAliveCellColor(mAliveCellColor);
-        if (mDeadCellColor != 0) mRecyclerView.setBackgroundColor(mDeadCellColor);
+        if (mAliveCellColor != 0) mGridView.setAliveCellColor(mAliveCellColor);
+        mGridView.setDeadCellColor(mDeadCellColor != 0 ? mDeadCellColor : ContextCompat.getColor(getContext(), R.color.colorPrimaryDark));
+
+        // Generations are computed off the UI thread, using the editable refresh interval
+        mScheduler = new SimulationScheduler(engine, mRefreshInterval, mSnapshotListener);
+        mScheduler.setAutoStop(true);
+        mScheduler.setMetrics(mMetrics);
+        mScheduler.setTracer(new SimulationScheduler.Tracer() {
+            @Override
+            public void beginSection(String name) {
+                Trace.beginSection(name);
+            }
 
-        // Setting up the handler to repeat the generations when the start button is clicked
-        final Handler handler = new Handler();
-        final Runnable myRunnable = new Runnable() {
             @Override
-            public void run() {
-                nextGeneration();
-                handler.postDelayed(this, mRefreshInterval); // using editable refresh interval
+            public void endSection() {
+                Trace.endSection();
             }
-        };
+        });
+        mGridView.setMetrics(mMetrics);
+        mMetricsOverlay = v.findViewById(R.id.metrics_overlay);
+        mFrameMonitor = new FrameMonitor(mMetrics,
+                getActivity().getWindowManager().getDefaultDisplay().getRefreshRate());
 
         // Initialize all buttons
         mStartStopButton = v.findViewById(R.id.start_stop);
@@ -118,12 +221,12 @@ public class LifeFragment extends Fragment implements RecyclerViewAdapter.ItemCl
                 // If start, stop. If stop, start
                 if (mStartStopButton.getText().toString().equals(getString(R.string.start)))
                 {
-                    handler.postDelayed(myRunnable, mRefreshInterval);
+                    mScheduler.start();
                     mStartStopButton.setText(getString(R.string.stop));
                 }
                 else
                 {
-                    handler.removeCallbacks(myRunnable);
+                    mScheduler.stop();
                     mStartStopButton.setText(getString(R.string.start));
                 }
             }
@@ -133,23 +236,67 @@ public class LifeFragment extends Fragment implements RecyclerViewAdapter.ItemCl
         mNextButton.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                nextGeneration();
+                mScheduler.step(1);
             }
         }); // Manually go to next generation
 
+        mBackButton = v.findViewById(R.id.back);
+        mBackButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                mScheduler.stop();
+                mScheduler.edit(new SimulationScheduler.Edit() {
+                    @Override
+                    public void apply(LifeEngine engine) {
+                        engine.stepBack();
+                    }
+                });
+            }
+        }); // Go back a generation
+
+        mHistoryBar = v.findViewById(R.id.history);
+        mHistoryBar.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+            @Override
+            public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
+                if (!fromUser) return;
+                final long generation = mSnapshot.getHistoryStart() + progress;
+                mScheduler.stop();
+                mScheduler.edit(new SimulationScheduler.Edit() {
+                    @Override
+                    public void apply(LifeEngine engine) {
+                        engine.seek(generation);
+                    }
+                });
+            }
+
+            @Override
+            public void onStartTrackingTouch(SeekBar seekBar) {
+            }
+
+            @Override
+            public void onStopTrackingTouch(SeekBar seekBar) {
+            }
+        });
+
+        mJumpButton = v.findViewById(R.id.jump);
+        mJumpButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                showJumpDialog();
+            }
+        }); // Fast-forward many generations at once
+
         mClearButton = v.findViewById(R.id.clear);
         mClearButton.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                // Clear by setting all values to false
-                for (int i = 0; i < ROWS; i++)
-                    for (int j = 0; j < COLS; j++)
-                        mData[i][j] = false;
-                mAdapter.notifyDataSetChanged();
-
-                // Reset generation and subtitle
-                mGeneration = 0;
-                ((AppCompatActivity) getActivity()).getSupportActionBar().setSubtitle(getString(R.string.initial_generation_value));
+                // Clear by killing every cell, which also resets the generation
+                mScheduler.edit(new SimulationScheduler.Edit() {
+                    @Override
+                    public void apply(LifeEngine engine) {
+                        engine.clear();
+                    }
+                });
             }
         });
 
@@ -168,7 +315,7 @@ public class LifeFragment extends Fragment implements RecyclerViewAdapter.ItemCl
                             public void onClick(DialogInterface dialog, int selectedColor, Integer[] allColors) {
                                 // Set the color based on dialog result
                                 mDeadCellColor = selectedColor;
-                                mRecyclerView.setBackgroundColor(selectedColor);
+                                mGridView.setDeadCellColor(selectedColor);
                             }
                         })
                         .setNegativeButton(getString(R.string.cancel), new DialogInterface.OnClickListener() {
@@ -194,8 +341,7 @@ public class LifeFragment extends Fragment implements RecyclerViewAdapter.ItemCl
                             @Override
                             public void onClick(DialogInterface dialog, int selectedColor, Integer[] allColors) {
                                 mAliveCellColor = selectedColor;
-                                mAdapter.setAliveCellColor(selectedColor);
-                                mAdapter.notifyDataSetChanged();
+                                mGridView.setAliveCellColor(selectedColor);
                             }
                         })
                         .setNegativeButton(getString(R.string.cancel), new DialogInterface.OnClickListener() {
@@ -212,11 +358,17 @@ public class LifeFragment extends Fragment implements RecyclerViewAdapter.ItemCl
         mCloneButton.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                // Clone activity by creating new activity and passing in data and colors
+                // Clone activity by creating new activity and passing in data and colors.
+                // Snapshots are never modified, so the new screen can share this one's grid
+                if (isWindowed()) {
+                    Toast.makeText(getContext(), R.string.board_too_big, Toast.LENGTH_LONG).show();
+                    return;
+                }
                 Intent i = new Intent(getContext(), MainActivity.class);
-                i.putExtra(GRID, mData);
+                i.putExtra(GRID, shareSnapshot(mSnapshot));
                 i.putExtra(COLOR_ALIVE, mAliveCellColor);
                 i.putExtra(COLOR_DEAD, mDeadCellColor);
+                i.putExtra(RULE, mRule.toString());
                 startActivity(i);
             }
         });
@@ -236,9 +388,11 @@ public class LifeFragment extends Fragment implements RecyclerViewAdapter.ItemCl
 
                 // Set the text in the boxes to the current values
                 final EditText animation = dialog.findViewById(R.id.animation_speed);
-                animation.setText(Integer.toString(mAdapter.getAnimationSpeed()));
+                animation.setText(Integer.toString(mGridView.getAnimationSpeed()));
                 final EditText refresh = dialog.findViewById(R.id.animation_refresh);
                 refresh.setText(Integer.toString(mRefreshInterval));
+                final EditText threads = dialog.findViewById(R.id.threads);
+                threads.setText(Integer.toString(mThreads));
 
                 // Set the view and assign the buttons
                 builder.setView(dialog);
@@ -249,11 +403,17 @@ public class LifeFragment extends Fragment implements RecyclerViewAdapter.ItemCl
                         // Apply new speeds and refresh the grid
                         String interval = refresh.getText().toString();
                         mRefreshInterval = Integer.parseInt(interval);
+                        mScheduler.setInterval(mRefreshInterval);
 
                         String speed = animation.getText().toString();
-                        mAdapter.setAnimationSpeed(Integer.parseInt(speed));
-
-                        mAdapter.notifyDataSetChanged();
+                        mGridView.setAnimationSpeed(Integer.parseInt(speed));
+
+                        try {
+                            setThreads(Integer.parseInt(threads.getText().toString()));
+                        } catch (IllegalArgumentException e) {
+                            Toast.makeText(getContext(), getString(R.string.invalid_threads,
+                                    Runtime.getRuntime().availableProcessors()), Toast.LENGTH_SHORT).show();
+                        }
                     }
                 });
                 builder.setNegativeButton(getString(R.string.cancel), new DialogInterface.OnClickListener() {
@@ -269,75 +429,230 @@ public class LifeFragment extends Fragment implements RecyclerViewAdapter.ItemCl
         return v;
     }
 
-    // The brains of the operation
-    // Taken directly from code provided by David Kopec
-    private void nextGeneration() {
-
-        int rows = ROWS;
-        int columns = COLS;
-
-        byte[][] livingNeighborsCount = new byte[ROWS][COLS];
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < columns; j++) {
-                // Variables to save positions left and right of row and column
-                int leftOfRow = i + rows - 1;
-                int rightOfRow = i + 1;
-                int leftOfColumn = j + columns - 1;
-                int rightOfColumn = j + 1;
-
-                // Checks to see if the cells are alive or dead. If they are alive
-                // it increments the count for living neighbors.
-                if (mData[i][j]) {
-                    livingNeighborsCount[leftOfRow % rows][leftOfColumn % columns]++;
-                    livingNeighborsCount[leftOfRow % rows][j % columns]++;
-                    livingNeighborsCount[(i + rows - 1) % rows][rightOfColumn % columns]++;
-                    livingNeighborsCount[i % rows][leftOfColumn % columns]++;
-                    livingNeighborsCount[i % rows][rightOfColumn % columns]++;
-                    livingNeighborsCount[rightOfRow % rows][leftOfColumn % columns]++;
-                    livingNeighborsCount[rightOfRow % rows][j % columns]++;
-                    livingNeighborsCount[rightOfRow % rows][rightOfColumn % columns]++;
-                }
-            }
+    @Override
+    public void onResume() {
+        super.onResume();
+        updateFrameMonitor();
+        if (mShowMetrics) mHandler.post(mUpdateMetrics);
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+        mFrameMonitor.stop();
+        mHandler.removeCallbacks(mUpdateMetrics);
+    }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        mScheduler.shutdown();
+        mHandler.removeCallbacks(mShowSnapshot);
+        mHandler.removeCallbacks(mUpdateMetrics);
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        mThumbnails.shutdown();
+        // A rotated screen reads its grid again from the same arguments
+        if (getActivity() == null || !getActivity().isChangingConfigurations())
+            GridRepository.getInstance().release(mGridId);
+        // The file was made for this screen alone, and is kept while it can still come back
+        if (mStorePath != null && getActivity() != null && getActivity().isFinishing()) {
+            sOpenStores.remove(mStorePath);
+            new File(mStorePath).delete();
         }
+        // The screens it was shared with hold their own handles
+        GridRepository.getInstance().release(mSharedId);
+    }
 
-        // Changes the status of the cell based on the number of living
-        // neighbors it has.
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < columns; j++) {
-                // If the cell has 4 or more living neighbors, it dies
-                // by overcrowding.
-                if (livingNeighborsCount[i][j] >= 4) {
-                    mData[i][j] = false;
-                }
+    // A new handle onto the snapshot's grid for another screen, so cloning and saving the
+    // same board share one grid instead of adding it twice
+    private long shareSnapshot(GridSnapshot snapshot) {
+        GridRepository repository = GridRepository.getInstance();
+        if (snapshot != mSharedSnapshot) {
+            repository.release(mSharedId);
+            mSharedId = repository.put(snapshot.getGrid());
+            mSharedSnapshot = snapshot;
+        }
+        return repository.share(mSharedId);
+    }
 
-                // A cell dies by exposure if it has 0 or 1 living neighbors.
-                if (livingNeighborsCount[i][j] < 2) {
-                    mData[i][j] = false;
-                }
+    // Builds an engine for the current size, filled from grid or showing the store if there is one
+    private LifeEngine createEngine(BitGrid grid, MappedGrid store, long generation) {
+        LifeEngine engine = new LifeEngine(mSize.getRows(), mSize.getCols());
+        if (grid != null) engine.load(grid);
+        engine.setStore(store);
+        mStoreRows = store != null ? store.getRows() : 0;
+        mStoreCols = store != null ? store.getCols() : 0;
+        engine.setGeneration(generation);
+        engine.setRule(mRule);
+        engine.setWrapping(mWrapping);
+        engine.setParallelism(mThreads);
+        // Leave most of the heap for HashLife and the rest of the app
+        engine.setHistoryBudget(Runtime.getRuntime().maxMemory() / 8);
+
+        // Show the new board right away rather than waiting for the simulation thread
+        mSnapshot = new GridSnapshot(engine.getGrid(), engine.getGeneration());
+        mGridView.submit(mSnapshot.getGrid());
+        return engine;
+    }
 
-                // A cell is born if it has 3 living neighbors.
-                if (livingNeighborsCount[i][j] == 3) {
-                    mData[i][j] = true;
-                }
+    // Replaces the board with an empty one of the given size
+    private void resizeGrid(GridSize size) {
+        mSize = size;
+        mScheduler.setEngine(createEngine(null, null, 0));
+    }
+
+    // Whether a board's screen still has the file, so it mustn't be deleted
+    static boolean isStoreOpen(File file) {
+        return sOpenStores.contains(file.getPath());
+    }
+
+    // Maps the board file at the given path, or returns null if there isn't one
+    private MappedGrid openStore(String path) {
+        if (path == null) return null;
+        try {
+            MappedGrid store = MappedGrid.open(new File(path));
+            sOpenStores.add(path);
+            mStorePath = path;
+            return store;
+        } catch (IOException e) {
+            e.printStackTrace();
+            Toast.makeText(getContext(), R.string.load_failed, Toast.LENGTH_SHORT).show();
+            return null;
+        }
+    }
+
+    // Whether the grid only shows part of the board, which then lives in its file alone
+    private boolean isWindowed() {
+        return mStoreRows > mSize.getRows() || mStoreCols > mSize.getCols();
+    }
+
+    // More threads than cores would only take turns with each other
+    private void setThreads(int threads) {
+        if (threads < 1 || threads > Runtime.getRuntime().availableProcessors())
+            throw new IllegalArgumentException("Thread count out of range: " + threads);
+        final int count = threads;
+        mThreads = count;
+        mScheduler.edit(new SimulationScheduler.Edit() {
+            @Override
+            public void apply(LifeEngine engine) {
+                engine.setParallelism(count);
+            }
+        });
+    }
+
+    private void setWrapping(final boolean wrapping) {
+        mWrapping = wrapping;
+        mScheduler.edit(new SimulationScheduler.Edit() {
+            @Override
+            public void apply(LifeEngine engine) {
+                engine.setWrapping(wrapping);
+            }
+        });
+    }
+
+    // Missed frames are only counted while the board is running or the overlay is up
+    private void updateFrameMonitor() {
+        if (isResumed() && mShowMetrics) mFrameMonitor.start();
+        else mFrameMonitor.stop();
+    }
+
+    private void setShowMetrics(boolean show) {
+        mShowMetrics = show;
+        mMetricsOverlay.setVisibility(show ? View.VISIBLE : View.GONE);
+        mHandler.removeCallbacks(mUpdateMetrics);
+        if (show) mHandler.post(mUpdateMetrics);
+        updateFrameMonitor();
+    }
+
+    private void showMetrics(StepMetrics.Summary summary) {
+        mMetricsOverlay.setText(getString(R.string.metrics_overlay,
+                summary.getStepP50() / NANOS_PER_MILLI, summary.getStepP99() / NANOS_PER_MILLI,
+                summary.getGenerationsPerSecond(), summary.getPopulation(), summary.getChanged(),
+                summary.getRenderP50() / NANOS_PER_MILLI, summary.getRenderP99() / NANOS_PER_MILLI,
+                summary.getDroppedFrames()));
+    }
+
+    // Writes the recorded steps and frames to a CSV file in the app's external storage
+    private void exportMetrics() {
+        File file = new File(getContext().getExternalFilesDir(null), "metrics-" + System.currentTimeMillis() + ".csv");
+        try {
+            Writer out = new FileWriter(file);
+            try {
+                mMetrics.writeCsv(out);
+            } finally {
+                out.close();
             }
+            Toast.makeText(getContext(), getString(R.string.metrics_exported, file.getPath()), Toast.LENGTH_LONG).show();
+        } catch (IOException e) {
+            e.printStackTrace();
+            Toast.makeText(getContext(), R.string.metrics_export_failed, Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    // Set subtitle for the generation on screen, and whether it has settled
+    private void showSnapshot(GridSnapshot snapshot) {
+        mGeneration = snapshot.getGeneration();
+        String subtitle = getString(R.string.generation_subtitle_prefix) + " " + mGeneration;
+        switch (snapshot.getCycleState()) {
+            case CycleDetector.EXTINCT:
+                subtitle += " " + getString(R.string.cycle_extinct);
+                break;
+            case CycleDetector.STABLE:
+                subtitle += " " + getString(R.string.cycle_stable);
+                break;
+            case CycleDetector.PERIODIC:
+                subtitle += " " + getString(R.string.cycle_periodic, snapshot.getPeriod());
+                break;
         }
+        ((AppCompatActivity) getActivity()).getSupportActionBar().setSubtitle(subtitle);
+
+        long start = snapshot.getHistoryStart();
+        mHistoryBar.setMax((int) Math.min(Integer.MAX_VALUE, snapshot.getHistoryEnd() - start));
+        mHistoryBar.setProgress((int) Math.min(Integer.MAX_VALUE, mGeneration - start));
+        mBackButton.setEnabled(mGeneration > start);
 
-        // Increment generation, set subtitle, refresh grid
-        mGeneration++;
-        ((AppCompatActivity) getActivity()).getSupportActionBar().setSubtitle(getString(R.string.generation_subtitle_prefix) + " " + mGeneration);
-        mAdapter.notifyDataSetChanged();
+        // The scheduler stops by itself once the board settles
+        mStartStopButton.setText(getString(mScheduler.isRunning() ? R.string.stop : R.string.start));
+        updateFrameMonitor();
+    }
+
+    @Override
+    public void onCellClick(final int row, final int col) {
+        // Inverses the cell to turn on/off
+        mScheduler.edit(new SimulationScheduler.Edit() {
+            @Override
+            public void apply(LifeEngine engine) {
+                engine.setAlive(row, col, !engine.isAlive(row, col));
+            }
+        });
     }
 
+    // Moves the window onto a board in a file once the view reaches its edge, centering it
+    // on the view again along each side the board is longer than the window
     @Override
-    public void onItemClick(View view, int position) {
-        // Gets the 2d position from 1d position
-        int col = position % COLS;
-        int row = (position - col) / ROWS;
-
-        // Inverses the boolean to turn on/off
-        mData[col][row] = !mData[col][row];
-        // Refresh
-        mAdapter.notifyDataSetChanged();
+    public void onViewportChange(int originRow, int originCol, int firstRow, int endRow, int firstCol, int endCol) {
+        int rows = mSize.getRows();
+        int cols = mSize.getCols();
+        int top = originRow;
+        int left = originCol;
+        if (mStoreRows > rows && (firstRow == 0 || endRow == rows))
+            top += (firstRow + endRow - rows) / 2;
+        if (mStoreCols > cols && (firstCol == 0 || endCol == cols))
+            left += (firstCol + endCol - cols) / 2;
+        if (top == originRow && left == originCol) return;
+
+        final int row = top;
+        final int col = left;
+        mScheduler.edit(new SimulationScheduler.Edit() {
+            @Override
+            public void apply(LifeEngine engine) {
+                engine.setOrigin(row, col);
+            }
+        });
     }
 
     @Override
@@ -345,6 +660,8 @@ public class LifeFragment extends Fragment implements RecyclerViewAdapter.ItemCl
         super.onCreateOptionsMenu(menu, inflater);
         // Inflate the menu
         inflater.inflate(R.menu.life_menu, menu);
+        menu.findItem(R.id.wrap).setChecked(mWrapping);
+        menu.findItem(R.id.metrics).setChecked(mShowMetrics);
     }
 
     @Override
@@ -363,6 +680,27 @@ public class LifeFragment extends Fragment implements RecyclerViewAdapter.ItemCl
                 // Save and share grid image
                 shareGrid();
                 break;
+            case R.id.size:
+                // Start over with a board of a different size
+                showSizeDialog();
+                break;
+            case R.id.rule:
+                // Pick the birth and survival counts
+                showRuleDialog();
+                break;
+            case R.id.wrap:
+                // Toggle between the torus and the endless plane
+                setWrapping(!item.isChecked());
+                item.setChecked(mWrapping);
+                break;
+            case R.id.metrics:
+                // Toggle the timing overlay on top of the board
+                setShowMetrics(!item.isChecked());
+                item.setChecked(mShowMetrics);
+                break;
+            case R.id.export_metrics:
+                exportMetrics();
+                break;
             default:
                 return super.onOptionsItemSelected(item);
         }
@@ -370,71 +708,197 @@ public class LifeFragment extends Fragment implements RecyclerViewAdapter.ItemCl
         return true;
     }
 
-    private void shareGrid() {
-        // Allow for the view to be captured
-        mRecyclerView.setDrawingCacheEnabled(true);
+    @SuppressLint("SetTextI18n")
+    private void showSizeDialog() {
+        AlertDialog.Builder builder = new AlertDialog.Builder(getActivity());
+        builder.setTitle(R.string.grid_size);
+
+        // Inflate custom view with input boxes for the dimensions
+        View dialog = View.inflate(getContext(), R.layout.size_dialog, null);
+        final EditText rows = dialog.findViewById(R.id.grid_rows);
+        rows.setText(Integer.toString(mSize.getRows()));
+        final EditText cols = dialog.findViewById(R.id.grid_cols);
+        cols.setText(Integer.toString(mSize.getCols()));
+        builder.setView(dialog);
+
+        builder.setPositiveButton(getString(R.string.ok), new DialogInterface.OnClickListener() {
+            public void onClick(DialogInterface dialog, int id) {
+                try {
+                    resizeGrid(new GridSize(Integer.parseInt(rows.getText().toString()),
+                            Integer.parseInt(cols.getText().toString())));
+                } catch (IllegalArgumentException e) {
+                    // Covers both unparseable numbers and sizes under 1x1
+                    Toast.makeText(getContext(), R.string.invalid_size, Toast.LENGTH_SHORT).show();
+                }
+            }
+        });
+        builder.setNegativeButton(getString(R.string.cancel), new DialogInterface.OnClickListener() {
+            public void onClick(DialogInterface dialog, int id) {
+                dialog.cancel();
+            }
+        }).show();
+    }
+
+    private void showRuleDialog() {
+        AlertDialog.Builder builder = new AlertDialog.Builder(getActivity());
+        builder.setTitle(R.string.rule);
+        builder.setMessage(R.string.rule_examples);
+
+        View dialog = View.inflate(getContext(), R.layout.rule_dialog, null);
+        final EditText rule = dialog.findViewById(R.id.rulestring);
+        rule.setText(mRule.toString());
+        builder.setView(dialog);
+
+        builder.setPositiveButton(getString(R.string.ok), new DialogInterface.OnClickListener() {
+            public void onClick(DialogInterface dialog, int id) {
+                try {
+                    setRule(Rule.parse(rule.getText().toString()));
+                } catch (IllegalArgumentException e) {
+                    Toast.makeText(getContext(), R.string.invalid_rule, Toast.LENGTH_SHORT).show();
+                }
+            }
+        });
+        builder.setNegativeButton(getString(R.string.cancel), new DialogInterface.OnClickListener() {
+            public void onClick(DialogInterface dialog, int id) {
+                dialog.cancel();
+            }
+        }).show();
+    }
+
+    private void setRule(final Rule rule) {
+        mRule = rule;
+        mScheduler.edit(new SimulationScheduler.Edit() {
+            @Override
+            public void apply(LifeEngine engine) {
+                engine.setRule(rule);
+            }
+        });
+    }
+
+    private void showJumpDialog() {
+        AlertDialog.Builder builder = new AlertDialog.Builder(getActivity());
+        builder.setTitle(R.string.jump_title);
+        // HashLife can't wrap, so a torus or a board in a file, which always wraps, is stepped
+        // and can only go so far at once
+        final boolean stepped = mWrapping || mStoreRows > 0;
+        builder.setMessage(stepped ? getString(R.string.jump_message_stepped, MAX_STEPPED_JUMP)
+                : getString(R.string.jump_message));
+
+        View dialog = View.inflate(getContext(), R.layout.jump_dialog, null);
+        final EditText generations = dialog.findViewById(R.id.jump_generations);
+        builder.setView(dialog);
+
+        builder.setPositiveButton(getString(R.string.ok), new DialogInterface.OnClickListener() {
+            public void onClick(DialogInterface dialog, int id) {
+                try {
+                    long count = Long.parseLong(generations.getText().toString());
+                    if (stepped && count > MAX_STEPPED_JUMP)
+                        Toast.makeText(getContext(), getString(R.string.invalid_stepped_jump, MAX_STEPPED_JUMP),
+                                Toast.LENGTH_SHORT).show();
+                    else
+                        jump(count);
+                } catch (NumberFormatException e) {
+                    Toast.makeText(getContext(), R.string.invalid_jump, Toast.LENGTH_SHORT).show();
+                }
+            }
+        });
+        builder.setNegativeButton(getString(R.string.cancel), new DialogInterface.OnClickListener() {
+            public void onClick(DialogInterface dialog, int id) {
+                dialog.cancel();
+            }
+        }).show();
+    }
 
+    // Jumps ahead on the simulation thread, with HashLife unless the board wraps or has settled
+    private void jump(final long generations) {
+        if (generations <= 0) return;
+        mScheduler.edit(new SimulationScheduler.Edit() {
+            @Override
+            public void apply(LifeEngine engine) {
+                // Leave most of the heap for the rest of the app
+                if (mHashLife == null)
+                    mHashLife = HashLife.withMemoryBudget(Runtime.getRuntime().maxMemory() / 4);
+                engine.jump(mHashLife, generations);
+            }
+        });
+    }
+
+    private void shareGrid() {
         // Select the directory to place image
         File cachePath = new File(getContext().getCacheDir(), IMAGE_DIRECTORY);
         cachePath.mkdirs();
-        FileOutputStream stream;
-        try {
-            // Save image to PNG with default filename in cache directory
-            stream = new FileOutputStream(cachePath + "/" + getString(R.string.default_filename));
-            Bitmap b = mRecyclerView.getDrawingCache();
-            b.compress(Bitmap.CompressFormat.PNG, 100, stream);
-            stream.close();
-            Toast.makeText(getContext(), getString(R.string.save_success), Toast.LENGTH_SHORT).show();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-
-        // Get the Uri for the newly saved file for sharing
-        File imagePath = new File(getContext().getCacheDir(), IMAGE_DIRECTORY);
-        File newFile = new File(imagePath, getString(R.string.default_filename));
-        Uri contentUri = FileProvider.getUriForFile(getContext(), getString(R.string.file_provider), newFile);
-
-        if (contentUri != null) {
-            // Use share intent to share to any app
-            // NOTE: This does not work on the emulator
-            Intent shareIntent = new Intent();
-            shareIntent.setAction(Intent.ACTION_SEND);
-            shareIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION); // temp permission for receiving app to read this file
-            shareIntent.setDataAndType(contentUri, getContext().getContentResolver().getType(contentUri));
-            shareIntent.putExtra(Intent.EXTRA_STREAM, contentUri);
-            startActivity(Intent.createChooser(shareIntent, getString(R.string.app_choose)));
-        }
+        File image = new File(cachePath, getString(R.string.default_filename));
+
+        // Drawn from the snapshot, which never changes, while the UI carries on
+        mThumbnails.save(mSnapshot.getGrid(), THUMBNAIL_SIZE, mGridView.getAliveCellColor(),
+                mGridView.getDeadCellColor(), image, new ThumbnailRenderer.Listener() {
+                    @Override
+                    public void onSaved(File file) {
+                        if (!isAdded()) return;
+                        Toast.makeText(getContext(), getString(R.string.save_success), Toast.LENGTH_SHORT).show();
+
+                        // Get the Uri for the newly saved file for sharing
+                        Uri contentUri = FileProvider.getUriForFile(getContext(), getString(R.string.file_provider), file);
+                        if (contentUri != null) {
+                            // Use share intent to share to any app
+                            // NOTE: This does not work on the emulator
+                            Intent shareIntent = new Intent();
+                            shareIntent.setAction(Intent.ACTION_SEND);
+                            shareIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION); // temp permission for receiving app to read this file
+                            shareIntent.setDataAndType(contentUri, getContext().getContentResolver().getType(contentUri));
+                            shareIntent.putExtra(Intent.EXTRA_STREAM, contentUri);
+                            startActivity(Intent.createChooser(shareIntent, getString(R.string.app_choose)));
+                        }
+                    }
 
-        // Disables the cache so a new image can be captured
-        mRecyclerView.setDrawingCacheEnabled(false);
+                    @Override
+                    public void onFailed(File file, IOException e) {
+                        e.printStackTrace();
+                    }
+                });
     }
 
     private void saveGrid() {
-        mRecyclerView.setDrawingCacheEnabled(true);
+        // Only the window is on the heap; the whole board is already in its file
+        if (isWindowed()) {
+            Toast.makeText(getContext(), R.string.board_too_big, Toast.LENGTH_LONG).show();
+            return;
+        }
 
         File cachePath = new File(getContext().getCacheDir(), IMAGE_DIRECTORY);
         cachePath.mkdirs();
-        FileOutputStream stream;
-        String filename = getString(R.string.filename_prefix) + mCount;
-        try {
-            stream = new FileOutputStream(cachePath + "/" + filename + ".png");
-            Bitmap b = mRecyclerView.getDrawingCache();
-            b.compress(Bitmap.CompressFormat.PNG, 100, stream);
-            stream.close();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-
+        final String filename = getString(R.string.filename_prefix) + mCount;
         mCount++;
 
-        // Instead of sending to share intent, send image, grid, and colors to custom save intent
+        // The snapshot is taken now, so the saved board is the one on screen when save was pressed
+        final GridSnapshot snapshot = mSnapshot;
+        final Rule rule = mRule;
+        ThumbnailRenderer.Listener listener = new ThumbnailRenderer.Listener() {
+            @Override
+            public void onSaved(File file) {
+                if (isAdded()) startSaveActivity(filename, snapshot, rule);
+            }
+
+            @Override
+            public void onFailed(File file, IOException e) {
+                e.printStackTrace();
+                // The save screen works without a preview
+                if (isAdded()) startSaveActivity(filename, snapshot, rule);
+            }
+        };
+        mThumbnails.save(snapshot.getGrid(), THUMBNAIL_SIZE, mGridView.getAliveCellColor(),
+                mGridView.getDeadCellColor(), new File(cachePath, filename + ".png"), listener);
+    }
+
+    // Instead of sending to share intent, send image, grid, and colors to custom save intent
+    private void startSaveActivity(String filename, GridSnapshot snapshot, Rule rule) {
         Intent i = new Intent(getContext(), SaveActivity.class);
         i.putExtra(FILENAME, filename);
-        i.putExtra(GRID, mData);
+        i.putExtra(GRID, shareSnapshot(snapshot));
         i.putExtra(COLOR_ALIVE, mAliveCellColor);
         i.putExtra(COLOR_DEAD, mDeadCellColor);
+        i.putExtra(RULE, rule.toString());
+        i.putExtra(GENERATION, snapshot.getGeneration());
         startActivity(i);
-
-        mRecyclerView.setDrawingCacheEnabled(false);
     }
 }
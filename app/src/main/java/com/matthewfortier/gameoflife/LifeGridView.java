@@ -0,0 +1,589 @@
+package com.matthewfortier.gameoflife;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.AttributeSet;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+
+/**
+ * Draws the board from a render thread in a single pass, through a Viewport that can be
+ * pinched to zoom and dragged to pan.
+ *
+ * The render thread keeps its own packed copy of the board and a PopulationPyramid of it.
+ * When a new grid is submitted only its changed tiles are copied and compared, and only the
+ * cells that flipped are counted into the pyramid, so keeping up costs the number of
+ * changed cells rather than the board size; a whole new board is loaded in one pass.
+ *
+ * Each frame draws only what is in view, one bitmap pixel per cell, or per square of a
+ * pyramid level once cells are smaller than a pixel, shaded by how many of the square's
+ * cells are alive. Either way the bitmap has about as many pixels as the screen, however
+ * big the board is, and it is only refilled when the board or the view has changed.
+ *
+ * A grid that is a window onto a bigger board says where its top left corner is on that
+ * board, and when that moves the view moves with it, so the same cells stay on screen.
+ * Live cells pulse between the alive color and transparent like the old cell animators did.
+ * Each frame is a trace section, and its time goes into the StepMetrics if one is set.
+ */
+public class LifeGridView extends SurfaceView implements SurfaceHolder.Callback {
+
+    // Below this many pixels per cell the grid lines would cover the cells
+    private static final float MIN_GRID_LINE_CELL_SIZE = 6f;
+    private static final String DRAW_SECTION = "LifeGridView.draw";
+    // The faintest a pyramid square with any life in it is drawn
+    private static final int MIN_SQUARE_ALPHA = 32;
+
+    private final Object mLock = new Object();
+    private final Paint mCellPaint = new Paint();
+    private final Paint mLinePaint = new Paint();
+    private final Rect mSource = new Rect();
+    private final RectF mDestination = new RectF();
+    private ScaleGestureDetector mScaleDetector;
+    private GestureDetector mGestureDetector;
+
+    // Shared with the render thread and guarded by mLock
+    private BitGrid mPending;
+    private DirtyTiles mPendingChanges;
+    private boolean mDirty;
+    private boolean mFullRedraw;
+    private int mAliveCellColor = Color.WHITE;
+    private int mDeadCellColor = Color.BLACK;
+    private int mAnimationSpeed = 1500;
+    private int mSurfaceWidth;
+    private int mSurfaceHeight;
+    private final Viewport mViewport = new Viewport();
+    private int mOriginRow;
+    private int mOriginCol;
+
+    // Only touched by the render thread
+    private BitGrid mShown;
+    private PopulationPyramid mPyramid;
+    private int mShownPopulation;
+    private boolean mShownChanged;
+    private float[] mGridLines = new float[0];
+    private final Viewport mFrameViewport = new Viewport();
+    // The squares in view at the last frame's level, drawn into the top left of a bitmap
+    // that only grows to the most squares ever in view at once
+    private Bitmap mFrameBitmap;
+    private int[] mPixels = new int[0];
+    private final Rect mSquares = new Rect();
+    private final Rect mFrameSquares = new Rect();
+    private int mFrameLevel;
+    private int mFrameColor;
+
+    private RenderThread mRenderThread;
+    private OnCellClickListener mClickListener;
+    private OnViewportChangeListener mViewportListener;
+    private volatile StepMetrics mMetrics;
+
+    public LifeGridView(Context context) {
+        super(context);
+        init();
+    }
+
+    public LifeGridView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        init();
+    }
+
+    private void init() {
+        getHolder().addCallback(this);
+
+        // Nearest neighbor scaling keeps the cells sharp
+        mCellPaint.setFilterBitmap(false);
+        mLinePaint.setColor(Color.BLACK);
+        mLinePaint.setStrokeWidth(1f);
+
+        mScaleDetector = new ScaleGestureDetector(getContext(), new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+            @Override
+            public boolean onScale(ScaleGestureDetector detector) {
+                synchronized (mLock) {
+                    mViewport.zoom(detector.getScaleFactor(), detector.getFocusX(), detector.getFocusY());
+                    mDirty = true;
+                    mLock.notifyAll();
+                }
+                reportViewport();
+                return true;
+            }
+        });
+        mGestureDetector = new GestureDetector(getContext(), new GestureDetector.SimpleOnGestureListener() {
+            @Override
+            public boolean onDown(MotionEvent e) {
+                return true;
+            }
+
+            @Override
+            public boolean onSingleTapUp(MotionEvent e) {
+                performClick();
+                clickCell(e.getX(), e.getY());
+                return true;
+            }
+
+            @Override
+            public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
+                if (mScaleDetector.isInProgress()) return false;
+                synchronized (mLock) {
+                    mViewport.pan(distanceX, distanceY);
+                    mDirty = true;
+                    mLock.notifyAll();
+                }
+                reportViewport();
+                return true;
+            }
+        });
+    }
+
+    // Copies the whole grid in and schedules a redraw; safe to call from any thread
+    public void submit(BitGrid grid) {
+        submit(grid, null);
+    }
+
+    // Copies in only the changed tiles of the grid, or all of it when changes is null
+    public void submit(BitGrid grid, DirtyTiles changes) {
+        submit(grid, changes, 0, 0);
+    }
+
+    // As above, for a grid whose top left corner is at the given cell of a bigger board
+    public void submit(BitGrid grid, DirtyTiles changes, int originRow, int originCol) {
+        synchronized (mLock) {
+            if (originRow != mOriginRow || originCol != mOriginCol) {
+                mViewport.moveOrigin(originRow - mOriginRow, originCol - mOriginCol);
+                mOriginRow = originRow;
+                mOriginCol = originCol;
+            }
+            if (mPending == null || mPending.getRows() != grid.getRows() || mPending.getCols() != grid.getCols()) {
+                mPending = new BitGrid(grid.getRows(), grid.getCols());
+                mPendingChanges = new DirtyTiles(grid.getRows(), grid.getCols());
+                mViewport.setBoard(grid.getRows(), grid.getCols());
+                mFullRedraw = true;
+                changes = null;
+                post(new Runnable() {
+                    @Override
+                    public void run() {
+                        requestLayout();
+                    }
+                });
+            }
+
+            if (changes == null) {
+                mPending.copyFrom(grid);
+                mPendingChanges.markAll();
+            } else {
+                copyTiles(grid, mPending, changes);
+                mPendingChanges.or(changes);
+            }
+            mDirty = true;
+            mLock.notifyAll();
+        }
+    }
+
+    private static void copyTiles(BitGrid from, BitGrid to, DirtyTiles tiles) {
+        long[] src = from.getWords();
+        long[] dst = to.getWords();
+        int words = from.getWordsPerRow();
+        for (int tr = 0; tr < tiles.getTileRows(); tr++)
+            for (int tc = 0; tc < tiles.getTileCols(); tc++)
+                if (tiles.isDirty(tr, tc))
+                    for (int row = tiles.firstRow(tr); row < tiles.endRow(tr); row++)
+                        dst[row * words + tc] = src[row * words + tc];
+    }
+
+    public void setAliveCellColor(int color) {
+        synchronized (mLock) {
+            mAliveCellColor = color;
+            mDirty = true;
+            mLock.notifyAll();
+        }
+    }
+
+    public void setDeadCellColor(int color) {
+        synchronized (mLock) {
+            mDeadCellColor = color;
+            mDirty = true;
+            mLock.notifyAll();
+        }
+    }
+
+    public int getAliveCellColor() {
+        synchronized (mLock) {
+            return mAliveCellColor;
+        }
+    }
+
+    public int getDeadCellColor() {
+        synchronized (mLock) {
+            return mDeadCellColor;
+        }
+    }
+
+    public int getAnimationSpeed() {
+        synchronized (mLock) {
+            return mAnimationSpeed;
+        }
+    }
+
+    // Length of one pulse in milliseconds, or 0 to keep live cells solid
+    public void setAnimationSpeed(int speed) {
+        synchronized (mLock) {
+            mAnimationSpeed = speed;
+            mDirty = true;
+            mLock.notifyAll();
+        }
+    }
+
+    // Records how long every frame takes to draw from now on, or stops with null
+    public void setMetrics(StepMetrics metrics) {
+        mMetrics = metrics;
+    }
+
+    // allows clicks events to be caught
+    public void setOnCellClickListener(OnCellClickListener listener) {
+        mClickListener = listener;
+    }
+
+    // Hears about every pan and zoom
+    public void setOnViewportChangeListener(OnViewportChangeListener listener) {
+        mViewportListener = listener;
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = MeasureSpec.getSize(widthMeasureSpec);
+        int height = MeasureSpec.getSize(heightMeasureSpec);
+
+        // Keep cells square, using as much of the width as the height allows
+        int rows, cols;
+        synchronized (mLock) {
+            rows = mPending != null ? mPending.getRows() : GridSize.DEFAULT.getRows();
+            cols = mPending != null ? mPending.getCols() : GridSize.DEFAULT.getCols();
+        }
+        float cell = (float) width / cols;
+        if (MeasureSpec.getMode(heightMeasureSpec) != MeasureSpec.UNSPECIFIED)
+            cell = Math.min(cell, (float) height / rows);
+
+        int desired = Math.round(cell * rows);
+        setMeasuredDimension(width, resolveSize(desired, heightMeasureSpec));
+    }
+
+    // Pinches zoom, drags pan and taps toggle cells
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        mScaleDetector.onTouchEvent(event);
+        mGestureDetector.onTouchEvent(event);
+        return true;
+    }
+
+    // Finds the cell under the finger through the viewport
+    private void clickCell(float x, float y) {
+        int row, col, rows, cols;
+        synchronized (mLock) {
+            if (mPending == null) return;
+            rows = mPending.getRows();
+            cols = mPending.getCols();
+            row = (int) Math.floor(mViewport.toRow(y));
+            col = (int) Math.floor(mViewport.toCol(x));
+        }
+        if (mClickListener != null && row >= 0 && row < rows && col >= 0 && col < cols)
+            mClickListener.onCellClick(row, col);
+    }
+
+
+    private void reportViewport() {
+        if (mViewportListener == null) return;
+        int originRow, originCol, firstRow, endRow, firstCol, endCol;
+        synchronized (mLock) {
+            if (mPending == null) return;
+            originRow = mOriginRow;
+            originCol = mOriginCol;
+            firstRow = mViewport.getFirstRow();
+            endRow = mViewport.getEndRow();
+            firstCol = mViewport.getFirstCol();
+            endCol = mViewport.getEndCol();
+        }
+        mViewportListener.onViewportChange(originRow, originCol, firstRow, endRow, firstCol, endCol);
+    }
+
+    @Override
+    public boolean performClick() {
+        return super.performClick();
+    }
+
+    @Override
+    public void surfaceCreated(SurfaceHolder holder) {
+        mRenderThread = new RenderThread(holder);
+        mRenderThread.start();
+    }
+
+    @Override
+    public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+        synchronized (mLock) {
+            mSurfaceWidth = width;
+            mSurfaceHeight = height;
+            mViewport.setView(width, height);
+            mDirty = true;
+            mLock.notifyAll();
+        }
+    }
+
+    @Override
+    public void surfaceDestroyed(SurfaceHolder holder) {
+        // The surface must not be drawn to once this returns
+        mRenderThread.quit();
+        mRenderThread = null;
+    }
+
+    // Brings the shown cells and the pyramid up to date with the pending grid; called with mLock held
+    private void updateShown() {
+        BitGrid pending = mPending;
+        int rows = pending.getRows();
+        int cols = pending.getCols();
+
+        // A new board is copied whole and the pyramid rebuilt from it in one pass
+        if (mFullRedraw || mShown == null) {
+            if (mShown == null || mShown.getRows() != rows || mShown.getCols() != cols) {
+                mShown = new BitGrid(rows, cols);
+                mPyramid = new PopulationPyramid(rows, cols);
+            }
+            mShown.copyFrom(pending);
+            mShownPopulation = mShown.getPopulation();
+            mPyramid.load(mShown);
+            mPendingChanges.clear();
+            mFullRedraw = false;
+            mShownChanged = true;
+            return;
+        }
+
+        // Only the changed tiles are compared, and only flipped cells touch the pyramid
+        DirtyTiles tiles = mPendingChanges;
+        long[] next = pending.getWords();
+        long[] shown = mShown.getWords();
+        int words = pending.getWordsPerRow();
+        for (int tr = 0; tr < tiles.getTileRows(); tr++) {
+            for (int tc = 0; tc < tiles.getTileCols(); tc++) {
+                if (!tiles.isDirty(tr, tc)) continue;
+
+                int base = tc << 6;
+                for (int row = tiles.firstRow(tr); row < tiles.endRow(tr); row++) {
+                    int index = row * words + tc;
+                    long changed = next[index] ^ shown[index];
+                    if (changed == 0) continue;
+
+                    long born = changed & next[index];
+                    mShownPopulation += Long.bitCount(born) - Long.bitCount(changed & ~born);
+                    while (changed != 0) {
+                        int bit = Long.numberOfTrailingZeros(changed);
+                        mPyramid.add(row, base + bit, (born & (1L << bit)) != 0 ? 1 : -1);
+                        changed &= changed - 1;
+                    }
+                    shown[index] = next[index];
+                    mShownChanged = true;
+                }
+            }
+        }
+        tiles.clear();
+    }
+
+    // Returns the nanoseconds spent drawing, leaving out the wait for a canvas
+    private long drawFrame(SurfaceHolder holder, int deadColor, int alpha, int aliveColor, Viewport viewport) {
+        Canvas canvas = holder.lockCanvas();
+        if (canvas == null) return 0;
+        long start = System.nanoTime();
+        try {
+            canvas.drawColor(deadColor);
+            int firstRow = viewport.getFirstRow();
+            int endRow = viewport.getEndRow();
+            int firstCol = viewport.getFirstCol();
+            int endCol = viewport.getEndCol();
+            if (firstRow >= endRow || firstCol >= endCol) return System.nanoTime() - start;
+
+            // Only the squares in view are drawn, from the cells or from a pyramid level
+            int level = Math.min(viewport.getLevel(), mPyramid.getLevels());
+            mSquares.set(firstCol >> level, firstRow >> level, ((endCol - 1) >> level) + 1, ((endRow - 1) >> level) + 1);
+            if (mShownChanged || level != mFrameLevel || aliveColor != mFrameColor || !mSquares.equals(mFrameSquares)) {
+                fillFrame(level, aliveColor);
+                mShownChanged = false;
+                mFrameLevel = level;
+                mFrameColor = aliveColor;
+                mFrameSquares.set(mSquares);
+            }
+
+            mSource.set(0, 0, mSquares.width(), mSquares.height());
+            mDestination.set(viewport.toX(mSquares.left << level), viewport.toY(mSquares.top << level),
+                    viewport.toX(mSquares.right << level), viewport.toY(mSquares.bottom << level));
+            mCellPaint.setAlpha(alpha);
+            canvas.drawBitmap(mFrameBitmap, mSource, mDestination, mCellPaint);
+
+            // All grid lines go out in one batched call
+            if (viewport.getScale() >= MIN_GRID_LINE_CELL_SIZE) {
+                int count = buildGridLines(viewport, firstRow, endRow, firstCol, endCol);
+                canvas.drawLines(mGridLines, 0, count, mLinePaint);
+            }
+            return System.nanoTime() - start;
+        } finally {
+            holder.unlockCanvasAndPost(canvas);
+        }
+    }
+
+    // Draws the squares of a level in mSquares into the top left of mFrameBitmap, one pixel
+    // each: a cell's own color at level 0, and above that the alive color faded by the share
+    // of the square that is alive
+    private void fillFrame(int level, int aliveColor) {
+        int width = mSquares.width();
+        int height = mSquares.height();
+        if (mFrameBitmap == null || mFrameBitmap.getWidth() < width || mFrameBitmap.getHeight() < height) {
+            int frameWidth = Math.max(width, mFrameBitmap != null ? mFrameBitmap.getWidth() : 0);
+            int frameHeight = Math.max(height, mFrameBitmap != null ? mFrameBitmap.getHeight() : 0);
+            if (mFrameBitmap != null) mFrameBitmap.recycle();
+            mFrameBitmap = Bitmap.createBitmap(frameWidth, frameHeight, Bitmap.Config.ARGB_8888);
+        }
+        if (mPixels.length < width * height) mPixels = new int[width * height];
+
+        int color = aliveColor & 0xFFFFFF;
+        int i = 0;
+        if (level == 0) {
+            long[] words = mShown.getWords();
+            int wordsPerRow = mShown.getWordsPerRow();
+            for (int row = mSquares.top; row < mSquares.bottom; row++) {
+                int offset = row * wordsPerRow;
+                for (int col = mSquares.left; col < mSquares.right; col++)
+                    mPixels[i++] = ((words[offset + (col >>> 6)] >>> col) & 1) != 0 ? aliveColor : Color.TRANSPARENT;
+            }
+        } else {
+            for (int row = mSquares.top; row < mSquares.bottom; row++) {
+                for (int col = mSquares.left; col < mSquares.right; col++) {
+                    int count = mPyramid.getCount(level, row, col);
+                    int alpha = count == 0 ? 0 : squareAlpha(count, mPyramid.getArea(level, row, col));
+                    mPixels[i++] = (alpha << 24) | color;
+                }
+            }
+        }
+        mFrameBitmap.setPixels(mPixels, 0, width, 0, 0, width, height);
+    }
+
+    // Alpha for a square with some of its cells alive. The square root of the share alive
+    // brightens sparse squares, and the floor keeps a lone cell in a big square visible
+    private static int squareAlpha(int count, int area) {
+        return Math.max(MIN_SQUARE_ALPHA, (int) Math.round(255 * Math.sqrt((double) count / area)));
+    }
+
+    // Fills mGridLines with the lines around the cells in view and returns how many floats it used
+    private int buildGridLines(Viewport viewport, int firstRow, int endRow, int firstCol, int endCol) {
+        int count = (endRow - firstRow + endCol - firstCol + 2) * 4;
+        if (mGridLines.length < count) mGridLines = new float[count];
+        float left = viewport.toX(firstCol);
+        float right = viewport.toX(endCol);
+        float top = viewport.toY(firstRow);
+        float bottom = viewport.toY(endRow);
+        int i = 0;
+        for (int r = firstRow; r <= endRow; r++) {
+            float y = viewport.toY(r);
+            mGridLines[i++] = left;
+            mGridLines[i++] = y;
+            mGridLines[i++] = right;
+            mGridLines[i++] = y;
+        }
+        for (int c = firstCol; c <= endCol; c++) {
+            float x = viewport.toX(c);
+            mGridLines[i++] = x;
+            mGridLines[i++] = top;
+            mGridLines[i++] = x;
+            mGridLines[i++] = bottom;
+        }
+        return count;
+    }
+
+    // Fades from fully opaque to transparent and back once per animation period
+    private static int pulseAlpha(long now, int speed) {
+        float phase = (float) (now % speed) / speed;
+        return Math.round(Math.abs(2 * phase - 1) * 255);
+    }
+
+    // parent fragment will implement this method to respond to taps on cells
+    public interface OnCellClickListener {
+        void onCellClick(int row, int col);
+    }
+
+    public interface OnViewportChangeListener {
+        // The grid rows [firstRow, endRow) and columns [firstCol, endCol) in view, for a grid
+        // whose top left corner is at originRow, originCol of its board
+        void onViewportChange(int originRow, int originCol, int firstRow, int endRow, int firstCol, int endCol);
+    }
+
+    private class RenderThread extends Thread {
+
+        private final SurfaceHolder mHolder;
+        private boolean mRunning = true;
+
+        RenderThread(SurfaceHolder holder) {
+            super("LifeGridView");
+            mHolder = holder;
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                int deadColor, aliveColor, alpha, width, height;
+                long nanos;
+                synchronized (mLock) {
+                    // Sleep until something changes, unless live cells are pulsing
+                    while (mRunning && !(mDirty && mPending != null)
+                            && !(mAnimationSpeed > 0 && mShownPopulation > 0)) {
+                        try {
+                            mLock.wait();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                    if (!mRunning) return;
+
+                    Trace.beginSection(DRAW_SECTION);
+                    long start = System.nanoTime();
+                    updateShown();
+                    nanos = System.nanoTime() - start;
+                    mDirty = false;
+
+                    deadColor = mDeadCellColor;
+                    aliveColor = mAliveCellColor;
+                    mFrameViewport.set(mViewport);
+                    alpha = mAnimationSpeed > 0 ? pulseAlpha(SystemClock.uptimeMillis(), mAnimationSpeed) : 255;
+                    width = mSurfaceWidth;
+                    height = mSurfaceHeight;
+                }
+
+                // lockCanvas blocks until the display can take another frame
+                if (width > 0 && height > 0)
+                    nanos += drawFrame(mHolder, deadColor, alpha, aliveColor, mFrameViewport);
+                Trace.endSection();
+
+                StepMetrics metrics = mMetrics;
+                if (metrics != null) metrics.recordFrame(System.nanoTime(), nanos);
+            }
+        }
+
+        void quit() {
+            synchronized (mLock) {
+                mRunning = false;
+                mLock.notifyAll();
+            }
+            boolean retry = true;
+            while (retry) {
+                try {
+                    join();
+                    retry = false;
+                } catch (InterruptedException e) {
+                    // Keep waiting, the surface is about to go away
+                }
+            }
+        }
+    }
+}
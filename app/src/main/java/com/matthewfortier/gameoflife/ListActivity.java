@@ -1,14 +1,14 @@
 package com.matthewfortier.gameoflife;
 
 import android.content.Intent;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.util.DiffUtil;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.SearchView;
 import android.view.LayoutInflater;
 import android.view.Menu;
 import android.view.MenuInflater;
@@ -17,81 +17,208 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageView;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import com.google.android.gms.tasks.OnFailureListener;
 import com.google.android.gms.tasks.OnSuccessListener;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
 import com.google.firebase.storage.FirebaseStorage;
 import com.google.firebase.storage.StorageReference;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.ObjectInputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class ListActivity extends AppCompatActivity {
 
     final int REQUEST_CODE = 0;
     private static final String COLOR_ALIVE = "alive";
     private static final String COLOR_DEAD = "dead";
-    private static final String GRID = "data";
-    private static final int ROWS = 20;
-    private static final int COLS = 20;
+    private static final String GRID = "grid";
+    private static final String RULE = "rule";
+    private static final String GENERATION = "generation";
+    private static final String STORE = "store";
+    private static final String BOARD_DIRECTORY = "boards";
+    // Bigger patterns are read into a file rather than kept on the heap
+    private static final long MAX_HEAP_CELLS = 1 << 24;
+    private static final int PAGE_SIZE = 20;
+    // The next page is asked for when this close to the end of the list
+    private static final int PRELOAD_ROWS = 5;
+    private static final int SEARCH_RESULTS = 100;
 
     final FirebaseDatabase mDatabase = FirebaseDatabase.getInstance();
     DatabaseReference mRef = mDatabase.getReference();
-    List<GamePattern> mPatterns = new ArrayList<GamePattern>();
+    private CachedPatternFeed mFeed;
+    private PatternPager mPager;
+    // What the list is being searched for, or null when it shows the pages
+    private String mSearch;
     private RecyclerView mRecyclerView;
-    private RecyclerView.Adapter mAdapter;
+    private PatternAdapter mAdapter;
+    private ThumbnailCache mThumbnails;
+    // Reads imported files, which can be big enough to take a while
+    private final ExecutorService mImporter = Executors.newSingleThreadExecutor();
+    // Only touched by the importer thread
+    private File mBoardFile;
+
+    // Keeps small patterns on the heap and maps large ones from a file in the app's storage
+    private final CellGrid.Factory mBoardFactory = new CellGrid.Factory() {
+        @Override
+        public CellGrid create(int rows, int cols) throws IOException {
+            if ((long) rows * cols <= MAX_HEAP_CELLS)
+                return new BitGrid(rows, cols);
+
+            // A board's screen deletes its file when it goes away; anything else left here
+            // is from an import that never got that far, or an app that was killed
+            File directory = new File(getFilesDir(), BOARD_DIRECTORY);
+            if (!directory.isDirectory() && !directory.mkdirs())
+                throw new IOException("Could not create " + directory);
+            File[] old = directory.listFiles();
+            if (old != null)
+                for (File file : old)
+                    if (!LifeFragment.isStoreOpen(file)) file.delete();
+
+            mBoardFile = File.createTempFile("board", ".golm", directory);
+            return MappedGrid.create(mBoardFile, rows, cols);
+        }
+
+        @Override
+        public long getMaxCells() {
+            return MappedGrid.MAX_CELLS;
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.pattern_list);
 
+        // Thumbnails are downloaded from Firebase Storage only when neither cache has them
+        final StorageReference storageRef = FirebaseStorage.getInstance().getReference();
+        mThumbnails = new ThumbnailCache(getCacheDir(), new ThumbnailCache.Source() {
+            @Override
+            public void fetch(String name, final Callback callback) {
+                StorageReference imageRef = storageRef.child(getString(R.string.database_directory) + name);
+                final long ONE_MEGABYTE = 1024 * 1024;
+                imageRef.getBytes(ONE_MEGABYTE).addOnSuccessListener(new OnSuccessListener<byte[]>() {
+                    @Override
+                    public void onSuccess(byte[] bytes) {
+                        callback.onFetched(bytes);
+                    }
+                }).addOnFailureListener(new OnFailureListener() {
+                    @Override
+                    public void onFailure(@NonNull Exception exception) {
+                        callback.onFailed(exception);
+                    }
+                });
+            }
+        });
+
         // Set up list recycler view
         mRecyclerView = findViewById(R.id.pattern_recycler_view);
-        mRecyclerView.setLayoutManager(new LinearLayoutManager(getApplicationContext()));
-
-        // Get all of the patterns from Firebase database
-        mRef.child(getString(R.string.database_pattern)).addValueEventListener(new ValueEventListener() {
+        final LinearLayoutManager layoutManager = new LinearLayoutManager(getApplicationContext());
+        mRecyclerView.setLayoutManager(layoutManager);
+        mAdapter = new PatternAdapter();
+        mRecyclerView.setAdapter(mAdapter);
+
+        // Only pattern metadata is listed, a page at a time; cells are fetched when a pattern is opened.
+        // Everything seen is kept in the library, which fills the list until the pages arrive
+        mFeed = new CachedPatternFeed(new FirebasePatternFeed(mRef.child(getString(R.string.database_pattern)),
+                mRef.child(getString(R.string.database_pattern_info))), new PatternLibrary(this));
+        mPager = new PatternPager(mFeed, PAGE_SIZE);
+        mPager.setListener(new PatternPager.Listener() {
             @Override
-            public void onDataChange(DataSnapshot dataSnapshot) {
-                // Loop through all patterns, converting them to GamePatterns
-                for (DataSnapshot entryDataSnapshot : dataSnapshot.getChildren()) {
-                    GamePattern tmp = entryDataSnapshot.getValue(GamePattern.class);
-                    mPatterns.add(tmp);
-                }
-
-                // Set the adapter if not done already
-                if (mAdapter == null) {
-                    mAdapter = new PatternAdapter(mPatterns);
-                    mRecyclerView.setAdapter(mAdapter);
-                }
+            public void onPatternsChanged(List<PatternInfo> patterns) {
+                if (mSearch == null) mAdapter.setPatterns(patterns);
             }
 
             @Override
-            public void onCancelled(DatabaseError databaseError) {
+            public void onError(Exception e) {
+                e.printStackTrace();
+            }
+        });
+        mRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                if (mSearch == null && layoutManager.findLastVisibleItemPosition() >= mAdapter.getItemCount() - PRELOAD_ROWS)
+                    mPager.loadMore();
+            }
+        });
+        mFeed.loadCached(PAGE_SIZE, new PatternFeed.PageCallback() {
+            @Override
+            public void onPage(List<PatternInfo> page) {
+                mPager.showCached(page);
+            }
 
+            @Override
+            public void onError(Exception e) {
             }
         });
+        mPager.loadMore();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mFeed.close();
+        mThumbnails.shutdown();
+        mImporter.shutdown();
     }
 
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         MenuInflater inflater = getMenuInflater();
         inflater.inflate(R.menu.list_menu, menu);
+
+        // Searching looks through the library, so it works offline and finds patterns saved here
+        MenuItem search = menu.findItem(R.id.search);
+        search.setOnActionExpandListener(new MenuItem.OnActionExpandListener() {
+            @Override
+            public boolean onMenuItemActionExpand(MenuItem item) {
+                return true;
+            }
+
+            @Override
+            public boolean onMenuItemActionCollapse(MenuItem item) {
+                mSearch = null;
+                mAdapter.setPatterns(mPager.getPatterns());
+                return true;
+            }
+        });
+        SearchView searchView = (SearchView) search.getActionView();
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                return onQueryTextChange(query);
+            }
+
+            @Override
+            public boolean onQueryTextChange(final String text) {
+                mSearch = text;
+                mFeed.search(text, SEARCH_RESULTS, new PatternFeed.PageCallback() {
+                    @Override
+                    public void onPage(List<PatternInfo> page) {
+                        // Results for anything but the latest text are out of date
+                        if (text.equals(mSearch)) mAdapter.setPatterns(page);
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                    }
+                });
+                return true;
+            }
+        });
         return true;
     }
 
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
-        // Upload .data file from external storage
+        // Load a .data, .rle or .cells file from external storage
         switch (item.getItemId()) {
             case R.id.load:
                 Intent intent = new Intent(Intent.ACTION_GET_CONTENT);
@@ -110,31 +237,69 @@ public class ListActivity extends AppCompatActivity {
         // If success, get Uri of file selected
         if (requestCode == REQUEST_CODE) {
             if (resultData != null) {
-                Uri uri = resultData.getData();
-                try {
-                    // Uses ObjectInputStream to put/get serializable data into file
-                    InputStream stream = getContentResolver().openInputStream(uri);
-                    ObjectInputStream ois = new ObjectInputStream(stream);
-                    boolean[][] data = (boolean[][]) ois.readObject();
-
-                    // Start new intent with the data from the file to load
-                    Intent i = new Intent(getApplicationContext(), MainActivity.class);
-                    i.putExtra(GRID, data);
-                    startActivity(i);
-                } catch (IOException | ClassNotFoundException e) {
-                    e.printStackTrace();
-                }
+                final Uri uri = resultData.getData();
+                mImporter.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            final Intent i = readPattern(uri);
+                            runOnUiThread(new Runnable() {
+                                @Override
+                                public void run() {
+                                    if (!isFinishing()) startActivity(i);
+                                    else GridRepository.getInstance().release(i.getLongExtra(GRID, GridRepository.NO_GRID));
+                                }
+                            });
+                        } catch (IOException e) {
+                            e.printStackTrace();
+                            runOnUiThread(new Runnable() {
+                                @Override
+                                public void run() {
+                                    Toast.makeText(getApplicationContext(), R.string.load_failed, Toast.LENGTH_SHORT).show();
+                                }
+                            });
+                        }
+                    }
+                });
             }
         }
     }
 
+    // Reads the file into an intent for the board's screen; runs on the importer thread
+    private Intent readPattern(Uri uri) throws IOException {
+        // Works out the format from the content, since providers often hide the name
+        InputStream stream = getContentResolver().openInputStream(uri);
+        if (stream == null) throw new IOException("Could not open " + uri);
+        PatternFile pattern;
+        try {
+            pattern = PatternFile.read(stream, mBoardFactory);
+        } finally {
+            stream.close();
+        }
+
+        // Start new intent with the data from the file to load
+        Intent i = new Intent(getApplicationContext(), MainActivity.class);
+        if (pattern.getCells() instanceof MappedGrid) {
+            MappedGrid store = (MappedGrid) pattern.getCells();
+            store.setRule(pattern.getRule());
+            store.setGeneration(pattern.getGeneration());
+            store.close();
+            i.putExtra(STORE, mBoardFile.getPath());
+        } else {
+            i.putExtra(GRID, GridRepository.getInstance().put(pattern.getGrid()));
+        }
+        i.putExtra(RULE, pattern.getRule().toString());
+        i.putExtra(COLOR_ALIVE, pattern.getAliveColor());
+        i.putExtra(COLOR_DEAD, pattern.getDeadColor());
+        i.putExtra(GENERATION, pattern.getGeneration());
+        return i;
+    }
+
     private class PatternHolder extends RecyclerView.ViewHolder implements View.OnClickListener {
 
-        FirebaseStorage storage = FirebaseStorage.getInstance();
-        StorageReference storageRef = storage.getReference();
         ImageView mPatternImage;
         TextView mPatternTitle;
-        private GamePattern mPattern;
+        private PatternInfo mPattern;
 
         public PatternHolder(LayoutInflater inflater, ViewGroup parent) {
             super(inflater.inflate(R.layout.list_item_pattern, parent, false));
@@ -144,52 +309,85 @@ public class ListActivity extends AppCompatActivity {
             mPatternTitle = itemView.findViewById(R.id.pattern_title);
         }
 
-        public void bind(GamePattern pattern) {
+        public void bind(PatternInfo pattern) {
             mPattern = pattern;
             mPatternTitle.setText(pattern.getTitle());
 
-            StorageReference imageRef = storageRef.child(getString(R.string.database_directory) + pattern.getFilename());
+            // Rows fill the width, so decode thumbnails for the list's width even before layout
+            int size = mRecyclerView.getWidth() > 0 ? mRecyclerView.getWidth()
+                    : getResources().getDisplayMetrics().widthPixels;
+            // Patterns saved on this device have no uploaded image
+            if (pattern.getFilename() != null) {
+                mThumbnails.load(pattern.getFilename(), mPatternImage, size);
+            } else {
+                mThumbnails.cancel(mPatternImage);
+                mPatternImage.setImageDrawable(null);
+            }
+        }
 
-            final long ONE_MEGABYTE = 1024 * 1024;
-            imageRef.getBytes(ONE_MEGABYTE).addOnSuccessListener(new OnSuccessListener<byte[]>() {
+        @Override
+        public void onClick(View v) {
+            // The cells are only downloaded now that the pattern is being opened
+            mFeed.loadPattern(mPattern.getKey(), new PatternFeed.PatternCallback() {
                 @Override
-                public void onSuccess(byte[] bytes) {
-                    Bitmap b = BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
-                    mPatternImage.setImageBitmap(b);
+                public void onPattern(GamePattern pattern) {
+                    BitGrid grid;
+                    try {
+                        grid = pattern.toBitGrid();
+                    } catch (IllegalArgumentException e) {
+                        onError(e);
+                        return;
+                    }
+
+                    // Start Intent, handing the board over by id
+                    Intent i = new Intent(getApplicationContext(), MainActivity.class);
+                    i.putExtra(GRID, GridRepository.getInstance().put(grid));
+                    i.putExtra(COLOR_ALIVE, pattern.getAlive());
+                    i.putExtra(COLOR_DEAD, pattern.getDead());
+                    i.putExtra(RULE, pattern.getRule());
+                    startActivity(i);
                 }
-            }).addOnFailureListener(new OnFailureListener() {
+
                 @Override
-                public void onFailure(@NonNull Exception exception) {
-                    // Handle any errors
+                public void onError(Exception e) {
+                    e.printStackTrace();
+                    Toast.makeText(getApplicationContext(), R.string.load_failed, Toast.LENGTH_SHORT).show();
                 }
             });
         }
 
-        @Override
-        public void onClick(View v) {
-            boolean[][] tmp = new boolean[ROWS][COLS];
-
+    }
 
-            for (int i = 0; i < ROWS; i++)
-                for (int j = 0; j < COLS; j++)
-                    tmp[j][i] = mPattern.getData().get((j * COLS) + i);
+    private class PatternAdapter extends RecyclerView.Adapter<PatternHolder> {
 
-            // Start Intent
-            Intent i = new Intent(getApplicationContext(), MainActivity.class);
-            i.putExtra(GRID, tmp);
-            i.putExtra(COLOR_ALIVE, mPattern.getAlive());
-            i.putExtra(COLOR_DEAD, mPattern.getDead());
-            startActivity(i);
-        }
+        private List<PatternInfo> mPatterns = new ArrayList<PatternInfo>();
 
-    }
+        // Swaps in the new list and tells the view only about the rows that differ
+        void setPatterns(final List<PatternInfo> patterns) {
+            final List<PatternInfo> old = mPatterns;
+            DiffUtil.DiffResult diff = DiffUtil.calculateDiff(new DiffUtil.Callback() {
+                @Override
+                public int getOldListSize() {
+                    return old.size();
+                }
 
-    private class PatternAdapter extends RecyclerView.Adapter<PatternHolder> {
+                @Override
+                public int getNewListSize() {
+                    return patterns.size();
+                }
 
-        private List<GamePattern> mGamePatterns;
+                @Override
+                public boolean areItemsTheSame(int oldPosition, int newPosition) {
+                    return old.get(oldPosition).getKey().equals(patterns.get(newPosition).getKey());
+                }
 
-        PatternAdapter(List<GamePattern> patterns) {
-            this.mGamePatterns = patterns;
+                @Override
+                public boolean areContentsTheSame(int oldPosition, int newPosition) {
+                    return old.get(oldPosition).sameContents(patterns.get(newPosition));
+                }
+            });
+            mPatterns = patterns;
+            diff.dispatchUpdatesTo(this);
         }
 
         @Override
@@ -200,13 +398,18 @@ public class ListActivity extends AppCompatActivity {
 
         @Override
         public void onBindViewHolder(PatternHolder holder, int position) {
-            GamePattern pattern = mGamePatterns.get(position);
-            holder.bind(pattern);
+            holder.bind(mPatterns.get(position));
+        }
+
+        @Override
+        public void onViewRecycled(PatternHolder holder) {
+            // The row is off screen, so whatever it was waiting for is no longer needed
+            mThumbnails.cancel(holder.mPatternImage);
         }
 
         @Override
         public int getItemCount() {
-            return mGamePatterns.size();
+            return mPatterns.size();
         }
 
     }
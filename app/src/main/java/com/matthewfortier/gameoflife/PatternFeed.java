@@ -0,0 +1,48 @@
+package com.matthewfortier.gameoflife;
+
+import java.util.List;
+
+/**
+ * Where the shared patterns come from, a page of metadata at a time.
+ *
+ * Patterns are ordered by key. The list only ever holds PatternInfo, and the cells of a
+ * pattern are fetched when it is opened. FirebasePatternFeed is the real one; tests use
+ * an in-memory stand-in. Callbacks arrive on the main thread.
+ */
+public interface PatternFeed {
+
+    interface PageCallback {
+        void onPage(List<PatternInfo> page);
+
+        void onError(Exception e);
+    }
+
+    interface PatternCallback {
+        void onPattern(GamePattern pattern);
+
+        void onError(Exception e);
+    }
+
+    // Hears about patterns in loaded pages, and new ones, changing after they were loaded
+    interface Watcher {
+        // Added or changed
+        void onPatternChanged(PatternInfo info);
+
+        void onPatternRemoved(String key);
+    }
+
+    // Up to count patterns with keys after afterKey, or from the first when it is null.
+    // The patterns in the page are watched until the feed is closed
+    void loadPage(String afterKey, int count, PageCallback callback);
+
+    void setWatcher(Watcher watcher);
+
+    // The whole pattern, cells included
+    void loadPattern(String key, PatternCallback callback);
+
+    // Stores a new pattern and returns its key
+    String publish(GamePattern pattern);
+
+    // Stops watching
+    void close();
+}
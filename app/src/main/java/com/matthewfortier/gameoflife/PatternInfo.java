@@ -0,0 +1,121 @@
+package com.matthewfortier.gameoflife;
+
+import com.google.firebase.database.Exclude;
+
+/**
+ * What the pattern list shows about a pattern: everything but its cells, which are only
+ * fetched when the pattern is opened.
+ *
+ * Stored in the database under its own node, keyed like the full record it describes.
+ */
+public class PatternInfo {
+    private String mKey;
+    private String mTitle;
+    private String mFilename;
+    private int mRows;
+    private int mCols;
+    // Records from before this was stored have 0
+    private int mPopulation;
+    private int mAlive;
+    private int mDead;
+    private String mRule;
+
+    public PatternInfo() {}
+
+    public PatternInfo(String key, GamePattern pattern) {
+        this.mKey = key;
+        this.mTitle = pattern.getTitle();
+        this.mFilename = pattern.getFilename();
+        this.mRows = pattern.getRows();
+        this.mCols = pattern.getCols();
+        this.mPopulation = pattern.toBitGrid().getPopulation();
+        this.mAlive = pattern.getAlive();
+        this.mDead = pattern.getDead();
+        this.mRule = pattern.getRule();
+    }
+
+    // The database key, which isn't stored in the record itself
+    @Exclude
+    public String getKey() {
+        return mKey;
+    }
+
+    public void setKey(String key) {
+        this.mKey = key;
+    }
+
+    public String getTitle() {
+        return mTitle;
+    }
+
+    public void setTitle(String title) {
+        this.mTitle = title;
+    }
+
+    public String getFilename() {
+        return mFilename;
+    }
+
+    public void setFilename(String filename) {
+        this.mFilename = filename;
+    }
+
+    public int getRows() {
+        return mRows;
+    }
+
+    public void setRows(int rows) {
+        this.mRows = rows;
+    }
+
+    public int getCols() {
+        return mCols;
+    }
+
+    public void setCols(int cols) {
+        this.mCols = cols;
+    }
+
+    public int getPopulation() {
+        return mPopulation;
+    }
+
+    public void setPopulation(int population) {
+        this.mPopulation = population;
+    }
+
+    public int getAlive() {
+        return mAlive;
+    }
+
+    public void setAlive(int alive) {
+        this.mAlive = alive;
+    }
+
+    public int getDead() {
+        return mDead;
+    }
+
+    public void setDead(int dead) {
+        this.mDead = dead;
+    }
+
+    public String getRule() {
+        return mRule;
+    }
+
+    public void setRule(String rule) {
+        this.mRule = rule;
+    }
+
+    // Whether a list row showing this pattern would look the same as one showing other
+    public boolean sameContents(PatternInfo other) {
+        return equal(mTitle, other.mTitle) && equal(mFilename, other.mFilename)
+                && mRows == other.mRows && mCols == other.mCols && mPopulation == other.mPopulation
+                && mAlive == other.mAlive && mDead == other.mDead && equal(mRule, other.mRule);
+    }
+
+    private static boolean equal(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
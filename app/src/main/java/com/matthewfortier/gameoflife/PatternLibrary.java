@@ -0,0 +1,280 @@
+package com.matthewfortier.gameoflife;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Patterns kept on the device in SQLite, so the list opens straight away and works offline.
+ *
+ * Each row holds a pattern's metadata, and its cells too once it has been opened or saved
+ * here, as the UTF-8 bytes of the RLE body. Rows copied from the shared patterns keep the
+ * database key, so listing a page is the same keyset query on the key's index as it is
+ * online. Titles are searched by prefix on their slug, which has an index of its own.
+ *
+ * Patterns saved on this device are keyed by "local-" and the slug of their title, so
+ * saving under a title again replaces the entry, and are never touched when the shared
+ * list changes.
+ *
+ * Everything here blocks on the disk and belongs off the main thread.
+ */
+public class PatternLibrary extends SQLiteOpenHelper {
+
+    private static final String NAME = "patterns.db";
+    private static final int VERSION = 1;
+    private static final String LOCAL_PREFIX = "local-";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String TABLE = "patterns";
+    private static final String KEY = "key";
+    private static final String SLUG = "slug";
+    private static final String TITLE = "title";
+    private static final String FILENAME = "filename";
+    private static final String ROWS = "rows";
+    private static final String COLS = "cols";
+    private static final String POPULATION = "population";
+    private static final String ALIVE = "alive";
+    private static final String DEAD = "dead";
+    private static final String RULE = "rule";
+    private static final String CREATED = "created";
+    private static final String LOCAL = "local";
+    private static final String CELLS = "cells";
+
+    // Everything a PatternInfo needs, in the order toInfo reads it
+    private static final String[] INFO_COLUMNS = {
+            KEY, TITLE, FILENAME, ROWS, COLS, POPULATION, ALIVE, DEAD, RULE
+    };
+
+    public PatternLibrary(Context context) {
+        super(context, NAME, null, VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE + " ("
+                + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + KEY + " TEXT NOT NULL UNIQUE, "
+                + SLUG + " TEXT NOT NULL, "
+                + TITLE + " TEXT, "
+                + FILENAME + " TEXT, "
+                + ROWS + " INTEGER NOT NULL, "
+                + COLS + " INTEGER NOT NULL, "
+                + POPULATION + " INTEGER NOT NULL, "
+                + ALIVE + " INTEGER NOT NULL, "
+                + DEAD + " INTEGER NOT NULL, "
+                + RULE + " TEXT, "
+                + CREATED + " INTEGER NOT NULL, "
+                + LOCAL + " INTEGER NOT NULL DEFAULT 0, "
+                + CELLS + " BLOB)");
+        db.execSQL("CREATE INDEX patterns_slug ON " + TABLE + " (" + SLUG + ")");
+        db.execSQL("CREATE INDEX patterns_created ON " + TABLE + " (" + CREATED + ")");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // Everything here can be fetched again except local saves, and there is only one version
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE);
+        onCreate(db);
+    }
+
+    // Up to count patterns with keys after afterKey, or from the first when it is null
+    public List<PatternInfo> list(String afterKey, int count, boolean sharedOnly) {
+        StringBuilder where = new StringBuilder();
+        List<String> args = new ArrayList<String>();
+        if (afterKey != null) {
+            where.append(KEY).append(" > ?");
+            args.add(afterKey);
+        }
+        if (sharedOnly) {
+            if (where.length() > 0) where.append(" AND ");
+            where.append(LOCAL).append(" = 0");
+        }
+        return query(where.length() > 0 ? where.toString() : null,
+                args.toArray(new String[args.size()]), KEY, count);
+    }
+
+    // Up to count patterns whose title starts with the text, by title
+    public List<PatternInfo> search(String text, int count) {
+        String prefix = SaveActivity.toSlug(text.trim());
+        if (prefix.isEmpty()) return list(null, count, false);
+        // Every slug with the prefix sorts between it and it followed by the highest character
+        return query(SLUG + " >= ? AND " + SLUG + " < ?",
+                new String[]{prefix, prefix + '\uffff'}, SLUG + ", " + KEY, count);
+    }
+
+    /**
+     * Stores a page of shared patterns that came after afterKey, and forgets any shared
+     * pattern the page skipped over, up to its last key or to the end if it was the last.
+     * Cells already stored are kept unless the pattern changed.
+     */
+    public void putPage(String afterKey, List<PatternInfo> page, boolean last) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            Set<String> keys = new HashSet<String>();
+            for (PatternInfo info : page)
+                keys.add(info.getKey());
+
+            StringBuilder where = new StringBuilder(LOCAL + " = 0");
+            List<String> args = new ArrayList<String>();
+            if (afterKey != null) {
+                where.append(" AND ").append(KEY).append(" > ?");
+                args.add(afterKey);
+            }
+            if (!last) {
+                // Only the last page can be empty
+                where.append(" AND ").append(KEY).append(" <= ?");
+                args.add(page.get(page.size() - 1).getKey());
+            }
+
+            Cursor cursor = db.query(TABLE, new String[]{KEY}, where.toString(),
+                    args.toArray(new String[args.size()]), null, null, null);
+            try {
+                while (cursor.moveToNext()) {
+                    String key = cursor.getString(0);
+                    if (!keys.contains(key))
+                        db.delete(TABLE, KEY + " = ?", new String[]{key});
+                }
+            } finally {
+                cursor.close();
+            }
+
+            for (PatternInfo info : page)
+                putInfo(db, info);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // Stores or updates one shared pattern's metadata
+    public void putInfo(PatternInfo info) {
+        putInfo(getWritableDatabase(), info);
+    }
+
+    // Stores a whole shared pattern, cells included
+    public void putPattern(String key, GamePattern pattern) {
+        ContentValues values = toValues(new PatternInfo(key, pattern));
+        values.put(CELLS, encodeCells(pattern));
+        SQLiteDatabase db = getWritableDatabase();
+        if (db.update(TABLE, values, KEY + " = ?", new String[]{key}) == 0) {
+            values.put(CREATED, System.currentTimeMillis());
+            db.insert(TABLE, null, values);
+        }
+    }
+
+    // Stores a pattern made on this device, replacing any saved under the same title, and returns its key
+    public String saveLocal(GamePattern pattern) {
+        String key = LOCAL_PREFIX + SaveActivity.toSlug(pattern.getTitle());
+        ContentValues values = toValues(new PatternInfo(key, pattern));
+        values.put(CELLS, encodeCells(pattern));
+        values.put(CREATED, System.currentTimeMillis());
+        values.put(LOCAL, 1);
+        getWritableDatabase().insertWithOnConflict(TABLE, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+        return key;
+    }
+
+    // The whole pattern, or null unless its cells are stored here
+    public GamePattern getPattern(String key) {
+        Cursor cursor = getReadableDatabase().query(TABLE,
+                new String[]{TITLE, FILENAME, ROWS, COLS, ALIVE, DEAD, RULE, CELLS},
+                KEY + " = ? AND " + CELLS + " IS NOT NULL", new String[]{key}, null, null, null);
+        try {
+            if (!cursor.moveToFirst()) return null;
+            GamePattern pattern = new GamePattern();
+            pattern.setTitle(cursor.getString(0));
+            pattern.setFilename(cursor.getString(1));
+            pattern.setRows(cursor.getInt(2));
+            pattern.setCols(cursor.getInt(3));
+            pattern.setAlive(cursor.getInt(4));
+            pattern.setDead(cursor.getInt(5));
+            pattern.setRule(cursor.getString(6));
+            pattern.setCells(new String(cursor.getBlob(7), UTF_8));
+            return pattern;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // Forgets a shared pattern that was removed; local saves stay
+    public void removeShared(String key) {
+        getWritableDatabase().delete(TABLE, KEY + " = ? AND " + LOCAL + " = 0", new String[]{key});
+    }
+
+    private void putInfo(SQLiteDatabase db, PatternInfo info) {
+        Cursor cursor = db.query(TABLE, INFO_COLUMNS, KEY + " = ?",
+                new String[]{info.getKey()}, null, null, null);
+        PatternInfo stored;
+        try {
+            stored = cursor.moveToFirst() ? toInfo(cursor) : null;
+        } finally {
+            cursor.close();
+        }
+
+        ContentValues values = toValues(info);
+        if (stored == null) {
+            values.put(CREATED, System.currentTimeMillis());
+            db.insert(TABLE, null, values);
+        } else if (!stored.sameContents(info)) {
+            // The cells may have changed too, so fetch them again next time
+            values.putNull(CELLS);
+            db.update(TABLE, values, KEY + " = ?", new String[]{info.getKey()});
+        }
+    }
+
+    private List<PatternInfo> query(String where, String[] args, String orderBy, int count) {
+        Cursor cursor = getReadableDatabase().query(TABLE, INFO_COLUMNS, where, args,
+                null, null, orderBy, String.valueOf(count));
+        try {
+            List<PatternInfo> patterns = new ArrayList<PatternInfo>(cursor.getCount());
+            while (cursor.moveToNext())
+                patterns.add(toInfo(cursor));
+            return patterns;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static PatternInfo toInfo(Cursor cursor) {
+        PatternInfo info = new PatternInfo();
+        info.setKey(cursor.getString(0));
+        info.setTitle(cursor.getString(1));
+        info.setFilename(cursor.getString(2));
+        info.setRows(cursor.getInt(3));
+        info.setCols(cursor.getInt(4));
+        info.setPopulation(cursor.getInt(5));
+        info.setAlive(cursor.getInt(6));
+        info.setDead(cursor.getInt(7));
+        info.setRule(cursor.getString(8));
+        return info;
+    }
+
+    private static ContentValues toValues(PatternInfo info) {
+        ContentValues values = new ContentValues();
+        values.put(KEY, info.getKey());
+        String title = info.getTitle() != null ? info.getTitle() : "";
+        values.put(SLUG, SaveActivity.toSlug(title));
+        values.put(TITLE, info.getTitle());
+        values.put(FILENAME, info.getFilename());
+        values.put(ROWS, info.getRows());
+        values.put(COLS, info.getCols());
+        values.put(POPULATION, info.getPopulation());
+        values.put(ALIVE, info.getAlive());
+        values.put(DEAD, info.getDead());
+        values.put(RULE, info.getRule());
+        return values;
+    }
+
+    private static byte[] encodeCells(GamePattern pattern) {
+        GamePattern compact = pattern.hasLegacyData() ? pattern.toCompact() : pattern;
+        return compact.getCells().getBytes(UTF_8);
+    }
+}
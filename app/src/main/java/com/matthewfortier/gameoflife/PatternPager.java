@@ -0,0 +1,150 @@
+package com.matthewfortier.gameoflife;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The patterns the list has loaded so far, kept in key order and grown a page at a time.
+ *
+ * Changes the feed reports for loaded patterns are applied in place. A new pattern past
+ * the last loaded key is left for the page that will contain it, so nothing is listed
+ * twice. Each change hands the listener a fresh copy of the list for it to diff.
+ *
+ * Patterns remembered from an earlier visit can be shown before any page arrives. Each
+ * page is the truth for the keys it covers, so cached patterns that are no longer in the
+ * feed disappear as the pages reach them.
+ */
+public class PatternPager implements PatternFeed.Watcher {
+
+    public interface Listener {
+        void onPatternsChanged(List<PatternInfo> patterns);
+
+        void onError(Exception e);
+    }
+
+    private final PatternFeed mFeed;
+    private final int mPageSize;
+    private final List<PatternInfo> mPatterns = new ArrayList<PatternInfo>();
+    private Listener mListener;
+    private boolean mLoading;
+    private boolean mEnd;
+    // The last key of the last page, or null before the first one
+    private String mCursor;
+
+    public PatternPager(PatternFeed feed, int pageSize) {
+        mFeed = feed;
+        mPageSize = pageSize;
+        feed.setWatcher(this);
+    }
+
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    public List<PatternInfo> getPatterns() {
+        return new ArrayList<PatternInfo>(mPatterns);
+    }
+
+    // Shows patterns from a cache until the pages covering them arrive
+    public void showCached(List<PatternInfo> patterns) {
+        boolean changed = false;
+        for (PatternInfo info : patterns)
+            if (indexOf(info.getKey()) < 0)
+                changed |= merge(info, true);
+        if (changed) notifyChanged();
+    }
+
+    public boolean hasMore() {
+        return !mEnd;
+    }
+
+    public boolean isLoading() {
+        return mLoading;
+    }
+
+    // Asks for the next page unless one is on its way or there are no more
+    public void loadMore() {
+        if (mLoading || mEnd) return;
+        mLoading = true;
+        final String afterKey = mCursor;
+        mFeed.loadPage(afterKey, mPageSize, new PatternFeed.PageCallback() {
+            @Override
+            public void onPage(List<PatternInfo> page) {
+                mLoading = false;
+                // A short page is the last one
+                if (page.size() < mPageSize) mEnd = true;
+                if (!page.isEmpty()) mCursor = page.get(page.size() - 1).getKey();
+                dropMissing(afterKey, mEnd ? null : mCursor, page);
+                for (PatternInfo info : page)
+                    merge(info, true);
+                notifyChanged();
+            }
+
+            @Override
+            public void onError(Exception e) {
+                mLoading = false;
+                if (mListener != null) mListener.onError(e);
+            }
+        });
+    }
+
+    @Override
+    public void onPatternChanged(PatternInfo info) {
+        if (merge(info, false)) notifyChanged();
+    }
+
+    @Override
+    public void onPatternRemoved(String key) {
+        int index = indexOf(key);
+        if (index < 0) return;
+        mPatterns.remove(index);
+        notifyChanged();
+    }
+
+    // Adds or replaces a pattern and returns whether the list changed
+    private boolean merge(PatternInfo info, boolean fromPage) {
+        int index = indexOf(info.getKey());
+        if (index >= 0) {
+            if (mPatterns.get(index).sameContents(info)) return false;
+            mPatterns.set(index, info);
+            return true;
+        }
+
+        if (!fromPage && !mEnd && (mCursor == null || info.getKey().compareTo(mCursor) > 0)) return false;
+        mPatterns.add(-index - 1, info);
+        return true;
+    }
+
+    // Removes patterns with keys in (afterKey, lastKey] that the page doesn't have; null bounds are open
+    private void dropMissing(String afterKey, String lastKey, List<PatternInfo> page) {
+        Set<String> keys = new HashSet<String>();
+        for (PatternInfo info : page)
+            keys.add(info.getKey());
+        for (Iterator<PatternInfo> it = mPatterns.iterator(); it.hasNext(); ) {
+            String key = it.next().getKey();
+            if (afterKey != null && key.compareTo(afterKey) <= 0) continue;
+            if (lastKey != null && key.compareTo(lastKey) > 0) break;
+            if (!keys.contains(key)) it.remove();
+        }
+    }
+
+    // Binary search by key, returning -(insertion point) - 1 when absent
+    private int indexOf(String key) {
+        int low = 0, high = mPatterns.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int compare = mPatterns.get(middle).getKey().compareTo(key);
+            if (compare < 0) low = middle + 1;
+            else if (compare > 0) high = middle - 1;
+            else return middle;
+        }
+        return -(low + 1);
+    }
+
+    private void notifyChanged() {
+        if (mListener != null) mListener.onPatternsChanged(getPatterns());
+    }
+}
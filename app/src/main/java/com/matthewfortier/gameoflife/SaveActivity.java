@@ -24,7 +24,6 @@ import android.widget.Toast;
 
 import com.google.android.gms.tasks.OnFailureListener;
 import com.google.android.gms.tasks.OnSuccessListener;
-import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
 import com.google.firebase.storage.FirebaseStorage;
 import com.google.firebase.storage.StorageReference;
@@ -35,11 +34,10 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
 import java.text.Normalizer;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.regex.Pattern;
 
 public class SaveActivity extends AppCompatActivity {
@@ -49,15 +47,26 @@ public class SaveActivity extends AppCompatActivity {
     private static final Pattern WHITESPACE = Pattern.compile("[\\s]");
     private static final String COLOR_ALIVE = "alive";
     private static final String COLOR_DEAD = "dead";
-    private static final String GRID = "data";
+    private static final String GRID = "grid";
     private static final String FILENAME = "filename";
+    private static final String RULE = "rule";
+    private static final String GENERATION = "generation";
+    private static final String EXTENSION_DATA = ".data";
+    private static final String EXTENSION_RLE = ".rle";
+    private static final String EXTENSION_CELLS = ".cells";
     StorageReference mStorageRef;
     ImageView mSavedImage;
     Button mUploadButton;
     EditText mImageTitle;
-    boolean[][] mData;
+    // Shared with the screen that opened this one, so it must not be modified
+    BitGrid mGrid;
+    long mGridId;
     int mAliveColor;
     int mDeadColor;
+    String mRule;
+    long mGeneration;
+    // Writes the file and the library entry, which can take a while for a big board
+    final ExecutorService mSaver = Executors.newSingleThreadExecutor();
 
     // https://stackoverflow.com/questions/1657193/java-code-library-for-generating-slugs-for-use-in-pretty-urls
     // This function turns a pattern title into a valid filename
@@ -79,9 +88,17 @@ public class SaveActivity extends AppCompatActivity {
         // Gte the data from the intent
         final String filename = getIntent().getExtras().getString(FILENAME);
 
-        mData = (boolean[][]) getIntent().getExtras().getSerializable(GRID);
+        // The board is gone if the process was restarted since it was handed over
+        mGridId = getIntent().getExtras().getLong(GRID, GridRepository.NO_GRID);
+        mGrid = GridRepository.getInstance().get(mGridId);
+        if (mGrid == null) {
+            finish();
+            return;
+        }
         mAliveColor = getIntent().getExtras().getInt(COLOR_ALIVE);
         mDeadColor = getIntent().getExtras().getInt(COLOR_DEAD);
+        mRule = Rule.parseOrDefault(getIntent().getExtras().getString(RULE)).toString();
+        mGeneration = getIntent().getExtras().getLong(GENERATION);
 
         final File cachePath = new File(getCacheDir() + getString(R.string.database_directory_prefix) + filename + ".png");
 
@@ -109,30 +126,20 @@ public class SaveActivity extends AppCompatActivity {
                 builder.setTitle(R.string.save_location)
                         .setPositiveButton(R.string.to_disk, new DialogInterface.OnClickListener() {
                             public void onClick(DialogInterface dialog, int which) {
-                                // Make new directory Patterns in external storage if it does not already exists
-                                String root = Environment.getExternalStorageDirectory().toString();
-                                File myDir = new File(root + getString(R.string.patterns_directory));
-                                myDir.mkdirs();
-
-                                File file = new File(myDir, toSlug(mImageTitle.getText().toString()) + ".data");
-
-                                // If a file with the same name exists, overwrite it
-                                if (file.exists())
-                                    file.delete();
-                                try {
-
-                                    // Send the 2s array into a file using ObjectOutput Stream
-                                    FileOutputStream fos = new FileOutputStream(file);
-                                    ObjectOutputStream oos = new ObjectOutputStream(fos);
-
-                                    oos.writeObject(mData);
-                                    oos.close();
-                                } catch (IOException e) {
-                                    e.printStackTrace();
-                                } finally {
-                                    Toast.makeText(getApplicationContext(), R.string.disk_success, Toast.LENGTH_SHORT).show();
-                                    finish();
-                                }
+                                saveToDisk(EXTENSION_DATA);
+                            }
+                        })
+                        .setNeutralButton(R.string.export, new DialogInterface.OnClickListener() {
+                            public void onClick(DialogInterface dialog, int which) {
+                                // Pick one of the text formats other Life programs read
+                                new AlertDialog.Builder(SaveActivity.this)
+                                        .setTitle(R.string.export)
+                                        .setItems(R.array.export_formats, new DialogInterface.OnClickListener() {
+                                            public void onClick(DialogInterface dialog, int which) {
+                                                saveToDisk(which == 0 ? EXTENSION_RLE : EXTENSION_CELLS);
+                                            }
+                                        })
+                                        .show();
                             }
                         })
                         .setNegativeButton(R.string.upload, new DialogInterface.OnClickListener() {
@@ -148,18 +155,13 @@ public class SaveActivity extends AppCompatActivity {
                                             public void onSuccess(UploadTask.TaskSnapshot taskSnapshot) {
                                                 // If the file was uploaded, upload the objects that go with it
                                                 FirebaseDatabase database = FirebaseDatabase.getInstance();
-                                                DatabaseReference myRef = database.getReference(getString(R.string.pattern));
+                                                PatternFeed feed = new FirebasePatternFeed(database.getReference(getString(R.string.pattern)),
+                                                        database.getReference(getString(R.string.database_pattern_info)));
 
-                                                // Convert 2d array to List because Firebase does not support serializable data
-                                                List<Boolean> tmp = new ArrayList<Boolean>();
-                                                for (int i = 0; i < mData.length; i++)
-                                                    for (int j = 0; j < mData.length; j++)
-                                                        tmp.add(mData[i][j]);
-
-                                                // Make a GamePattern object with data, title, colors and filename of the image
-                                                GamePattern pattern = new GamePattern(tmp, mImageTitle.getText().toString(), mAliveColor, mDeadColor, toSlug(mImageTitle.getText().toString()) + ".png");
-                                                // Upload the object to the database
-                                                myRef.push().setValue(pattern);
+                                                // Make a GamePattern object with the cells run length encoded, title, colors and filename of the image
+                                                GamePattern pattern = new GamePattern(mGrid, mImageTitle.getText().toString(), mAliveColor, mDeadColor, toSlug(mImageTitle.getText().toString()) + ".png", mRule);
+                                                // Upload the object to the database, with its metadata alongside for the list
+                                                feed.publish(pattern);
 
                                                 // Go to the list activity to see newly uploaded pattern
                                                 Intent i = new Intent(getApplicationContext(), ListActivity.class);
@@ -180,4 +182,72 @@ public class SaveActivity extends AppCompatActivity {
             }
         });
     }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // A rotated screen reads its grid again from the same intent
+        if (!isChangingConfigurations())
+            GridRepository.getInstance().release(mGridId);
+        // A save in progress still finishes
+        mSaver.shutdown();
+    }
+
+    // Saves the pattern in the background, then says so and closes the screen
+    private void saveToDisk(final String extension) {
+        final String title = mImageTitle.getText().toString();
+        mSaver.execute(new Runnable() {
+            @Override
+            public void run() {
+                writeToDisk(title, extension);
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Toast.makeText(getApplicationContext(), R.string.disk_success, Toast.LENGTH_SHORT).show();
+                        finish();
+                    }
+                });
+            }
+        });
+    }
+
+    // Writes the pattern to the Patterns directory in the format the extension names; runs on mSaver
+    private void writeToDisk(String title, String extension) {
+        // Make new directory Patterns in external storage if it does not already exists
+        String root = Environment.getExternalStorageDirectory().toString();
+        File myDir = new File(root + getString(R.string.patterns_directory));
+        myDir.mkdirs();
+
+        File file = new File(myDir, toSlug(title) + extension);
+
+        // If a file with the same name exists, overwrite it
+        if (file.exists())
+            file.delete();
+        try {
+            FileOutputStream fos = new FileOutputStream(file);
+            try {
+                Rule rule = Rule.parse(mRule);
+                if (extension.equals(EXTENSION_RLE)) {
+                    RleFormat.write(mGrid, rule, fos);
+                } else if (extension.equals(EXTENSION_CELLS)) {
+                    CellsFormat.write(mGrid, title, fos);
+                } else {
+                    // Write the packed pattern file through the stream's channel
+                    new PatternFile(mGrid, rule, mGeneration, mAliveColor, mDeadColor).write(fos.getChannel());
+                }
+            } finally {
+                fos.close();
+            }
+
+            // Keep a copy in the library too, where the list's search finds it
+            PatternLibrary library = new PatternLibrary(this);
+            try {
+                library.saveLocal(new GamePattern(mGrid, title, mAliveColor, mDeadColor, null, mRule));
+            } finally {
+                library.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
 }
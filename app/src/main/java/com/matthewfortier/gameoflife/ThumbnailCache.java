@@ -0,0 +1,287 @@
+package com.matthewfortier.gameoflife;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads pattern thumbnails into list rows through a memory cache and a disk cache.
+ *
+ * Decoded bitmaps are kept in an LruCache bounded by bytes, keyed by name and target
+ * size, which is shared by the whole process so it outlives the screen that filled it.
+ * Downloaded files are kept under the cache directory, trimmed oldest first once
+ * they pass a byte limit, and decoded with an inSampleSize that fits the view, so a
+ * thumbnail is downloaded once and decoded at most once per size while it stays cached.
+ * Files are written under a temporary name and renamed into place, and one that won't
+ * decode is deleted and downloaded again.
+ *
+ * Each ImageView remembers the thumbnail it was last asked to show, and a result is only
+ * put in views that still want it, so a recycled row never shows a stale image. Requests
+ * for the same thumbnail share one load, and a load that no view wants any more is
+ * cancelled if it hasn't finished reading the disk.
+ *
+ * Everything but the disk work and decoding runs on the main thread. Call shutdown when
+ * the screen using the cache goes away, to stop its loader thread.
+ */
+public class ThumbnailCache {
+
+    private static final String DIRECTORY = "thumbnails";
+    private static final long MAX_DISK_BYTES = 20 * 1024 * 1024;
+    private static final String PARTIAL_SUFFIX = ".partial";
+
+    // Only touched on the main thread
+    private static LruCache<String, Bitmap> sMemory;
+
+    // Fetches the encoded image for a name, calling back on the main thread
+    public interface Source {
+        void fetch(String name, Callback callback);
+
+        interface Callback {
+            void onFetched(byte[] bytes);
+
+            void onFailed(Exception e);
+        }
+    }
+
+    private final Source mSource;
+    private final File mDirectory;
+    private final LruCache<String, Bitmap> mMemory;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private boolean mShutdown;
+
+    // The key each view is waiting for or showing
+    private final Map<ImageView, String> mTargets = new WeakHashMap<ImageView, String>();
+    // Loads in progress by key
+    private final Map<String, Future<?>> mPending = new HashMap<String, Future<?>>();
+
+    public ThumbnailCache(File cacheDir, Source source) {
+        mSource = source;
+        mDirectory = new File(cacheDir, DIRECTORY);
+        mDirectory.mkdirs();
+
+        if (sMemory == null) {
+            // An eighth of the heap, counted in kilobytes
+            int maxKilobytes = (int) (Runtime.getRuntime().maxMemory() / 1024 / 8);
+            sMemory = new LruCache<String, Bitmap>(maxKilobytes) {
+                @Override
+                protected int sizeOf(String key, Bitmap bitmap) {
+                    return bitmap.getByteCount() / 1024;
+                }
+            };
+        }
+        mMemory = sMemory;
+    }
+
+    // Shows the named thumbnail in the view once it is loaded, decoded to about size pixels across
+    public void load(String name, ImageView view, int size) {
+        final String key = name + "@" + size;
+        String previous = mTargets.put(view, key);
+        if (previous != null && !previous.equals(key))
+            cancelIfUnwanted(previous);
+
+        Bitmap bitmap = mMemory.get(key);
+        if (bitmap != null) {
+            mTargets.remove(view);
+            view.setImageBitmap(bitmap);
+            return;
+        }
+        view.setImageDrawable(null);
+
+        // Someone else already asked; the result goes to every view waiting for the key
+        if (mPending.containsKey(key)) return;
+        mPending.put(key, mExecutor.submit(new DiskLoad(key, name, size)));
+    }
+
+    // Stops the view from being given anything still loading
+    public void cancel(ImageView view) {
+        String key = mTargets.remove(view);
+        if (key != null) cancelIfUnwanted(key);
+    }
+
+    // Drops every load in progress and lets the loader thread end; the cache can't be used after
+    public void shutdown() {
+        mShutdown = true;
+        for (Future<?> pending : mPending.values())
+            pending.cancel(false);
+        mPending.clear();
+        mTargets.clear();
+        // Anything already running finishes, so no file is left half written
+        mExecutor.shutdown();
+    }
+
+    // Largest power of two that keeps the decoded image at least the requested size
+    static int sampleSize(int width, int height, int requestedWidth, int requestedHeight) {
+        int sample = 1;
+        while (width / (sample * 2) >= requestedWidth && height / (sample * 2) >= requestedHeight)
+            sample *= 2;
+        return sample;
+    }
+
+    private void cancelIfUnwanted(String key) {
+        if (mTargets.containsValue(key)) return;
+        Future<?> pending = mPending.remove(key);
+        if (pending != null) pending.cancel(false);
+    }
+
+    // Called on the main thread with the decoded bitmap, or null if loading failed
+    private void deliver(String key, Bitmap bitmap) {
+        // A cancelled load may still finish; it is cached but not shown
+        mPending.remove(key);
+        if (mShutdown) return;
+        if (bitmap == null) return;
+        mMemory.put(key, bitmap);
+
+        List<ImageView> waiting = new ArrayList<ImageView>();
+        for (Map.Entry<ImageView, String> target : mTargets.entrySet())
+            if (key.equals(target.getValue())) waiting.add(target.getKey());
+        for (ImageView view : waiting) {
+            mTargets.remove(view);
+            view.setImageBitmap(bitmap);
+        }
+    }
+
+    private void postDeliver(final String key, final Bitmap bitmap) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                deliver(key, bitmap);
+            }
+        });
+    }
+
+    private File fileFor(String name) {
+        // Names are slugs, but keep anything else from reaching outside the directory
+        return new File(mDirectory, name.replace(File.separatorChar, '_'));
+    }
+
+    private static Bitmap decode(File file, int size) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(), options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) return null;
+
+        options.inSampleSize = sampleSize(options.outWidth, options.outHeight, size, size);
+        options.inJustDecodeBounds = false;
+        return BitmapFactory.decodeFile(file.getPath(), options);
+    }
+
+    // Deletes the least recently used files until the directory fits in MAX_DISK_BYTES
+    private void trimDisk() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) return;
+        long total = 0;
+        for (File file : files)
+            total += file.length();
+        if (total <= MAX_DISK_BYTES) return;
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long difference = a.lastModified() - b.lastModified();
+                return difference < 0 ? -1 : difference > 0 ? 1 : 0;
+            }
+        });
+        for (int i = 0; i < files.length && total > MAX_DISK_BYTES; i++) {
+            total -= files[i].length();
+            files[i].delete();
+        }
+    }
+
+    // Decodes from the disk cache, or asks the source and then decodes what it sends
+    private class DiskLoad implements Runnable {
+
+        private final String mKey;
+        private final String mName;
+        private final int mSize;
+
+        DiskLoad(String key, String name, int size) {
+            mKey = key;
+            mName = name;
+            mSize = size;
+        }
+
+        @Override
+        public void run() {
+            final File file = fileFor(mName);
+            if (file.exists()) {
+                // The modification time is the disk cache's recency
+                file.setLastModified(System.currentTimeMillis());
+                Bitmap bitmap = decode(file, mSize);
+                if (bitmap != null) {
+                    postDeliver(mKey, bitmap);
+                    return;
+                }
+                // Damaged somehow, so fetch it again
+                file.delete();
+            }
+
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    // Nobody wants it any more; don't download it
+                    if (mShutdown || !mPending.containsKey(mKey)) return;
+                    mSource.fetch(mName, new Source.Callback() {
+                        @Override
+                        public void onFetched(final byte[] bytes) {
+                            if (mShutdown) return;
+                            mExecutor.execute(new Runnable() {
+                                @Override
+                                public void run() {
+                                    postDeliver(mKey, store(file, bytes));
+                                }
+                            });
+                        }
+
+                        @Override
+                        public void onFailed(Exception e) {
+                            deliver(mKey, null);
+                        }
+                    });
+                }
+            });
+        }
+
+        // Writes the bytes under a temporary name and renames them into place, so the
+        // file only ever exists whole
+        private Bitmap store(File file, byte[] bytes) {
+            File partial = new File(mDirectory, file.getName() + PARTIAL_SUFFIX);
+            try {
+                FileOutputStream out = new FileOutputStream(partial);
+                try {
+                    out.write(bytes);
+                } finally {
+                    out.close();
+                }
+                if (!partial.renameTo(file)) throw new IOException("Couldn't rename " + partial);
+                trimDisk();
+            } catch (IOException e) {
+                e.printStackTrace();
+                partial.delete();
+                return BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
+            }
+
+            // Keeping a download that won't decode would only fail again next time
+            Bitmap bitmap = decode(file, mSize);
+            if (bitmap == null) file.delete();
+            return bitmap;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.matthewfortier.gameoflife;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Draws pattern previews straight from the cell data, off the screen and off the UI thread.
+ *
+ * Nothing depends on a view being laid out, so a board of any size can be drawn at any
+ * resolution. Each row of pixels is built by GridRaster in an int array and written with
+ * one setPixels call.
+ *
+ * Rendering and PNG encoding run on a single background thread, and results are
+ * delivered on the main thread.
+ */
+public class ThumbnailRenderer {
+
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    public interface Listener {
+        void onSaved(File file);
+
+        void onFailed(File file, IOException e);
+    }
+
+    // Draws the grid into a bitmap whose longer side is at most maxSize pixels
+    public static Bitmap render(BitGrid grid, int maxSize, int aliveColor, int deadColor) {
+        int rows = grid.getRows();
+        int cols = grid.getCols();
+        int width, height;
+        int longest = Math.max(rows, cols);
+        if (longest <= maxSize) {
+            int cellSize = maxSize / longest;
+            width = cols * cellSize;
+            height = rows * cellSize;
+        } else {
+            width = Math.max(1, (int) ((long) cols * maxSize / longest));
+            height = Math.max(1, (int) ((long) rows * maxSize / longest));
+        }
+
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        int[] pixels = new int[width];
+        long[] cells = new long[grid.getWordsPerRow()];
+        for (int y = 0; y < height; y++) {
+            GridRaster.renderRow(grid, y, width, height, aliveColor, deadColor, cells, pixels);
+            bitmap.setPixels(pixels, 0, width, 0, y, width, 1);
+        }
+        return bitmap;
+    }
+
+    // Renders and writes a PNG on the background thread; the grid must not be modified meanwhile
+    public void save(final BitGrid grid, final int maxSize, final int aliveColor, final int deadColor,
+                     final File file, final Listener listener) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                IOException error = null;
+                Bitmap bitmap = render(grid, maxSize, aliveColor, deadColor);
+                try {
+                    FileOutputStream stream = new FileOutputStream(file);
+                    try {
+                        // PNG ignores the quality setting
+                        bitmap.compress(Bitmap.CompressFormat.PNG, 100, stream);
+                    } finally {
+                        stream.close();
+                    }
+                } catch (IOException e) {
+                    error = e;
+                } finally {
+                    bitmap.recycle();
+                }
+
+                final IOException failure = error;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (failure == null) listener.onSaved(file);
+                        else listener.onFailed(file, failure);
+                    }
+                });
+            }
+        });
+    }
+
+    // Stops taking new work; anything already queued still runs and reports back
+    public void shutdown() {
+        mExecutor.shutdown();
+    }
+}
@@ -0,0 +1,76 @@
+package com.matthewfortier.gameoflife;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A PatternFeed kept in a sorted map, answering every call straight away. Every stored
+ * pattern is watched, which is more than Firebase does but lets tests make changes
+ * anywhere.
+ */
+public class InMemoryPatternFeed implements PatternFeed {
+
+    private final TreeMap<String, GamePattern> mPatterns = new TreeMap<String, GamePattern>();
+    private Watcher mWatcher;
+    private int mNextKey;
+    private int mPagesLoaded;
+    private int mPatternsLoaded;
+
+    @Override
+    public void loadPage(String afterKey, int count, PageCallback callback) {
+        Map<String, GamePattern> tail = afterKey == null ? mPatterns : mPatterns.tailMap(afterKey, false);
+        List<PatternInfo> page = new ArrayList<PatternInfo>();
+        for (Map.Entry<String, GamePattern> entry : tail.entrySet()) {
+            if (page.size() == count) break;
+            page.add(new PatternInfo(entry.getKey(), entry.getValue()));
+        }
+        mPagesLoaded++;
+        callback.onPage(page);
+    }
+
+    @Override
+    public void setWatcher(Watcher watcher) {
+        mWatcher = watcher;
+    }
+
+    @Override
+    public void loadPattern(String key, PatternCallback callback) {
+        mPatternsLoaded++;
+        GamePattern pattern = mPatterns.get(key);
+        if (pattern != null) callback.onPattern(pattern);
+        else callback.onError(new IllegalStateException("No pattern " + key));
+    }
+
+    @Override
+    public String publish(GamePattern pattern) {
+        // Zero padded so keys sort in the order they were made, like push keys
+        String key = String.format("k%05d", mNextKey++);
+        put(key, pattern);
+        return key;
+    }
+
+    public void put(String key, GamePattern pattern) {
+        mPatterns.put(key, pattern);
+        if (mWatcher != null) mWatcher.onPatternChanged(new PatternInfo(key, pattern));
+    }
+
+    public void remove(String key) {
+        if (mPatterns.remove(key) != null && mWatcher != null)
+            mWatcher.onPatternRemoved(key);
+    }
+
+    public int getPagesLoaded() {
+        return mPagesLoaded;
+    }
+
+    public int getPatternsLoaded() {
+        return mPatternsLoaded;
+    }
+
+    @Override
+    public void close() {
+        mWatcher = null;
+    }
+}
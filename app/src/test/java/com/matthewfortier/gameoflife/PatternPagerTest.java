@@ -0,0 +1,98 @@
+package com.matthewfortier.gameoflife;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PatternPagerTest {
+
+    private static GamePattern pattern(String title) {
+        return new GamePattern(Arrays.asList(true, false, false, true), 2, 2, title, 1, 2, title + ".png", "B3/S23");
+    }
+
+    private static InMemoryPatternFeed feedWith(int count) {
+        InMemoryPatternFeed feed = new InMemoryPatternFeed();
+        for (int i = 0; i < count; i++)
+            feed.publish(pattern("p" + i));
+        return feed;
+    }
+
+    @Test
+    public void loadMore_pagesThroughInKeyOrder() {
+        InMemoryPatternFeed feed = feedWith(7);
+        PatternPager pager = new PatternPager(feed, 3);
+
+        pager.loadMore();
+        assertEquals(3, pager.getPatterns().size());
+        assertTrue(pager.hasMore());
+        pager.loadMore();
+        pager.loadMore();
+        List<PatternInfo> patterns = pager.getPatterns();
+        assertEquals(7, patterns.size());
+        assertFalse(pager.hasMore());
+        for (int i = 0; i < 7; i++)
+            assertEquals("p" + i, patterns.get(i).getTitle());
+
+        // Nothing left to ask for
+        pager.loadMore();
+        assertEquals(3, feed.getPagesLoaded());
+        // Listing never touches the cells
+        assertEquals(0, feed.getPatternsLoaded());
+    }
+
+    @Test
+    public void changes_applyInPlaceWithoutDuplicates() {
+        InMemoryPatternFeed feed = feedWith(5);
+        PatternPager pager = new PatternPager(feed, 3);
+        pager.loadMore();
+
+        // Past the loaded page, so it waits for the page that contains it
+        feed.publish(pattern("new"));
+        assertEquals(3, pager.getPatterns().size());
+
+        feed.put("k00001", pattern("renamed"));
+        feed.remove("k00000");
+        List<PatternInfo> patterns = pager.getPatterns();
+        assertEquals(2, patterns.size());
+        assertEquals("renamed", patterns.get(0).getTitle());
+
+        pager.loadMore();
+        patterns = pager.getPatterns();
+        assertEquals(5, patterns.size());
+        assertEquals("new", patterns.get(4).getTitle());
+        // That page was full, so it takes an empty one to find the end
+        assertTrue(pager.hasMore());
+        pager.loadMore();
+        assertFalse(pager.hasMore());
+
+        // Once everything is loaded, new patterns are added as they come
+        feed.publish(pattern("newer"));
+        assertEquals(6, pager.getPatterns().size());
+    }
+
+    @Test
+    public void showCached_isReplacedByThePagesThatCoverIt() {
+        InMemoryPatternFeed feed = feedWith(5);
+        PatternPager pager = new PatternPager(feed, 3);
+        pager.showCached(Arrays.asList(new PatternInfo("k00001", pattern("stale")),
+                new PatternInfo("k00002", pattern("p2")),
+                new PatternInfo("k00009", pattern("deleted"))));
+        assertEquals(3, pager.getPatterns().size());
+
+        // The first page brings the rest of its range, but says nothing past k00002
+        pager.loadMore();
+        List<PatternInfo> patterns = pager.getPatterns();
+        assertEquals(4, patterns.size());
+        assertEquals("p1", patterns.get(1).getTitle());
+        assertEquals("k00009", patterns.get(3).getKey());
+
+        // The last page covers everything after it
+        pager.loadMore();
+        patterns = pager.getPatterns();
+        assertEquals(5, patterns.size());
+        assertEquals("k00004", patterns.get(4).getKey());
+    }
+}
@@ -0,0 +1,18 @@
+package com.matthewfortier.gameoflife;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ThumbnailCacheTest {
+
+    @Test
+    public void sampleSize_keepsTheImageAtLeastTheRequestedSize() {
+        assertEquals(1, ThumbnailCache.sampleSize(500, 500, 400, 400));
+        assertEquals(2, ThumbnailCache.sampleSize(1000, 1000, 500, 500));
+        assertEquals(4, ThumbnailCache.sampleSize(2048, 1024, 300, 200));
+        // The shorter side decides
+        assertEquals(2, ThumbnailCache.sampleSize(4000, 800, 100, 300));
+        assertEquals(1, ThumbnailCache.sampleSize(100, 100, 1080, 1080));
+    }
+}
@@ -0,0 +1,53 @@
+package com.matthewfortier.gameoflife.benchmark;
+
+import com.matthewfortier.gameoflife.BitGrid;
+
+import java.util.Random;
+
+/**
+ * Square boards for the benchmarks, always the same for the same kind and size.
+ *
+ * A soup is half alive at random and keeps changing everywhere for a long time. Gliders
+ * are one per 16 by 16 block, so most of the board is empty and stays that way. Blocks
+ * fill the board with 2 by 2 still lifes that never change.
+ */
+final class Boards {
+
+    static final String SOUP = "soup";
+    static final String GLIDERS = "gliders";
+    static final String BLOCKS = "blocks";
+
+    private static final long SEED = 42;
+    private static final int GLIDER_SPACING = 16;
+    private static final int[][] GLIDER = {{0, 1}, {1, 2}, {2, 0}, {2, 1}, {2, 2}};
+
+    private Boards() {
+    }
+
+    static BitGrid create(String kind, int size) {
+        BitGrid grid = new BitGrid(size, size);
+        if (SOUP.equals(kind)) {
+            Random random = new Random(SEED);
+            for (int i = 0; i < size; i++)
+                for (int j = 0; j < size; j++)
+                    grid.set(i, j, random.nextBoolean());
+        } else if (GLIDERS.equals(kind)) {
+            for (int i = 0; i + 3 <= size; i += GLIDER_SPACING)
+                for (int j = 0; j + 3 <= size; j += GLIDER_SPACING)
+                    for (int[] cell : GLIDER)
+                        grid.set(i + cell[0], j + cell[1], true);
+        } else if (BLOCKS.equals(kind)) {
+            // A block and a gap each way, so no two blocks touch, even across the wrapped edge
+            for (int i = 0; i + 3 <= size; i += 3)
+                for (int j = 0; j + 3 <= size; j += 3) {
+                    grid.set(i, j, true);
+                    grid.set(i, j + 1, true);
+                    grid.set(i + 1, j, true);
+                    grid.set(i + 1, j + 1, true);
+                }
+        } else {
+            throw new IllegalArgumentException("Unknown board " + kind);
+        }
+        return grid;
+    }
+}
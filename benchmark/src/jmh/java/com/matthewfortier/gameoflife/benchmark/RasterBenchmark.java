@@ -0,0 +1,59 @@
+package com.matthewfortier.gameoflife.benchmark;
+
+import com.matthewfortier.gameoflife.BitGrid;
+import com.matthewfortier.gameoflife.GridRaster;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turning a board into the pixels of a square image, as thumbnails and shared images
+ * are drawn, both shrinking large boards and blowing up small ones.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RasterBenchmark {
+
+    private static final int ALIVE = 0xFF000000;
+    private static final int DEAD = 0xFFFFFFFF;
+
+    @Param({"20", "256", "1024", "4096"})
+    public int size;
+
+    @Param({"256", "1024"})
+    public int image;
+
+    @Param({Boards.SOUP, Boards.GLIDERS})
+    public String board;
+
+    private BitGrid mGrid;
+    private long[] mCells;
+    private int[] mPixels;
+
+    @Setup
+    public void setUp() {
+        mGrid = Boards.create(board, size);
+        mCells = new long[mGrid.getWordsPerRow()];
+        mPixels = new int[image];
+    }
+
+    @Benchmark
+    public int render() {
+        // Summed so nothing the loop writes can be skipped
+        int sum = 0;
+        for (int y = 0; y < image; y++) {
+            GridRaster.renderRow(mGrid, y, image, image, ALIVE, DEAD, mCells, mPixels);
+            sum += mPixels[y];
+        }
+        return sum;
+    }
+}
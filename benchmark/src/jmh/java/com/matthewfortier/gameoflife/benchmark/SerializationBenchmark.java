@@ -0,0 +1,117 @@
+package com.matthewfortier.gameoflife.benchmark;
+
+import com.matthewfortier.gameoflife.BitGrid;
+import com.matthewfortier.gameoflife.GamePattern;
+import com.matthewfortier.gameoflife.PatternFile;
+import com.matthewfortier.gameoflife.RleFormat;
+import com.matthewfortier.gameoflife.Rule;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.channels.Channels;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saving and loading a board in every form it is kept in: the packed .data file, the
+ * serialized boolean[][] .data files used to be, RLE, and the two ways a GamePattern
+ * holds its cells in the database, as an RLE body and as the old list of booleans.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SerializationBenchmark {
+
+    @Param({"64", "512", "2048"})
+    public int size;
+
+    @Param({Boards.SOUP, Boards.GLIDERS})
+    public String board;
+
+    private BitGrid mGrid;
+    private byte[] mPatternFile;
+    private byte[] mLegacyFile;
+    private byte[] mRle;
+    private GamePattern mPattern;
+    private List<Boolean> mData;
+
+    @Setup
+    public void setUp() throws IOException {
+        mGrid = Boards.create(board, size);
+        mPatternFile = writePatternFile().toByteArray();
+        mLegacyFile = writeLegacyFile().toByteArray();
+        mRle = writeRle().toByteArray();
+        mPattern = encodeCells();
+        mData = flattenData();
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream writePatternFile() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new PatternFile(mGrid, Rule.CONWAY, 0, 0, 0).write(Channels.newChannel(out));
+        return out;
+    }
+
+    @Benchmark
+    public PatternFile readPatternFile() throws IOException {
+        return PatternFile.read(new ByteArrayInputStream(mPatternFile));
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream writeLegacyFile() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ObjectOutputStream stream = new ObjectOutputStream(out);
+        stream.writeObject(mGrid.toArray());
+        stream.writeObject(Rule.CONWAY.toString());
+        stream.close();
+        return out;
+    }
+
+    @Benchmark
+    public PatternFile readLegacyFile() throws IOException {
+        return PatternFile.readLegacy(new ByteArrayInputStream(mLegacyFile), BitGrid.FACTORY);
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream writeRle() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RleFormat.write(mGrid, Rule.CONWAY, out);
+        return out;
+    }
+
+    @Benchmark
+    public PatternFile readRle() throws IOException {
+        return RleFormat.read(new ByteArrayInputStream(mRle));
+    }
+
+    @Benchmark
+    public GamePattern encodeCells() {
+        return new GamePattern(mGrid, board, 0, 0, null, Rule.CONWAY.toString());
+    }
+
+    @Benchmark
+    public BitGrid decodeCells() {
+        return mPattern.toBitGrid();
+    }
+
+    @Benchmark
+    public List<Boolean> flattenData() {
+        return GamePattern.flatten(mGrid.toArray());
+    }
+
+    @Benchmark
+    public BitGrid unflattenData() {
+        return new GamePattern(mData, size, size, board, 0, 0, null, Rule.CONWAY.toString()).toBitGrid();
+    }
+}
@@ -0,0 +1,104 @@
+package com.matthewfortier.gameoflife.benchmark;
+
+import com.matthewfortier.gameoflife.BitGrid;
+import com.matthewfortier.gameoflife.LifeEngine;
+import com.matthewfortier.gameoflife.Rule;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One generation at a time, on the bare grid and through the engine the game runs.
+ *
+ * The engine also tracks which tiles changed, and splits large boards across threads
+ * when asked to. An iteration runs far more generations than a soup takes to settle
+ * into ash, so every board is put back to its start after RUN_LENGTH generations. The
+ * copy back costs about one generation, so it adds around 1/RUN_LENGTH to each score.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StepBenchmark {
+
+    // Generations a board runs before starting over, well before a soup calms down
+    private static final int RUN_LENGTH = 64;
+
+    @Param({"20", "256", "1024", "4096"})
+    public int size;
+
+    @Param({Boards.SOUP, Boards.GLIDERS, Boards.BLOCKS})
+    public String board;
+
+    private BitGrid mStart;
+    private BitGrid mGrid;
+    private BitGrid mNext;
+    private LifeEngine mEngine;
+    private LifeEngine mParallelEngine;
+    // Generations each board has run since it last started over
+    private int mGridRun;
+    private int mEngineRun;
+    private int mParallelRun;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        mStart = Boards.create(board, size);
+        mGrid = new BitGrid(size, size);
+        mGrid.copyFrom(mStart);
+        mNext = new BitGrid(size, size);
+        mEngine = new LifeEngine(size, size);
+        mEngine.load(mStart);
+        mParallelEngine = new LifeEngine(size, size);
+        mParallelEngine.setParallelism(Runtime.getRuntime().availableProcessors());
+        mParallelEngine.load(mStart);
+        mGridRun = mEngineRun = mParallelRun = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        mEngine.release();
+        mParallelEngine.release();
+    }
+
+    @Benchmark
+    public BitGrid grid() {
+        if (++mGridRun == RUN_LENGTH) {
+            mGridRun = 0;
+            mGrid.copyFrom(mStart);
+        }
+        mGrid.step(mNext, Rule.CONWAY);
+        BitGrid swap = mGrid;
+        mGrid = mNext;
+        mNext = swap;
+        return mGrid;
+    }
+
+    @Benchmark
+    public int engine() {
+        if (++mEngineRun == RUN_LENGTH) {
+            mEngineRun = 0;
+            mEngine.load(mStart);
+        }
+        mEngine.step(1);
+        return mEngine.getChangedCellCount();
+    }
+
+    @Benchmark
+    public int parallelEngine() {
+        if (++mParallelRun == RUN_LENGTH) {
+            mParallelRun = 0;
+            mParallelEngine.load(mStart);
+        }
+        mParallelEngine.step(1);
+        return mParallelEngine.getChangedCellCount();
+    }
+}
@@ -0,0 +1,111 @@
+package com.matthewfortier.gameoflife.cli;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * How many of each object the soups left behind, and how long they took to settle.
+ *
+ * Each worker thread keeps its own census, so counting never contends, and they are
+ * merged once every soup has run.
+ */
+public class Census {
+
+    private final Map<String, Entry> mEntries = new HashMap<String, Entry>();
+    private long mSoups;
+    private long mUnsettled;
+    private long mTotalLifespan;
+    private int mLongestLifespan;
+    private long mLongestSoup = -1;
+
+    public void add(SoupRunner.Result result) {
+        mSoups++;
+        if (!result.isSettled()) mUnsettled++;
+        mTotalLifespan += result.getLifespan();
+        if (result.getLifespan() > mLongestLifespan || mLongestSoup < 0) {
+            mLongestLifespan = result.getLifespan();
+            mLongestSoup = result.getSoup();
+        }
+        for (CensusObject object : result.getObjects())
+            add(object, 1);
+    }
+
+    public void merge(Census other) {
+        mSoups += other.mSoups;
+        mUnsettled += other.mUnsettled;
+        mTotalLifespan += other.mTotalLifespan;
+        if (other.mLongestSoup >= 0
+                && (other.mLongestLifespan > mLongestLifespan || mLongestSoup < 0)) {
+            mLongestLifespan = other.mLongestLifespan;
+            mLongestSoup = other.mLongestSoup;
+        }
+        for (Entry entry : other.mEntries.values())
+            add(entry.mObject, entry.mCount);
+    }
+
+    public long getSoups() {
+        return mSoups;
+    }
+
+    // Soups that were still going when the generation limit was reached
+    public long getUnsettled() {
+        return mUnsettled;
+    }
+
+    public double getMeanLifespan() {
+        return mSoups > 0 ? (double) mTotalLifespan / mSoups : 0;
+    }
+
+    public int getLongestLifespan() {
+        return mLongestLifespan;
+    }
+
+    // The soup that took longest to settle, or -1 before any soup
+    public long getLongestSoup() {
+        return mLongestSoup;
+    }
+
+    // One of each object found, most common first
+    public List<CensusObject> getObjects() {
+        List<Entry> entries = new ArrayList<Entry>(mEntries.values());
+        Collections.sort(entries, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry a, Entry b) {
+                if (a.mCount != b.mCount) return a.mCount > b.mCount ? -1 : 1;
+                return a.mObject.getCode().compareTo(b.mObject.getCode());
+            }
+        });
+        List<CensusObject> objects = new ArrayList<CensusObject>(entries.size());
+        for (Entry entry : entries)
+            objects.add(entry.mObject);
+        return objects;
+    }
+
+    public long getCount(String code) {
+        Entry entry = mEntries.get(code);
+        return entry != null ? entry.mCount : 0;
+    }
+
+    private void add(CensusObject object, long count) {
+        Entry entry = mEntries.get(object.getCode());
+        if (entry == null) {
+            entry = new Entry(object);
+            mEntries.put(object.getCode(), entry);
+        }
+        entry.mCount += count;
+    }
+
+    private static class Entry {
+
+        final CensusObject mObject;
+        long mCount;
+
+        Entry(CensusObject object) {
+            mObject = object;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.matthewfortier.gameoflife.cli;
+
+/**
+ * One object left behind by a soup, such as a block, a blinker or a glider.
+ *
+ * The code names the object the same way whatever its phase, orientation or position,
+ * in the style of apgsearch: xs, xp or xq for a still life, oscillator or spaceship,
+ * followed by the population, period or period again, then the RLE body of its smallest
+ * phase. An object that didn't repeat within the period searched gets zz and its
+ * population.
+ */
+public class CensusObject {
+
+    public static final int STILL_LIFE = 0;
+    public static final int OSCILLATOR = 1;
+    public static final int SPACESHIP = 2;
+    public static final int UNKNOWN = 3;
+
+    private static final String[] KIND_NAMES = {"still_life", "oscillator", "spaceship", "unknown"};
+
+    private final int mKind;
+    private final String mCode;
+    private final int mPopulation;
+    private final int mPeriod;
+
+    public CensusObject(int kind, String code, int population, int period) {
+        mKind = kind;
+        mCode = code;
+        mPopulation = population;
+        mPeriod = period;
+    }
+
+    public static String kindName(int kind) {
+        return KIND_NAMES[kind];
+    }
+
+    // One of STILL_LIFE, OSCILLATOR, SPACESHIP or UNKNOWN
+    public int getKind() {
+        return mKind;
+    }
+
+    public String getCode() {
+        return mCode;
+    }
+
+    // Live cells in the phase the object was found in
+    public int getPopulation() {
+        return mPopulation;
+    }
+
+    // Generations until it repeats, or 0 when unknown
+    public int getPeriod() {
+        return mPeriod;
+    }
+}
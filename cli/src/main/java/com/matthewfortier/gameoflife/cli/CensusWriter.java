@@ -0,0 +1,69 @@
+package com.matthewfortier.gameoflife.cli;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Streams soup results, then the census, as CSV or as JSON with one object per line.
+ *
+ * Every row says what it is in its first field: "soup" rows are written as soups finish,
+ * in whatever order the threads finish them, and "object" rows, one per kind of object,
+ * come once at the end. In CSV the fields that don't apply to a row are left empty.
+ */
+public class CensusWriter {
+
+    public static final int CSV = 0;
+    public static final int JSON = 1;
+
+    private static final String CSV_HEADER = "type,soup,lifespan,settled,population,period,objects,kind,code,count";
+
+    private final Writer mOut;
+    private final int mFormat;
+
+    public CensusWriter(Writer out, int format) throws IOException {
+        mOut = out;
+        mFormat = format;
+        if (format == CSV) {
+            mOut.write(CSV_HEADER);
+            mOut.write('\n');
+        }
+    }
+
+    // Safe to call from any thread
+    public synchronized void writeSoup(SoupRunner.Result result) throws IOException {
+        if (mFormat == CSV) {
+            mOut.write("soup," + result.getSoup() + ',' + result.getLifespan() + ',' + result.isSettled() + ','
+                    + result.getPopulation() + ',' + result.getPeriod() + ',' + result.getObjects().size() + ",,,\n");
+        } else {
+            mOut.write("{\"type\":\"soup\",\"soup\":" + result.getSoup()
+                    + ",\"lifespan\":" + result.getLifespan()
+                    + ",\"settled\":" + result.isSettled()
+                    + ",\"population\":" + result.getPopulation()
+                    + ",\"period\":" + result.getPeriod()
+                    + ",\"objects\":" + result.getObjects().size() + "}\n");
+        }
+    }
+
+    public synchronized void writeCensus(Census census) throws IOException {
+        for (CensusObject object : census.getObjects()) {
+            String kind = CensusObject.kindName(object.getKind());
+            long count = census.getCount(object.getCode());
+            if (mFormat == CSV) {
+                mOut.write("object,,,," + object.getPopulation() + ',' + object.getPeriod() + ",,"
+                        + kind + ',' + object.getCode() + ',' + count + '\n');
+            } else {
+                mOut.write("{\"type\":\"object\",\"code\":" + quote(object.getCode())
+                        + ",\"kind\":\"" + kind + '"'
+                        + ",\"population\":" + object.getPopulation()
+                        + ",\"period\":" + object.getPeriod()
+                        + ",\"count\":" + count + "}\n");
+            }
+        }
+        mOut.flush();
+    }
+
+    // Codes are plain ASCII, but quotes and backslashes would still need escaping
+    private static String quote(String text) {
+        return '"' + text.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+}
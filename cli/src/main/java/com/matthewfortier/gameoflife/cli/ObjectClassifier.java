@@ -0,0 +1,177 @@
+package com.matthewfortier.gameoflife.cli;
+
+import com.matthewfortier.gameoflife.BitGrid;
+import com.matthewfortier.gameoflife.LongSet;
+import com.matthewfortier.gameoflife.RleFormat;
+import com.matthewfortier.gameoflife.Rule;
+import com.matthewfortier.gameoflife.SparseUniverse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Splits what is left of a soup into objects and works out what each one is.
+ *
+ * Live cells within two cells of each other, diagonals included, are taken to be one
+ * object, since anything farther apart can't affect each other in the next generation.
+ * Each object is then run on its own until it comes back to its starting shape: in the
+ * same place it is a still life or an oscillator, somewhere else a spaceship. Objects
+ * that don't come back within the longest period searched are counted as unknown.
+ *
+ * Not thread safe; each thread should have its own.
+ */
+public class ObjectClassifier {
+
+    // Cells this close together, counting diagonals, are one object
+    private static final int REACH = 2;
+
+    private final int mMaxPeriod;
+    private final SparseUniverse mScratch = new SparseUniverse();
+    private final LongSet mSeen = new LongSet();
+
+    public ObjectClassifier(Rule rule, int maxPeriod) {
+        mScratch.setRule(rule);
+        mMaxPeriod = maxPeriod;
+    }
+
+    public List<CensusObject> classify(LongSet cells) {
+        List<CensusObject> objects = new ArrayList<CensusObject>();
+        mSeen.clear();
+        for (int slot = 0; slot < cells.getCapacity(); slot++) {
+            long key = cells.keyAt(slot);
+            if (key == LongSet.EMPTY || mSeen.contains(key)) continue;
+            objects.add(classifyObject(component(cells, key)));
+        }
+        return objects;
+    }
+
+    // Works out what a single object is, given the packed coordinates of its cells
+    public CensusObject classifyObject(long[] cells) {
+        mScratch.clear();
+        for (long key : cells)
+            mScratch.set(SparseUniverse.xOf(key), SparseUniverse.yOf(key), true);
+
+        long[] start = normalize(cells);
+        List<long[]> phases = new ArrayList<long[]>();
+        phases.add(start);
+        for (int period = 1; period <= mMaxPeriod; period++) {
+            mScratch.step();
+            long[] now = liveCells(mScratch.getLiveCells());
+            if (now.length == 0) break;
+
+            long[] shape = normalize(now);
+            if (Arrays.equals(shape, start)) {
+                boolean moved = minX(now) != minX(cells) || minY(now) != minY(cells);
+                int kind = moved ? CensusObject.SPACESHIP
+                        : period == 1 ? CensusObject.STILL_LIFE : CensusObject.OSCILLATOR;
+                String prefix = kind == CensusObject.STILL_LIFE ? "xs" + cells.length
+                        : (kind == CensusObject.OSCILLATOR ? "xp" : "xq") + period;
+                return new CensusObject(kind, prefix + "_" + smallestBody(phases), cells.length, period);
+            }
+            phases.add(shape);
+        }
+        return new CensusObject(CensusObject.UNKNOWN, "zz" + cells.length, cells.length, 0);
+    }
+
+    // Every live cell reachable from the start through cells within REACH of each other
+    private long[] component(LongSet cells, long start) {
+        long[] found = new long[16];
+        int count = 0;
+        mSeen.add(start);
+        found[count++] = start;
+        for (int i = 0; i < count; i++) {
+            int x = SparseUniverse.xOf(found[i]);
+            int y = SparseUniverse.yOf(found[i]);
+            for (int dy = -REACH; dy <= REACH; dy++) {
+                for (int dx = -REACH; dx <= REACH; dx++) {
+                    long key = SparseUniverse.key(x + dx, y + dy);
+                    if (!cells.contains(key) || !mSeen.add(key)) continue;
+                    if (count == found.length) found = Arrays.copyOf(found, count * 2);
+                    found[count++] = key;
+                }
+            }
+        }
+        return Arrays.copyOf(found, count);
+    }
+
+    // The same body for every phase, rotation and reflection: the shortest, then the first in order
+    private static String smallestBody(List<long[]> phases) {
+        String best = null;
+        for (long[] phase : phases) {
+            for (int transform = 0; transform < 8; transform++) {
+                String body = encode(transform(phase, transform));
+                if (best == null || body.length() < best.length()
+                        || body.length() == best.length() && body.compareTo(best) < 0)
+                    best = body;
+            }
+        }
+        return best;
+    }
+
+    // Bit 0 swaps x and y, bit 1 mirrors x and bit 2 mirrors y
+    private static long[] transform(long[] shape, int transform) {
+        long[] out = new long[shape.length];
+        for (int i = 0; i < shape.length; i++) {
+            int x = SparseUniverse.xOf(shape[i]);
+            int y = SparseUniverse.yOf(shape[i]);
+            if ((transform & 1) != 0) {
+                int swap = x;
+                x = y;
+                y = swap;
+            }
+            if ((transform & 2) != 0) x = -x;
+            if ((transform & 4) != 0) y = -y;
+            out[i] = SparseUniverse.key(x, y);
+        }
+        return normalize(out);
+    }
+
+    private static String encode(long[] shape) {
+        int width = 0;
+        int height = 0;
+        for (long key : shape) {
+            width = Math.max(width, SparseUniverse.xOf(key) + 1);
+            height = Math.max(height, SparseUniverse.yOf(key) + 1);
+        }
+        BitGrid grid = new BitGrid(height, width);
+        for (long key : shape)
+            grid.set(SparseUniverse.yOf(key), SparseUniverse.xOf(key), true);
+        return RleFormat.encodeBody(grid);
+    }
+
+    // Moved so the top left corner of its bounding box is at the origin, and sorted
+    private static long[] normalize(long[] cells) {
+        int minX = minX(cells);
+        int minY = minY(cells);
+        long[] out = new long[cells.length];
+        for (int i = 0; i < cells.length; i++)
+            out[i] = SparseUniverse.key(SparseUniverse.xOf(cells[i]) - minX, SparseUniverse.yOf(cells[i]) - minY);
+        Arrays.sort(out);
+        return out;
+    }
+
+    private static int minX(long[] cells) {
+        int min = Integer.MAX_VALUE;
+        for (long key : cells)
+            min = Math.min(min, SparseUniverse.xOf(key));
+        return min;
+    }
+
+    private static int minY(long[] cells) {
+        int min = Integer.MAX_VALUE;
+        for (long key : cells)
+            min = Math.min(min, SparseUniverse.yOf(key));
+        return min;
+    }
+
+    private static long[] liveCells(LongSet live) {
+        long[] cells = new long[live.size()];
+        int count = 0;
+        for (int slot = 0; slot < live.getCapacity(); slot++) {
+            long key = live.keyAt(slot);
+            if (key != LongSet.EMPTY) cells[count++] = key;
+        }
+        return cells;
+    }
+}
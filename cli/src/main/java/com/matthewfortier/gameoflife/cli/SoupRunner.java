@@ -0,0 +1,163 @@
+package com.matthewfortier.gameoflife.cli;
+
+import com.matthewfortier.gameoflife.CycleDetector;
+import com.matthewfortier.gameoflife.Rule;
+import com.matthewfortier.gameoflife.SparseUniverse;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Runs random soups on an endless plane until they settle, then takes a census of them.
+ *
+ * A soup has settled once the whole plane repeats, which the same CycleDetector and
+ * Zobrist hash as LifeEngine's notice, or once its population has gone round the same
+ * cycle for a while. The second catches soups that throw off spaceships, which never
+ * bring the whole plane back to an earlier state.
+ *
+ * Each soup's cells come from its own seed, so a soup is the same whichever thread runs
+ * it. The plane and the other working state are reused from soup to soup; each thread
+ * should have its own runner.
+ */
+public class SoupRunner {
+
+    // Generations between checks of the population for a cycle
+    private static final int CHECK_INTERVAL = 64;
+
+    private final int mRows;
+    private final int mCols;
+    private final double mDensity;
+    private final long mSeed;
+    private final int mMaxGenerations;
+    private final int mMaxPeriod;
+    // Generations the population must have repeated for
+    private final int mWindow;
+
+    private final SparseUniverse mUniverse = new SparseUniverse();
+    private final CycleDetector mCycles = new CycleDetector();
+    private final ObjectClassifier mClassifier;
+    private final Random mRandom = new Random();
+    private final int[] mPopulations;
+
+    public SoupRunner(int rows, int cols, double density, long seed, Rule rule, int maxGenerations, int maxPeriod) {
+        mRows = rows;
+        mCols = cols;
+        mDensity = density;
+        mSeed = seed;
+        mMaxGenerations = maxGenerations;
+        mMaxPeriod = maxPeriod;
+        mWindow = 4 * maxPeriod;
+        mUniverse.setRule(rule);
+        mClassifier = new ObjectClassifier(rule, maxPeriod);
+        mPopulations = new int[maxGenerations + 1];
+    }
+
+    public Result run(long soup) {
+        mUniverse.clear();
+        mCycles.reset();
+        mRandom.setSeed(mSeed + soup * 0x9E3779B97F4A7C15L);
+        long hash = 0;
+        for (int y = 0; y < mRows; y++) {
+            for (int x = 0; x < mCols; x++) {
+                if (mRandom.nextDouble() >= mDensity) continue;
+                mUniverse.set(x, y, true);
+                hash ^= CycleDetector.cellKey(SparseUniverse.key(x, y));
+            }
+        }
+        mPopulations[0] = mUniverse.getPopulation();
+
+        int generation = 0;
+        int period = 0;
+        while (generation < mMaxGenerations) {
+            mUniverse.step();
+            generation++;
+            for (int i = 0; i < mUniverse.getChangedCount(); i++)
+                hash ^= CycleDetector.cellKey(mUniverse.getChanged(i));
+            mPopulations[generation] = mUniverse.getPopulation();
+
+            mCycles.record(generation, hash, mPopulations[generation]);
+            if (mCycles.getState() != CycleDetector.ACTIVE) {
+                period = (int) mCycles.getPeriod();
+                break;
+            }
+            if (generation % CHECK_INTERVAL == 0) {
+                period = populationPeriod(generation);
+                if (period > 0) break;
+            }
+        }
+
+        if (period == 0)
+            return new Result(soup, generation, false, mUniverse.getPopulation(), 0,
+                    Collections.<CensusObject>emptyList());
+        return new Result(soup, settledAt(generation, period), true, mUniverse.getPopulation(), period,
+                mClassifier.classify(mUniverse.getLiveCells()));
+    }
+
+    // The shortest period the population has kept to over the whole window, or 0 if none
+    private int populationPeriod(int generation) {
+        if (generation < mWindow + mMaxPeriod) return 0;
+        for (int period = 1; period <= mMaxPeriod; period++) {
+            int i = generation;
+            while (i > generation - mWindow && mPopulations[i] == mPopulations[i - period])
+                i--;
+            if (i == generation - mWindow) return period;
+        }
+        return 0;
+    }
+
+    // The first generation from which the population only repeats itself
+    private int settledAt(int generation, int period) {
+        int i = generation;
+        while (i - period >= 0 && mPopulations[i] == mPopulations[i - period])
+            i--;
+        return Math.max(0, i - period + 1);
+    }
+
+    // What became of one soup
+    public static class Result {
+
+        private final long mSoup;
+        private final int mLifespan;
+        private final boolean mSettled;
+        private final int mPopulation;
+        private final int mPeriod;
+        private final List<CensusObject> mObjects;
+
+        Result(long soup, int lifespan, boolean settled, int population, int period, List<CensusObject> objects) {
+            mSoup = soup;
+            mLifespan = lifespan;
+            mSettled = settled;
+            mPopulation = population;
+            mPeriod = period;
+            mObjects = objects;
+        }
+
+        public long getSoup() {
+            return mSoup;
+        }
+
+        // Generations until it settled, or the generations run if it never did
+        public int getLifespan() {
+            return mLifespan;
+        }
+
+        public boolean isSettled() {
+            return mSettled;
+        }
+
+        public int getPopulation() {
+            return mPopulation;
+        }
+
+        // Period of the whole soup once settled, or 0 if it never did
+        public int getPeriod() {
+            return mPeriod;
+        }
+
+        // Empty unless it settled
+        public List<CensusObject> getObjects() {
+            return mObjects;
+        }
+    }
+}
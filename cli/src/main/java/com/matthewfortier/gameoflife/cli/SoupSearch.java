@@ -0,0 +1,183 @@
+package com.matthewfortier.gameoflife.cli;
+
+import com.matthewfortier.gameoflife.Rule;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs random soups without Android and writes what they settle into.
+ *
+ * Soups are numbered from 0 and handed out one at a time to a thread per core, so a
+ * thread that draws long-lived soups doesn't hold the others up. Each thread has its own
+ * plane, classifier and census, and the only thing they share is the output, so the
+ * search scales with the number of cores. A soup's cells only depend on the seed and
+ * its number, so a run can be repeated, or a single soup looked at again, with any
+ * number of threads.
+ */
+public class SoupSearch {
+
+    private static final String USAGE = "Usage: soupsearch [options]\n"
+            + "  --soups N            soups to run (default 1000)\n"
+            + "  --size ROWSxCOLS     area filled at random (default 16x16)\n"
+            + "  --density D          chance of each cell starting alive (default 0.5)\n"
+            + "  --seed S             seed of soup 0 (default from the clock)\n"
+            + "  --rule RULE          life-like rule such as B36/S23 (default B3/S23)\n"
+            + "  --threads N          worker threads (default one per core)\n"
+            + "  --max-generations N  give up on a soup after this many (default 50000)\n"
+            + "  --max-period N       longest period looked for (default 64)\n"
+            + "  --format csv|json    output format (default csv)\n"
+            + "  --output FILE        write to a file instead of standard output";
+
+    int mSoups = 1000;
+    int mRows = 16;
+    int mCols = 16;
+    double mDensity = 0.5;
+    long mSeed = System.currentTimeMillis();
+    Rule mRule = Rule.CONWAY;
+    int mThreads = Runtime.getRuntime().availableProcessors();
+    int mMaxGenerations = 50000;
+    int mMaxPeriod = 64;
+    int mFormat = CensusWriter.CSV;
+    String mOutput;
+
+    public static void main(String[] args) {
+        SoupSearch search;
+        try {
+            search = parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        try {
+            OutputStream stream = search.mOutput != null ? new FileOutputStream(search.mOutput) : System.out;
+            Writer out = new BufferedWriter(new OutputStreamWriter(stream, "UTF-8"));
+            long start = System.nanoTime();
+            Census census = search.run(new CensusWriter(out, search.mFormat));
+            out.close();
+            search.printSummary(census, (System.nanoTime() - start) / 1e9);
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+        } catch (InterruptedException e) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Reads the options in USAGE.
+     *
+     * @throws IllegalArgumentException for an unknown option or a bad value
+     */
+    static SoupSearch parse(String[] args) {
+        SoupSearch search = new SoupSearch();
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (option.equals("--help") || option.equals("-h"))
+                throw new IllegalArgumentException("Runs random soups and counts what they leave behind");
+            if (i + 1 == args.length)
+                throw new IllegalArgumentException("Missing value for " + option);
+            String value = args[++i];
+            try {
+                if (option.equals("--soups")) {
+                    search.mSoups = positive(option, Integer.parseInt(value));
+                } else if (option.equals("--size")) {
+                    int x = value.toLowerCase(Locale.US).indexOf('x');
+                    if (x < 0) throw new IllegalArgumentException("Size must look like 16x16: " + value);
+                    search.mRows = positive(option, Integer.parseInt(value.substring(0, x)));
+                    search.mCols = positive(option, Integer.parseInt(value.substring(x + 1)));
+                } else if (option.equals("--density")) {
+                    search.mDensity = Double.parseDouble(value);
+                    if (!(search.mDensity > 0 && search.mDensity <= 1))
+                        throw new IllegalArgumentException("Density must be more than 0 and at most 1: " + value);
+                } else if (option.equals("--seed")) {
+                    search.mSeed = Long.parseLong(value);
+                } else if (option.equals("--rule")) {
+                    search.mRule = Rule.parse(value);
+                } else if (option.equals("--threads")) {
+                    search.mThreads = positive(option, Integer.parseInt(value));
+                } else if (option.equals("--max-generations")) {
+                    search.mMaxGenerations = positive(option, Integer.parseInt(value));
+                } else if (option.equals("--max-period")) {
+                    search.mMaxPeriod = positive(option, Integer.parseInt(value));
+                } else if (option.equals("--format")) {
+                    if (value.equals("csv")) search.mFormat = CensusWriter.CSV;
+                    else if (value.equals("json")) search.mFormat = CensusWriter.JSON;
+                    else throw new IllegalArgumentException("Format must be csv or json: " + value);
+                } else if (option.equals("--output")) {
+                    search.mOutput = value;
+                } else {
+                    throw new IllegalArgumentException("Unknown option " + option);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a number for " + option + ": " + value);
+            }
+        }
+        return search;
+    }
+
+    // Runs every soup, writing each as it finishes and the census at the end
+    Census run(final CensusWriter writer) throws IOException, InterruptedException {
+        final AtomicLong next = new AtomicLong();
+        final AtomicReference<IOException> failure = new AtomicReference<IOException>();
+        final Census[] censuses = new Census[mThreads];
+        Thread[] threads = new Thread[mThreads];
+
+        for (int t = 0; t < mThreads; t++) {
+            final Census census = new Census();
+            final SoupRunner runner = new SoupRunner(mRows, mCols, mDensity, mSeed, mRule, mMaxGenerations, mMaxPeriod);
+            censuses[t] = census;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        long soup;
+                        while (failure.get() == null && (soup = next.getAndIncrement()) < mSoups) {
+                            SoupRunner.Result result = runner.run(soup);
+                            census.add(result);
+                            writer.writeSoup(result);
+                        }
+                    } catch (IOException e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            }, "Soup-" + t);
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        if (failure.get() != null) throw failure.get();
+
+        Census total = new Census();
+        for (Census census : censuses)
+            total.merge(census);
+        writer.writeCensus(total);
+        return total;
+    }
+
+    private void printSummary(Census census, double seconds) {
+        System.err.println(String.format(Locale.US,
+                "%d soups of %dx%d at %.2f, seed %d, rule %s, %d threads: %.1f s, %.0f soups/s",
+                census.getSoups(), mRows, mCols, mDensity, mSeed, mRule, mThreads, seconds,
+                census.getSoups() / seconds));
+        System.err.println(String.format(Locale.US,
+                "Mean lifespan %.1f, longest %d (soup %d), %d unsettled, %d kinds of object",
+                census.getMeanLifespan(), census.getLongestLifespan(), census.getLongestSoup(),
+                census.getUnsettled(), census.getObjects().size()));
+    }
+
+    private static int positive(String option, int value) {
+        if (value < 1) throw new IllegalArgumentException(option + " must be positive");
+        return value;
+    }
+}
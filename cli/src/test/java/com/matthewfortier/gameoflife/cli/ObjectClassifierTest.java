@@ -0,0 +1,62 @@
+package com.matthewfortier.gameoflife.cli;
+
+import com.matthewfortier.gameoflife.LongSet;
+import com.matthewfortier.gameoflife.Rule;
+import com.matthewfortier.gameoflife.SparseUniverse;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ObjectClassifierTest {
+
+    private final ObjectClassifier mClassifier = new ObjectClassifier(Rule.CONWAY, 64);
+
+    @Test
+    public void commonObjects_areNamedTheWayApgsearchNamesThem() {
+        CensusObject block = mClassifier.classifyObject(cells(0, 0, 1, 0, 0, 1, 1, 1));
+        assertEquals(CensusObject.STILL_LIFE, block.getKind());
+        assertEquals("xs4_2o$2o!", block.getCode());
+
+        CensusObject blinker = mClassifier.classifyObject(cells(0, 0, 1, 0, 2, 0));
+        assertEquals(CensusObject.OSCILLATOR, blinker.getKind());
+        assertEquals(2, blinker.getPeriod());
+
+        CensusObject glider = mClassifier.classifyObject(cells(1, 0, 2, 1, 0, 2, 1, 2, 2, 2));
+        assertEquals(CensusObject.SPACESHIP, glider.getKind());
+        assertEquals(4, glider.getPeriod());
+        assertTrue(glider.getCode().startsWith("xq4_"));
+    }
+
+    @Test
+    public void code_isTheSameInEveryOrientationAndPhase() {
+        CensusObject vertical = mClassifier.classifyObject(cells(5, 5, 5, 6, 5, 7));
+        CensusObject horizontal = mClassifier.classifyObject(cells(-3, 9, -2, 9, -1, 9));
+        assertEquals(horizontal.getCode(), vertical.getCode());
+
+        // A glider heading the other way, one phase on
+        CensusObject glider = mClassifier.classifyObject(cells(0, 0, 2, 0, 1, 1, 2, 1, 1, 2));
+        CensusObject mirrored = mClassifier.classifyObject(cells(1, 0, 0, 1, 0, 2, 1, 2, 2, 2));
+        assertEquals(mirrored.getCode(), glider.getCode());
+    }
+
+    @Test
+    public void classify_splitsObjectsThatAreApart() {
+        LongSet live = new LongSet();
+        for (long key : cells(0, 0, 1, 0, 0, 1, 1, 1, 10, 0, 11, 0, 12, 0))
+            live.add(key);
+
+        List<CensusObject> objects = mClassifier.classify(live);
+        assertEquals(2, objects.size());
+        assertNotEquals(objects.get(0).getKind(), objects.get(1).getKind());
+    }
+
+    private static long[] cells(int... xy) {
+        long[] keys = new long[xy.length / 2];
+        for (int i = 0; i < keys.length; i++)
+            keys[i] = SparseUniverse.key(xy[2 * i], xy[2 * i + 1]);
+        return keys;
+    }
+}
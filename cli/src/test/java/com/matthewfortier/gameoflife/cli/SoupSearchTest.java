@@ -0,0 +1,45 @@
+package com.matthewfortier.gameoflife.cli;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+public class SoupSearchTest {
+
+    @Test
+    public void census_doesNotDependOnTheNumberOfThreads() throws Exception {
+        Census single = search("--soups", "40", "--seed", "7", "--threads", "1");
+        Census several = search("--soups", "40", "--seed", "7", "--threads", "4");
+
+        assertEquals(40, several.getSoups());
+        assertEquals(single.getObjects().size(), several.getObjects().size());
+        for (CensusObject object : single.getObjects())
+            assertEquals(single.getCount(object.getCode()), several.getCount(object.getCode()));
+        assertEquals(single.getLongestSoup(), several.getLongestSoup());
+        // Blocks are always the most common object in Conway soups
+        assertEquals("xs4_2o$2o!", single.getObjects().get(0).getCode());
+    }
+
+    @Test
+    public void json_hasOneLinePerSoupAndKindOfObject() throws Exception {
+        StringWriter out = new StringWriter();
+        Census census = SoupSearch.parse(new String[]{"--soups", "5", "--seed", "1", "--threads", "2"})
+                .run(new CensusWriter(out, CensusWriter.JSON));
+
+        String[] lines = out.toString().split("\n");
+        assertEquals(5 + census.getObjects().size(), lines.length);
+        assertTrue(lines[0].startsWith("{\"type\":\"soup\""));
+        assertTrue(lines[lines.length - 1].startsWith("{\"type\":\"object\""));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parse_rejectsUnknownOptions() {
+        SoupSearch.parse(new String[]{"--soup", "5"});
+    }
+
+    private static Census search(String... args) throws Exception {
+        return SoupSearch.parse(args).run(new CensusWriter(new StringWriter(), CensusWriter.CSV));
+    }
+}
@@ -0,0 +1,281 @@
+package com.matthewfortier.gameoflife;
+
+/**
+ * A board packed 64 cells to a long, one row after another.
+ *
+ * Bit j of word k in a row holds column 64 * k + j. The unused high bits of the
+ * last word in each row are always kept clear, so whole words can be compared,
+ * counted and combined without masking.
+ */
+public class BitGrid implements CellGrid {
+
+    // Larger boards belong in a MappedGrid
+    public static final long MAX_CELLS = 1L << 30;
+
+    // Makes grids on the heap
+    public static final CellGrid.Factory FACTORY = new CellGrid.Factory() {
+        @Override
+        public CellGrid create(int rows, int cols) {
+            return new BitGrid(rows, cols);
+        }
+
+        @Override
+        public long getMaxCells() {
+            return MAX_CELLS;
+        }
+    };
+
+    private final int mRows;
+    private final int mCols;
+    private final int mWordsPerRow;
+    private final int mLastBit;
+    private final long[] mWords;
+
+    public BitGrid(int rows, int cols) {
+        if (rows < 1 || cols < 1)
+            throw new IllegalArgumentException("Grid must be at least 1x1: " + rows + "x" + cols);
+
+        mRows = rows;
+        mCols = cols;
+        mWordsPerRow = (cols + 63) >>> 6;
+        mLastBit = (cols - 1) & 63;
+        mWords = new long[rows * mWordsPerRow];
+    }
+
+    // Packs a grid indexed as data[row][col]
+    public static BitGrid fromArray(boolean[][] data) {
+        BitGrid grid = new BitGrid(data.length, data[0].length);
+        grid.load(data);
+        return grid;
+    }
+
+    public boolean[][] toArray() {
+        boolean[][] data = new boolean[mRows][mCols];
+        copyTo(data);
+        return data;
+    }
+
+    @Override
+    public int getRows() {
+        return mRows;
+    }
+
+    @Override
+    public int getCols() {
+        return mCols;
+    }
+
+    @Override
+    public int getWordsPerRow() {
+        return mWordsPerRow;
+    }
+
+    // The backing words, row-major; callers that write must keep the padding bits clear
+    public long[] getWords() {
+        return mWords;
+    }
+
+    @Override
+    public boolean get(int row, int col) {
+        return (mWords[row * mWordsPerRow + (col >>> 6)] & (1L << col)) != 0;
+    }
+
+    @Override
+    public void set(int row, int col, boolean alive) {
+        int index = row * mWordsPerRow + (col >>> 6);
+        if (alive)
+            mWords[index] |= 1L << col;
+        else
+            mWords[index] &= ~(1L << col);
+    }
+
+    @Override
+    public long getWord(int row, int word) {
+        return mWords[row * mWordsPerRow + word];
+    }
+
+    @Override
+    public void setWord(int row, int word, long bits) {
+        mWords[row * mWordsPerRow + word] = bits;
+    }
+
+    public void toggle(int row, int col) {
+        mWords[row * mWordsPerRow + (col >>> 6)] ^= 1L << col;
+    }
+
+    public int getPopulation() {
+        int population = 0;
+        for (long word : mWords)
+            population += Long.bitCount(word);
+        return population;
+    }
+
+    public void clear() {
+        for (int i = 0; i < mWords.length; i++)
+            mWords[i] = 0;
+    }
+
+    // Zeroes the unused bits past the last column, after the words were filled in directly
+    public void clearPadding() {
+        long lastMask = -1L >>> (63 - mLastBit);
+        for (int i = mWordsPerRow - 1; i < mWords.length; i += mWordsPerRow)
+            mWords[i] &= lastMask;
+    }
+
+    public void copyFrom(BitGrid other) {
+        checkSize(other.mRows, other.mCols);
+        System.arraycopy(other.mWords, 0, mWords, 0, mWords.length);
+    }
+
+    public void load(boolean[][] data) {
+        checkSize(data.length, data[0].length);
+        for (int i = 0; i < mRows; i++) {
+            int offset = i * mWordsPerRow;
+            for (int k = 0; k < mWordsPerRow; k++) {
+                long word = 0;
+                int base = k << 6;
+                int end = Math.min(64, mCols - base);
+                for (int b = 0; b < end; b++)
+                    if (data[i][base + b])
+                        word |= 1L << b;
+                mWords[offset + k] = word;
+            }
+        }
+    }
+
+    public void copyTo(boolean[][] data) {
+        checkSize(data.length, data[0].length);
+        for (int i = 0; i < mRows; i++) {
+            int offset = i * mWordsPerRow;
+            for (int j = 0; j < mCols; j++)
+                data[i][j] = (mWords[offset + (j >>> 6)] & (1L << j)) != 0;
+        }
+    }
+
+    // Writes the next generation of this grid into dst under Conway's rule, wrapping at every edge
+    public void step(BitGrid dst) {
+        step(dst, Rule.CONWAY);
+    }
+
+    public void step(BitGrid dst, Rule rule) {
+        stepRows(dst, 0, mRows, rule);
+    }
+
+    // Writes the next generation of rows [fromRow, toRow) into dst, returning how many cells changed
+    public int stepRows(BitGrid dst, int fromRow, int toRow, Rule rule) {
+        return stepTile(dst, fromRow, toRow, 0, mWordsPerRow, rule);
+    }
+
+    // Same as stepRows, limited to the words [fromWord, toWord) of each row
+    public int stepTile(BitGrid dst, int fromRow, int toRow, int fromWord, int toWord, Rule rule) {
+        dst.checkSize(mRows, mCols);
+        int changed = 0;
+        for (int i = fromRow; i < toRow; i++) {
+            int above = (i == 0 ? mRows - 1 : i - 1) * mWordsPerRow;
+            int below = (i == mRows - 1 ? 0 : i + 1) * mWordsPerRow;
+            changed += stepRow(mWords, above, mWords, i * mWordsPerRow, mWords, below,
+                    dst.mWords, i * mWordsPerRow, mWordsPerRow, mLastBit, fromWord, toWord, rule);
+        }
+        return changed;
+    }
+
+    /**
+     * Computes words [fromWord, toWord) of one packed row of the next generation from the
+     * rows above, at and below it, and returns how many cells differ from the middle row.
+     * Each neighbor direction is a shifted copy of a row, and the eight of them are summed
+     * with bitwise adders so all 64 cells in a word are counted at once.
+     *
+     * Conway's rule is a few operations on the count bits. Any other rule decodes the count
+     * into one mask per value and picks them out with the rule's precomputed word masks,
+     * which costs the same whatever the rule is.
+     */
+    static int stepRow(long[] up, int upOffset, long[] mid, int midOffset, long[] down, int downOffset,
+                       long[] out, int outOffset, int words, int lastBit, int fromWord, int toWord,
+                       Rule rule) {
+        int last = words - 1;
+        long lastMask = -1L >>> (63 - lastBit);
+        int changed = 0;
+        boolean conway = rule.isConway();
+        long[] born = rule.mBirthMasks;
+        long[] survive = rule.mSurviveMasks;
+
+        for (int k = fromWord; k < toWord; k++) {
+            long u = up[upOffset + k];
+            long m = mid[midOffset + k];
+            long d = down[downOffset + k];
+
+            // Bits carried in from the neighboring words, wrapping around the row ends
+            long uPrev, mPrev, dPrev, uNext, mNext, dNext;
+            if (k == 0) {
+                uPrev = (up[upOffset + last] >>> lastBit) & 1;
+                mPrev = (mid[midOffset + last] >>> lastBit) & 1;
+                dPrev = (down[downOffset + last] >>> lastBit) & 1;
+            } else {
+                uPrev = up[upOffset + k - 1] >>> 63;
+                mPrev = mid[midOffset + k - 1] >>> 63;
+                dPrev = down[downOffset + k - 1] >>> 63;
+            }
+            if (k == last) {
+                uNext = (up[upOffset] & 1) << lastBit;
+                mNext = (mid[midOffset] & 1) << lastBit;
+                dNext = (down[downOffset] & 1) << lastBit;
+            } else {
+                uNext = up[upOffset + k + 1] << 63;
+                mNext = mid[midOffset + k + 1] << 63;
+                dNext = down[downOffset + k + 1] << 63;
+            }
+
+            long uw = (u << 1) | uPrev, ue = (u >>> 1) | uNext;
+            long mw = (m << 1) | mPrev, me = (m >>> 1) | mNext;
+            long dw = (d << 1) | dPrev, de = (d >>> 1) | dNext;
+
+            // Full adders over the rows above and below, a half adder for the middle row
+            long uSum = uw ^ u ^ ue;
+            long uCarry = (uw & u) | (ue & (uw ^ u));
+            long dSum = dw ^ d ^ de;
+            long dCarry = (dw & d) | (de & (dw ^ d));
+            long mSum = mw ^ me;
+            long mCarry = mw & me;
+
+            // Bit 0 of the count, and the carry into the twos
+            long bit0 = uSum ^ dSum ^ mSum;
+            long carry0 = (uSum & dSum) | (mSum & (uSum ^ dSum));
+
+            // Add up the four twos-weighted carries
+            long twos = uCarry ^ dCarry ^ mCarry;
+            long fours = (uCarry & dCarry) | (mCarry & (uCarry ^ dCarry));
+            long bit1 = twos ^ carry0;
+            long foursCarry = twos & carry0;
+            long bit2 = fours ^ foursCarry;
+            long bit3 = fours & foursCarry;
+
+            long next;
+            if (conway) {
+                // Alive next with a count of 3, or a count of 2 on a live cell
+                next = bit1 & ~bit2 & ~bit3 & (bit0 | m);
+            } else {
+                // One mask per count from 0 to 8; a count of 8 is the only one with bit 3 set
+                long low0 = ~bit1 & ~bit0, low1 = ~bit1 & bit0, low2 = bit1 & ~bit0, low3 = bit1 & bit0;
+                long high0 = ~bit3 & ~bit2, high1 = ~bit3 & bit2;
+                long c0 = high0 & low0, c1 = high0 & low1, c2 = high0 & low2, c3 = high0 & low3;
+                long c4 = high1 & low0, c5 = high1 & low1, c6 = high1 & low2, c7 = high1 & low3;
+                long births = (c0 & born[0]) | (c1 & born[1]) | (c2 & born[2]) | (c3 & born[3])
+                        | (c4 & born[4]) | (c5 & born[5]) | (c6 & born[6]) | (c7 & born[7])
+                        | (bit3 & born[8]);
+                long stays = (c0 & survive[0]) | (c1 & survive[1]) | (c2 & survive[2]) | (c3 & survive[3])
+                        | (c4 & survive[4]) | (c5 & survive[5]) | (c6 & survive[6]) | (c7 & survive[7])
+                        | (bit3 & survive[8]);
+                next = (births & ~m) | (stays & m);
+            }
+            if (k == last) next &= lastMask;
+            out[outOffset + k] = next;
+            changed += Long.bitCount(next ^ m);
+        }
+        return changed;
+    }
+
+    private void checkSize(int rows, int cols) {
+        if (rows != mRows || cols != mCols)
+            throw new IllegalArgumentException("Expected a " + mRows + "x" + mCols + " grid");
+    }
+}
@@ -0,0 +1,37 @@
+package com.matthewfortier.gameoflife;
+
+import java.io.IOException;
+
+/**
+ * A packed board that may live on the heap, as a BitGrid, or in a file, as a MappedGrid.
+ *
+ * Both use the same layout: rows one after another, 64 cells to a word, bit j of word k
+ * holding column 64 * k + j, and the padding bits past the last column kept clear.
+ * Pattern readers write through this interface so a large pattern can be loaded
+ * straight into a file without ever being held in memory.
+ */
+public interface CellGrid {
+
+    int getRows();
+
+    int getCols();
+
+    int getWordsPerRow();
+
+    boolean get(int row, int col);
+
+    void set(int row, int col, boolean alive);
+
+    long getWord(int row, int word);
+
+    // The padding bits of a row's last word must be clear
+    void setWord(int row, int word, long bits);
+
+    // Makes an empty grid once a reader knows the size of the pattern
+    interface Factory {
+        CellGrid create(int rows, int cols) throws IOException;
+
+        // Readers refuse patterns with more cells than this
+        long getMaxCells();
+    }
+}
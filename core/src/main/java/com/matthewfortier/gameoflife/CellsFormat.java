@@ -0,0 +1,92 @@
+package com.matthewfortier.gameoflife;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Reads and writes the plaintext .cells format: ! comment lines, then one line per row
+ * with . for a dead cell and O for a live one.
+ *
+ * The format has no header, so the board size is only known at the end. While reading,
+ * only the live cells are kept, as packed row and column pairs, and the grid is built
+ * from them once the size is known.
+ */
+public class CellsFormat {
+
+    public static PatternFile read(InputStream in) throws IOException {
+        return read(in, BitGrid.FACTORY);
+    }
+
+    public static PatternFile read(InputStream in, CellGrid.Factory factory) throws IOException {
+        InputStream stream = in instanceof BufferedInputStream ? in : new BufferedInputStream(in);
+
+        long[] live = new long[64];
+        int count = 0;
+        int rows = 0, cols = 0;
+        int row = 0, col = 0;
+        boolean comment = false, lineStarted = false;
+
+        for (int c = stream.read(); ; c = stream.read()) {
+            if (c < 0 || c == '\n') {
+                // Blank lines are empty rows, but there is no row after a final newline
+                if (!comment && (c == '\n' || lineStarted)) {
+                    rows = ++row;
+                    cols = Math.max(cols, col);
+                }
+                if (c < 0) break;
+                col = 0;
+                comment = false;
+                lineStarted = false;
+                continue;
+            }
+            if (c == '\r' || comment) continue;
+            if (!lineStarted && c == '!') {
+                comment = true;
+                lineStarted = true;
+                continue;
+            }
+
+            lineStarted = true;
+            if (c == 'O' || c == 'o' || c == '*') {
+                if (count == live.length) {
+                    long[] grown = new long[live.length * 2];
+                    System.arraycopy(live, 0, grown, 0, count);
+                    live = grown;
+                }
+                live[count++] = ((long) row << 32) | col;
+            } else if (c != '.' && c != ' ') {
+                throw new IOException("Unexpected character in .cells: " + (char) c);
+            }
+            col++;
+            if ((long) (row + 1) * Math.max(cols, col) > factory.getMaxCells())
+                throw new IOException("Pattern too large");
+        }
+
+        CellGrid grid = factory.create(Math.max(rows, 1), Math.max(cols, 1));
+        for (int i = 0; i < count; i++)
+            grid.set((int) (live[i] >>> 32), (int) live[i], true);
+        return new PatternFile(grid, Rule.CONWAY, 0, 0, 0);
+    }
+
+    public static void write(CellGrid grid, String name, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
+        if (name != null && !name.isEmpty())
+            writer.write("!Name: " + name + "\n");
+
+        for (int i = 0; i < grid.getRows(); i++) {
+            // Trailing dead cells are left off each row
+            int last = grid.getCols() - 1;
+            while (last >= 0 && !grid.get(i, last))
+                last--;
+            for (int j = 0; j <= last; j++)
+                writer.write(grid.get(i, j) ? 'O' : '.');
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+}
@@ -0,0 +1,155 @@
+package com.matthewfortier.gameoflife;
+
+import java.util.Arrays;
+
+/**
+ * Notices when a board has died out, stopped changing or started repeating.
+ *
+ * It is fed a 64-bit hash of every generation, made by XORing together a random key per
+ * live cell (Zobrist hashing), so a step only has to fold in the cells that flipped. The
+ * hashes of the last few generations are kept in a ring, indexed by an open-addressing
+ * table, so each generation costs one lookup however long the history is. A hash seen
+ * before means the board is back in an earlier state, and since a board's future only
+ * depends on its present, it will go round the same loop forever.
+ *
+ * Two different boards could share a hash, but with 64 bits that is far too rare to
+ * matter here.
+ */
+public class CycleDetector {
+
+    public static final int ACTIVE = 0;
+    public static final int EXTINCT = 1;
+    public static final int STABLE = 2;
+    public static final int PERIODIC = 3;
+
+    // Longest period that can be found
+    public static final int DEFAULT_HISTORY = 256;
+
+    private final long[] mHashes;
+    private final long[] mGenerations;
+    private int mCount;
+    // Where the next hash goes, which is the oldest one once the ring is full
+    private int mNext;
+
+    // One more than the ring slot holding each hash, or 0 for a free entry
+    private final int[] mTable;
+    private final int mMask;
+
+    private int mState = ACTIVE;
+    private long mPeriod;
+
+    public CycleDetector() {
+        this(DEFAULT_HISTORY);
+    }
+
+    public CycleDetector(int history) {
+        if (history < 1) throw new IllegalArgumentException("History must be positive");
+        mHashes = new long[history];
+        mGenerations = new long[history];
+        // At most half full, so probes stay short
+        int size = Integer.highestOneBit(history) << 2;
+        mTable = new int[size];
+        mMask = size - 1;
+    }
+
+    // A random key for a cell, from the splitmix64 finalizer, so nearby cells get unrelated keys
+    public static long cellKey(long cell) {
+        long z = cell + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // One of ACTIVE, EXTINCT, STABLE or PERIODIC, as of the last generation recorded
+    public int getState() {
+        return mState;
+    }
+
+    // Generations between repeats: 1 when extinct or stable, 0 while active
+    public long getPeriod() {
+        return mPeriod;
+    }
+
+    // Forgets the history, for when the board is changed other than by stepping
+    public void reset() {
+        Arrays.fill(mTable, 0);
+        mCount = 0;
+        mNext = 0;
+        mState = ACTIVE;
+        mPeriod = 0;
+    }
+
+    // Adds generations to everything remembered, after they were skipped rather than stepped
+    public void offset(long generations) {
+        for (int i = 0; i < mCount; i++)
+            mGenerations[i] += generations;
+    }
+
+    // Records the board as of a generation one after the last one recorded
+    public void record(long generation, long hash, long population) {
+        if (population == 0) {
+            mState = EXTINCT;
+            mPeriod = 1;
+            return;
+        }
+
+        int slot = find(hash);
+        if (slot >= 0) {
+            long period = generation - mGenerations[slot];
+            if (period > 0) {
+                mState = period == 1 ? STABLE : PERIODIC;
+                mPeriod = period;
+            }
+            // Later repeats are measured from here
+            mGenerations[slot] = generation;
+            return;
+        }
+
+        mState = ACTIVE;
+        mPeriod = 0;
+        if (mCount == mHashes.length) remove(mHashes[mNext]);
+        else mCount++;
+        mHashes[mNext] = hash;
+        mGenerations[mNext] = generation;
+        insert(hash, mNext);
+        mNext = (mNext + 1) % mHashes.length;
+    }
+
+    private int home(long hash) {
+        // The keys are random already, so the low bits will do
+        return (int) hash & mMask;
+    }
+
+    private int find(long hash) {
+        for (int i = home(hash); mTable[i] != 0; i = (i + 1) & mMask)
+            if (mHashes[mTable[i] - 1] == hash) return mTable[i] - 1;
+        return -1;
+    }
+
+    private void insert(long hash, int slot) {
+        int i = home(hash);
+        while (mTable[i] != 0)
+            i = (i + 1) & mMask;
+        mTable[i] = slot + 1;
+    }
+
+    // Takes a hash out of the table, shifting later entries back so every probe still finds them
+    private void remove(long hash) {
+        int i = home(hash);
+        while (mHashes[mTable[i] - 1] != hash)
+            i = (i + 1) & mMask;
+
+        int j = i;
+        while (true) {
+            j = (j + 1) & mMask;
+            if (mTable[j] == 0) break;
+            int k = home(mHashes[mTable[j] - 1]);
+            // An entry whose home lies cyclically in (i, j] is still reachable where it is
+            boolean reachable = i <= j ? (i < k && k <= j) : (i < k || k <= j);
+            if (reachable) continue;
+            mTable[i] = mTable[j];
+            i = j;
+        }
+        mTable[i] = 0;
+    }
+}
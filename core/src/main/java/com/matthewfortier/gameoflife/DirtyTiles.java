@@ -0,0 +1,111 @@
+package com.matthewfortier.gameoflife;
+
+/**
+ * A set of tiles of a BitGrid, used to track which parts of the board changed.
+ *
+ * A tile is one 64-cell word wide and TILE_ROWS rows tall, so tile (tileRow, word)
+ * covers rows [tileRow * TILE_ROWS, (tileRow + 1) * TILE_ROWS) of word column word.
+ * The tiles in the last tile row may be shorter when the row count is not a multiple.
+ */
+public class DirtyTiles {
+
+    public static final int TILE_ROWS = 64;
+
+    private final int mRows;
+    private final int mTileRows;
+    private final int mTileCols;
+    private final long[] mBits;
+
+    public DirtyTiles(int rows, int cols) {
+        mRows = rows;
+        mTileRows = (rows + TILE_ROWS - 1) / TILE_ROWS;
+        mTileCols = (cols + 63) >>> 6;
+        mBits = new long[(mTileRows * mTileCols + 63) >>> 6];
+    }
+
+    public int getTileRows() {
+        return mTileRows;
+    }
+
+    public int getTileCols() {
+        return mTileCols;
+    }
+
+    // First grid row covered by a tile row
+    public int firstRow(int tileRow) {
+        return tileRow * TILE_ROWS;
+    }
+
+    // One past the last grid row covered by a tile row
+    public int endRow(int tileRow) {
+        return Math.min(mRows, (tileRow + 1) * TILE_ROWS);
+    }
+
+    public boolean isDirty(int tileRow, int tileCol) {
+        int tile = tileRow * mTileCols + tileCol;
+        return (mBits[tile >>> 6] & (1L << tile)) != 0;
+    }
+
+    public void mark(int tileRow, int tileCol) {
+        int tile = tileRow * mTileCols + tileCol;
+        mBits[tile >>> 6] |= 1L << tile;
+    }
+
+    // Marks the tile holding a single cell
+    public void markCell(int row, int col) {
+        mark(row / TILE_ROWS, col >>> 6);
+    }
+
+    public void markAll() {
+        int tiles = mTileRows * mTileCols;
+        for (int i = 0; i < mBits.length; i++)
+            mBits[i] = -1L;
+        if ((tiles & 63) != 0)
+            mBits[mBits.length - 1] = -1L >>> (64 - (tiles & 63));
+    }
+
+    public void clear() {
+        for (int i = 0; i < mBits.length; i++)
+            mBits[i] = 0;
+    }
+
+    public boolean isEmpty() {
+        for (long bits : mBits)
+            if (bits != 0) return false;
+        return true;
+    }
+
+    public int count() {
+        int count = 0;
+        for (long bits : mBits)
+            count += Long.bitCount(bits);
+        return count;
+    }
+
+    public void or(DirtyTiles other) {
+        checkSize(other);
+        for (int i = 0; i < mBits.length; i++)
+            mBits[i] |= other.mBits[i];
+    }
+
+    public void copyFrom(DirtyTiles other) {
+        checkSize(other);
+        System.arraycopy(other.mBits, 0, mBits, 0, mBits.length);
+    }
+
+    // True if this tile or any of its eight neighbors, wrapping at the edges, is dirty
+    public boolean isNeighborhoodDirty(int tileRow, int tileCol) {
+        int up = tileRow == 0 ? mTileRows - 1 : tileRow - 1;
+        int down = tileRow == mTileRows - 1 ? 0 : tileRow + 1;
+        int left = tileCol == 0 ? mTileCols - 1 : tileCol - 1;
+        int right = tileCol == mTileCols - 1 ? 0 : tileCol + 1;
+        return isDirty(up, left) || isDirty(up, tileCol) || isDirty(up, right)
+                || isDirty(tileRow, left) || isDirty(tileRow, tileCol) || isDirty(tileRow, right)
+                || isDirty(down, left) || isDirty(down, tileCol) || isDirty(down, right);
+    }
+
+    private void checkSize(DirtyTiles other) {
+        if (other.mTileRows != mTileRows || other.mTileCols != mTileCols)
+            throw new IllegalArgumentException("Tile sets cover different grids");
+    }
+}
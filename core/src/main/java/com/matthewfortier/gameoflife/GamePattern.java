@@ -0,0 +1,175 @@
+package com.matthewfortier.gameoflife;
+
+import java.io.IOException;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Created by matthewfortier on 11/8/17.
+ *
+ * The cells are stored as an RLE body, like "bo$2bo$3o!", with the size alongside.
+ * Records from before that have a flattened list of booleans instead, which is still
+ * read, and toCompact turns one into the new form.
+ */
+
+public class GamePattern {
+    // Only in records saved before mCells
+    private List<Boolean> mData;
+    private String mCells;
+    private int mRows;
+    private int mCols;
+    private int mAlive;
+    private int mDead;
+    private String mTitle;
+    private String mFilename;
+    // B/S rulestring; older records have none and use Conway's rule
+    private String mRule;
+
+    public GamePattern() {}
+
+    public GamePattern(CellGrid grid, String title, int alive, int dead, String imageUrl, String rule) {
+        this.mCells = RleFormat.encodeBody(grid);
+        this.mRows = grid.getRows();
+        this.mCols = grid.getCols();
+        this.mAlive = alive;
+        this.mDead = dead;
+        this.mFilename = imageUrl;
+        this.mTitle = title;
+        this.mRule = rule;
+    }
+
+    public GamePattern(List<Boolean> data, int rows, int cols, String title, int alive, int dead, String imageUrl, String rule) {
+        this.mData = data;
+        this.mRows = rows;
+        this.mCols = cols;
+        this.mAlive = alive;
+        this.mDead = dead;
+        this.mFilename = imageUrl;
+        this.mTitle = title;
+        this.mRule = rule;
+    }
+
+    public String getTitle() {
+        return mTitle;
+    }
+
+    public void setTitle(String mTitle) {
+        this.mTitle = mTitle;
+    }
+
+    public List<Boolean> getData() {
+        return mData;
+    }
+
+    public void setData(List<Boolean> data) {
+        this.mData = data;
+    }
+
+    public String getCells() {
+        return mCells;
+    }
+
+    public void setCells(String cells) {
+        this.mCells = cells;
+    }
+
+    public int getRows() {
+        return mRows;
+    }
+
+    public void setRows(int rows) {
+        this.mRows = rows;
+    }
+
+    public int getCols() {
+        return mCols;
+    }
+
+    public void setCols(int cols) {
+        this.mCols = cols;
+    }
+
+    public int getAlive() {
+        return mAlive;
+    }
+
+    public void setAlive(int alive) {
+        this.mAlive = alive;
+    }
+
+    public int getDead() {
+        return mDead;
+    }
+
+    public void setDead(int dead) {
+        this.mDead = dead;
+    }
+
+    public String getFilename() {
+        return mFilename;
+    }
+
+    public void setFilename(String mFilename) {
+        this.mFilename = mFilename;
+    }
+
+    public String getRule() {
+        return mRule;
+    }
+
+    public void setRule(String rule) {
+        this.mRule = rule;
+    }
+
+    // Convert 2d array to List because Firebase does not support serializable data
+    public static List<Boolean> flatten(boolean[][] data) {
+        GridSize size = GridSize.of(data);
+        List<Boolean> cells = new ArrayList<Boolean>(size.getCellCount());
+        for (int i = 0; i < size.getRows(); i++)
+            for (int j = 0; j < size.getCols(); j++)
+                cells.add(data[i][j]);
+        return cells;
+    }
+
+    // Whether this record still has its cells as a list of booleans
+    public boolean hasLegacyData() {
+        return mCells == null && mData != null;
+    }
+
+    // Decodes the cells straight into a packed grid; throws IllegalArgumentException if they are corrupt
+    public BitGrid toBitGrid() {
+        if (mCells != null) {
+            BitGrid grid = new BitGrid(mRows, mCols);
+            try {
+                RleFormat.decodeBody(mCells, grid);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Bad cells in pattern " + mTitle, e);
+            }
+            return grid;
+        }
+
+        // Older records have no size and were always square, flattened column first
+        boolean square = mRows == 0 || mCols == 0;
+        GridSize size = square ? GridSize.ofSquare(mData.size()) : new GridSize(mRows, mCols);
+        if (mData.size() != size.getCellCount())
+            throw new IllegalArgumentException("Pattern " + mTitle + " has " + mData.size() + " cells");
+
+        BitGrid grid = new BitGrid(size.getRows(), size.getCols());
+        for (int i = 0; i < size.getRows(); i++)
+            for (int j = 0; j < size.getCols(); j++)
+                if (square ? mData.get(size.toPosition(j, i)) : mData.get(size.toPosition(i, j)))
+                    grid.set(i, j, true);
+        return grid;
+    }
+
+    // Rebuild the 2d array from the stored cells
+    public boolean[][] toGrid() {
+        return toBitGrid().toArray();
+    }
+
+    // The same pattern with its cells in the compact form, for rewriting an old record
+    public GamePattern toCompact() {
+        return new GamePattern(toBitGrid(), mTitle, mAlive, mDead, mFilename, mRule);
+    }
+}
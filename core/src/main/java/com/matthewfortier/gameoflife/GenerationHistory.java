@@ -0,0 +1,213 @@
+package com.matthewfortier.gameoflife;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Remembers recent generations of a BitGrid so the board can be stepped back or rewound.
+ *
+ * Each generation is kept as the words that changed since the one before, with the
+ * changed bits XORed together, so a generation costs a few bytes per changed word rather
+ * than a copy of the board. Stepping back one generation XORs its delta back out. Every
+ * so often, and whenever the deltas since the last one add up to a board's worth, a whole
+ * copy is kept as a keyframe, so any generation can be rebuilt from its keyframe plus at
+ * most KEYFRAME_INTERVAL deltas.
+ *
+ * Once the memory used goes over the budget the oldest keyframe and the deltas after it
+ * are dropped together. The newest keyframe is always kept, so a budget smaller than a
+ * couple of boards still remembers a little.
+ *
+ * The generations held are always consecutive. Recording or marking a generation that
+ * doesn't follow on starts again from there.
+ */
+public class GenerationHistory {
+
+    // Most deltas replayed to rebuild a generation
+    public static final int KEYFRAME_INTERVAL = 64;
+
+    // Rough size of a Frame and its array headers
+    private static final int FRAME_BYTES = 80;
+
+    private final long mBudget;
+
+    // One per generation from mStart on, oldest first; the first is always a keyframe
+    private final List<Frame> mFrames = new ArrayList<Frame>();
+    private long mStart;
+    private long mBytes;
+
+    // Reused while collecting a delta
+    private int[] mIndexes = new int[64];
+    private long[] mFlips = new long[64];
+
+    public GenerationHistory(long budgetBytes) {
+        mBudget = budgetBytes;
+    }
+
+    public boolean isEmpty() {
+        return mFrames.isEmpty();
+    }
+
+    // Oldest generation held; only meaningful when not empty
+    public long getStart() {
+        return mStart;
+    }
+
+    // Newest generation held, which can be after the board's after stepping back
+    public long getEnd() {
+        return mStart + mFrames.size() - 1;
+    }
+
+    public boolean contains(long generation) {
+        return generation >= mStart && generation - mStart < mFrames.size();
+    }
+
+    // Bytes held, roughly
+    public long getMemoryUsage() {
+        return mBytes;
+    }
+
+    public void clear() {
+        mFrames.clear();
+        mBytes = 0;
+    }
+
+    // Remembers the board as it is at a generation, replacing anything held from there on,
+    // for when it was changed other than by stepping
+    public void mark(BitGrid grid, long generation) {
+        if (!contains(generation) && generation != getEnd() + 1 || isEmpty()) {
+            clear();
+            mStart = generation;
+        }
+        truncate(generation);
+        long[] words = grid.getWords();
+        append(new Frame(generation, Arrays.copyOf(words, words.length), null, null, 0));
+    }
+
+    /**
+     * Remembers a generation that was just stepped, given the board before and after and
+     * the tiles that differ between them. Anything held after the generation before is
+     * dropped, since the board has moved on from there.
+     */
+    public void record(BitGrid before, BitGrid after, DirtyTiles changed, long generation) {
+        if (!contains(generation - 1)) mark(before, generation - 1);
+        truncate(generation);
+
+        long[] from = before.getWords();
+        long[] to = after.getWords();
+        int wordsPerRow = after.getWordsPerRow();
+        int count = 0;
+        for (int tr = 0; tr < changed.getTileRows(); tr++) {
+            for (int tc = 0; tc < changed.getTileCols(); tc++) {
+                if (!changed.isDirty(tr, tc)) continue;
+                for (int row = changed.firstRow(tr); row < changed.endRow(tr); row++) {
+                    int index = row * wordsPerRow + tc;
+                    long flipped = from[index] ^ to[index];
+                    if (flipped == 0) continue;
+                    if (count == mIndexes.length) {
+                        mIndexes = Arrays.copyOf(mIndexes, count * 2);
+                        mFlips = Arrays.copyOf(mFlips, count * 2);
+                    }
+                    mIndexes[count] = index;
+                    mFlips[count] = flipped;
+                    count++;
+                }
+            }
+        }
+
+        Frame last = mFrames.get(mFrames.size() - 1);
+        long deltaBytes = last.mDeltaBytes + count * 12L;
+        long keyframe = last.mKeyframe;
+        long[] words = null;
+        if (generation - keyframe >= KEYFRAME_INTERVAL || deltaBytes >= to.length * 8L) {
+            words = Arrays.copyOf(to, to.length);
+            keyframe = generation;
+            deltaBytes = 0;
+        }
+        append(new Frame(keyframe, words, Arrays.copyOf(mIndexes, count),
+                Arrays.copyOf(mFlips, count), deltaBytes));
+    }
+
+    // Word indexes changed on the way to a generation, or null if only its keyframe is known
+    public int[] getChangedWords(long generation) {
+        return frame(generation).mIndexes;
+    }
+
+    // The bits flipped in each of the changed words, in the same order
+    public long[] getFlips(long generation) {
+        return frame(generation).mFlips;
+    }
+
+    // Rebuilds a generation held into the grid
+    public void restore(long generation, BitGrid into) {
+        Frame frame = frame(generation);
+        long[] words = into.getWords();
+        System.arraycopy(frame(frame.mKeyframe).mWords, 0, words, 0, words.length);
+        for (long g = frame.mKeyframe + 1; g <= generation; g++) {
+            Frame delta = frame(g);
+            for (int i = 0; i < delta.mIndexes.length; i++)
+                words[delta.mIndexes[i]] ^= delta.mFlips[i];
+        }
+    }
+
+    private Frame frame(long generation) {
+        if (!contains(generation))
+            throw new IllegalArgumentException("Generation " + generation + " is not held");
+        return mFrames.get((int) (generation - mStart));
+    }
+
+    // Drops the given generation and everything after it
+    private void truncate(long generation) {
+        if (generation > getEnd()) return;
+        List<Frame> dropped = mFrames.subList((int) (generation - mStart), mFrames.size());
+        for (Frame frame : dropped)
+            mBytes -= frame.getBytes();
+        dropped.clear();
+    }
+
+    private void append(Frame frame) {
+        mFrames.add(frame);
+        mBytes += frame.getBytes();
+
+        // Drop the oldest keyframe and its deltas while there is a newer keyframe to keep
+        while (mBytes > mBudget) {
+            int next = 1;
+            while (next < mFrames.size() && mFrames.get(next).mWords == null)
+                next++;
+            if (next == mFrames.size()) break;
+            List<Frame> dropped = mFrames.subList(0, next);
+            for (Frame old : dropped)
+                mBytes -= old.getBytes();
+            dropped.clear();
+            mStart += next;
+        }
+    }
+
+    private static class Frame {
+
+        // Generation of the keyframe this one is rebuilt from, which is its own for a keyframe
+        final long mKeyframe;
+        // The whole board for a keyframe, otherwise null
+        final long[] mWords;
+        // The delta from the generation before, or null when there isn't one
+        final int[] mIndexes;
+        final long[] mFlips;
+        // Delta bytes since the keyframe
+        final long mDeltaBytes;
+
+        Frame(long keyframe, long[] words, int[] indexes, long[] flips, long deltaBytes) {
+            mKeyframe = keyframe;
+            mWords = words;
+            mIndexes = indexes;
+            mFlips = flips;
+            mDeltaBytes = deltaBytes;
+        }
+
+        long getBytes() {
+            long bytes = FRAME_BYTES;
+            if (mWords != null) bytes += mWords.length * 8L;
+            if (mIndexes != null) bytes += mIndexes.length * 12L;
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.matthewfortier.gameoflife;
+
+/**
+ * Turns cells into rows of pixels at any resolution, without needing anything to draw on.
+ *
+ * A board smaller than the image gets square blocks of pixels per cell; a larger one is
+ * shrunk so that each pixel covers a block of cells and shows as alive if any of them is,
+ * with the rows of a block ORed together a word at a time.
+ */
+public class GridRaster {
+
+    private GridRaster() {
+    }
+
+    /**
+     * Fills pixels with row y of a width by height image of the grid. cells is scratch
+     * space of one word per word of a grid row.
+     */
+    public static void renderRow(BitGrid grid, int y, int width, int height, int aliveColor, int deadColor,
+                                 long[] cells, int[] pixels) {
+        int rows = grid.getRows();
+        int cols = grid.getCols();
+        int wordsPerRow = grid.getWordsPerRow();
+        long[] words = grid.getWords();
+
+        // Every grid row under this pixel row, ORed together
+        int fromRow = (int) ((long) y * rows / height);
+        int toRow = Math.max(fromRow + 1, (int) ((long) (y + 1) * rows / height));
+        for (int k = 0; k < wordsPerRow; k++)
+            cells[k] = 0;
+        for (int i = fromRow; i < toRow; i++)
+            for (int k = 0; k < wordsPerRow; k++)
+                cells[k] |= words[i * wordsPerRow + k];
+
+        for (int x = 0; x < width; x++) {
+            int fromCol = (int) ((long) x * cols / width);
+            int toCol = Math.max(fromCol + 1, (int) ((long) (x + 1) * cols / width));
+            pixels[x] = anyAlive(cells, fromCol, toCol) ? aliveColor : deadColor;
+        }
+    }
+
+    // Whether any bit in [from, to) is set
+    private static boolean anyAlive(long[] cells, int from, int to) {
+        int first = from >>> 6;
+        int last = (to - 1) >>> 6;
+        long firstMask = -1L << from;
+        long lastMask = -1L >>> (63 - ((to - 1) & 63));
+        if (first == last)
+            return (cells[first] & firstMask & lastMask) != 0;
+        if ((cells[first] & firstMask) != 0 || (cells[last] & lastMask) != 0)
+            return true;
+        for (int k = first + 1; k < last; k++)
+            if (cells[k] != 0) return true;
+        return false;
+    }
+}
@@ -0,0 +1,67 @@
+package com.matthewfortier.gameoflife;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Holds boards for the whole process so screens can hand them to each other by id
+ * instead of serializing them into an Intent, which the Binder limits to about a megabyte.
+ *
+ * Each id is a handle onto a grid, and several handles can share one grid. Grids are put
+ * in read only, typically straight from a GridSnapshot, and sharing only adds another id
+ * for the same grid, so handing one board to several screens costs nothing. Nobody writes
+ * to a grid once it is in; a screen that wants to change the board copies it into its own
+ * engine. A grid is dropped once its last handle is released.
+ *
+ * An id only means something in the process that made it. After the process is killed a
+ * recreated screen finds its id missing and has to cope without the board.
+ */
+public class GridRepository {
+
+    // Never handed out, so an id missing from a Bundle reads as no board
+    public static final long NO_GRID = 0;
+
+    private static final GridRepository sInstance = new GridRepository();
+
+    private final Map<Long, BitGrid> mHandles = new HashMap<Long, BitGrid>();
+    private long mNextId = 1;
+
+    // Everything else goes through getInstance; tests make their own
+    GridRepository() {
+    }
+
+    public static GridRepository getInstance() {
+        return sInstance;
+    }
+
+    // Adds a handle onto the grid, which must not be modified by anyone afterwards
+    public synchronized long put(BitGrid grid) {
+        return add(grid);
+    }
+
+    // Another handle onto the same grid, or NO_GRID if the id is unknown
+    public synchronized long share(long id) {
+        BitGrid grid = mHandles.get(id);
+        return grid != null ? add(grid) : NO_GRID;
+    }
+
+    // The grid behind a handle, which must not be modified, or null if the id is unknown
+    public synchronized BitGrid get(long id) {
+        return mHandles.get(id);
+    }
+
+    public synchronized void release(long id) {
+        mHandles.remove(id);
+    }
+
+    // Number of live handles
+    public synchronized int size() {
+        return mHandles.size();
+    }
+
+    private long add(BitGrid grid) {
+        long id = mNextId++;
+        mHandles.put(id, grid);
+        return id;
+    }
+}
@@ -0,0 +1,84 @@
+package com.matthewfortier.gameoflife;
+
+/**
+ * The dimensions of a board, shared by the engine, the grid adapter and the save formats.
+ *
+ * Cells are addressed as data[row][col], and flattened row by row so position
+ * row * cols + col holds cell (row, col).
+ */
+public class GridSize {
+
+    public static final GridSize DEFAULT = new GridSize(20, 20);
+
+    private final int mRows;
+    private final int mCols;
+
+    public GridSize(int rows, int cols) {
+        if (rows < 1 || cols < 1)
+            throw new IllegalArgumentException("Grid must be at least 1x1: " + rows + "x" + cols);
+        mRows = rows;
+        mCols = cols;
+    }
+
+    public static GridSize of(boolean[][] data) {
+        return new GridSize(data.length, data[0].length);
+    }
+
+    // Patterns saved before sizes were stored were always square
+    public static GridSize ofSquare(int cellCount) {
+        int side = (int) Math.round(Math.sqrt(cellCount));
+        if (side * side != cellCount)
+            throw new IllegalArgumentException(cellCount + " cells is not a square grid");
+        return new GridSize(side, side);
+    }
+
+    public int getRows() {
+        return mRows;
+    }
+
+    public int getCols() {
+        return mCols;
+    }
+
+    public int getCellCount() {
+        return mRows * mCols;
+    }
+
+    public int toPosition(int row, int col) {
+        return row * mCols + col;
+    }
+
+    public int rowOf(int position) {
+        return position / mCols;
+    }
+
+    public int colOf(int position) {
+        return position % mCols;
+    }
+
+    public boolean matches(boolean[][] data) {
+        return data.length == mRows && data[0].length == mCols;
+    }
+
+    public boolean[][] newArray() {
+        return new boolean[mRows][mCols];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof GridSize)) return false;
+        GridSize other = (GridSize) o;
+        return mRows == other.mRows && mCols == other.mCols;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * mRows + mCols;
+    }
+
+    @Override
+    public String toString() {
+        return mRows + "x" + mCols;
+    }
+}
@@ -0,0 +1,97 @@
+package com.matthewfortier.gameoflife;
+
+/**
+ * A copy of the board at one generation, handed from the simulation thread to the UI.
+ *
+ * The grid is never written to after the snapshot is made, so it can be read from any
+ * thread and kept for as long as needed. The changed tiles cover every cell that differs
+ * from the previous snapshot, or are null when the whole board should be treated as new.
+ * The cycle state says whether the board had died out, settled or started repeating,
+ * and the history range which generations the engine could go back or forward to.
+ * The origin is the cell of the whole board at the grid's top left corner, which is only
+ * ever off 0, 0 when the grid is a window onto a bigger board kept in a file.
+ */
+public class GridSnapshot {
+
+    private final BitGrid mGrid;
+    private final long mGeneration;
+    private final int mPopulation;
+    private final DirtyTiles mChanges;
+    private final int mCycleState;
+    private final long mPeriod;
+    private final long mHistoryStart;
+    private final long mHistoryEnd;
+    private final int mOriginRow;
+    private final int mOriginCol;
+
+    public GridSnapshot(BitGrid grid, long generation) {
+        this(grid, generation, null);
+    }
+
+    public GridSnapshot(BitGrid grid, long generation, DirtyTiles changes) {
+        this(grid, generation, changes, CycleDetector.ACTIVE, 0, generation, generation);
+    }
+
+    public GridSnapshot(BitGrid grid, long generation, DirtyTiles changes, int cycleState, long period,
+                        long historyStart, long historyEnd) {
+        this(grid, generation, changes, cycleState, period, historyStart, historyEnd, 0, 0);
+    }
+
+    public GridSnapshot(BitGrid grid, long generation, DirtyTiles changes, int cycleState, long period,
+                        long historyStart, long historyEnd, int originRow, int originCol) {
+        mGrid = new BitGrid(grid.getRows(), grid.getCols());
+        mGrid.copyFrom(grid);
+        mGeneration = generation;
+        mPopulation = mGrid.getPopulation();
+        mChanges = changes;
+        mCycleState = cycleState;
+        mPeriod = period;
+        mHistoryStart = historyStart;
+        mHistoryEnd = historyEnd;
+        mOriginRow = originRow;
+        mOriginCol = originCol;
+    }
+
+    // Must not be modified
+    public BitGrid getGrid() {
+        return mGrid;
+    }
+
+    public long getGeneration() {
+        return mGeneration;
+    }
+
+    public int getPopulation() {
+        return mPopulation;
+    }
+
+    // One of the CycleDetector states
+    public int getCycleState() {
+        return mCycleState;
+    }
+
+    public long getPeriod() {
+        return mPeriod;
+    }
+
+    public long getHistoryStart() {
+        return mHistoryStart;
+    }
+
+    public long getHistoryEnd() {
+        return mHistoryEnd;
+    }
+
+    public int getOriginRow() {
+        return mOriginRow;
+    }
+
+    public int getOriginCol() {
+        return mOriginCol;
+    }
+
+    // Must not be modified; null means everything may have changed
+    public DirtyTiles getChanges() {
+        return mChanges;
+    }
+}
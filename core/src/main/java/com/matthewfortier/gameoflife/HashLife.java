@@ -0,0 +1,537 @@
+package com.matthewfortier.gameoflife;
+
+/**
+ * Gosper's HashLife, for jumping a pattern far into the future.
+ *
+ * The universe is a quadtree of hash-consed nodes, so identical regions anywhere in space
+ * or time are stored once. Each node remembers the result of advancing its center, which
+ * lets repeated structure be skipped over exponentially: jumping a billion generations
+ * costs about as much as a few thousand ordinary steps for most patterns.
+ *
+ * Unlike LifeEngine the universe is an unbounded plane rather than a torus. A grid loaded
+ * with load is centered on the origin, and copyTo reads the same window back, dropping
+ * anything that has travelled outside it. A SparseUniverse's cells can be loaded where
+ * they are instead, and all of them read back into it, so nothing is lost.
+ *
+ * Nodes are never freed individually. Once more than the configured number have been
+ * created, the step in progress is abandoned, every cached result is dropped and the
+ * table is rebuilt from the current pattern, which lets the garbage collector reclaim
+ * everything else. The step is then tried again, and if it still doesn't fit it is
+ * split into two of half the size. Only a single generation is never split, so the
+ * limit can be passed by as many nodes as one generation of the pattern takes.
+ */
+public class HashLife {
+
+    // Rough heap cost of one node and its share of the hash table
+    public static final int NODE_BYTES = 80;
+
+    private static final int DEFAULT_MAX_NODES = 1 << 20;
+
+    // Thrown from join to unwind a step that outgrew the table
+    private static final TableFullException TABLE_FULL = new TableFullException();
+
+    private final Node mDead = new Node();
+    private final Node mAlive = new Node();
+    private Node[] mEmpty = new Node[64];
+
+    private Node[] mTable = new Node[1 << 16];
+    private int mNodeCount;
+    private int mMaxNodes;
+    // The node count join gives up at: mMaxNodes while stepping, otherwise no limit
+    private int mNodeLimit = Integer.MAX_VALUE;
+    private int mPeakNodeCount;
+    private int mNextId = 2;
+
+    private Node mRoot;
+    private long mGeneration;
+
+    private Rule mRule = Rule.CONWAY;
+    // Results of one generation for every 4x4 block, as the 2x2 center packed into 4 bits
+    private byte[] mLeafResults = buildLeafResults(mRule);
+
+    public HashLife() {
+        this(DEFAULT_MAX_NODES);
+    }
+
+    public HashLife(int maxNodes) {
+        mMaxNodes = maxNodes;
+        mDead.id = 0;
+        mAlive.id = 1;
+        mAlive.population = 1;
+        mEmpty[0] = mDead;
+        mRoot = empty(3);
+    }
+
+    // Sizes the node limit so the tree stays within roughly the given number of bytes
+    public static HashLife withMemoryBudget(long bytes) {
+        return new HashLife((int) Math.max(1024, Math.min(Integer.MAX_VALUE, bytes / NODE_BYTES)));
+    }
+
+    public void setMaxNodes(int maxNodes) {
+        mMaxNodes = maxNodes;
+    }
+
+    public int getNodeCount() {
+        return mNodeCount;
+    }
+
+    // The most nodes the table has held at once
+    int getPeakNodeCount() {
+        return mPeakNodeCount;
+    }
+
+    public long getGeneration() {
+        return mGeneration;
+    }
+
+    public void setGeneration(long generation) {
+        mGeneration = generation;
+    }
+
+    public Rule getRule() {
+        return mRule;
+    }
+
+    // Every memoized result depends on the rule, so changing it starts the caches over
+    public void setRule(Rule rule) {
+        if (rule.equals(mRule)) return;
+        mRule = rule;
+        mLeafResults = buildLeafResults(rule);
+        rebuildTable();
+    }
+
+    public long getPopulation() {
+        return mRoot.population;
+    }
+
+    // Replaces the universe with the grid, centered on the origin, at generation 0
+    public void load(BitGrid grid) {
+        int rows = grid.getRows();
+        int cols = grid.getCols();
+        mGeneration = 0;
+        mRoot = empty(3);
+        while (!fits(mRoot, -(cols / 2), -(rows / 2)) || !fits(mRoot, cols - 1 - cols / 2, rows - 1 - rows / 2))
+            mRoot = expand(mRoot);
+
+        long[] words = grid.getWords();
+        int wordsPerRow = grid.getWordsPerRow();
+        for (int i = 0; i < rows; i++) {
+            for (int k = 0; k < wordsPerRow; k++) {
+                long word = words[i * wordsPerRow + k];
+                while (word != 0) {
+                    int j = (k << 6) + Long.numberOfTrailingZeros(word);
+                    mRoot = set(mRoot, j - cols / 2, i - rows / 2);
+                    word &= word - 1;
+                }
+            }
+        }
+    }
+
+    // Replaces the universe with cells packed as SparseUniverse keys, each at its own coordinates
+    public void load(LongSet cells) {
+        mGeneration = 0;
+        mRoot = empty(3);
+        for (int slot = 0; slot < cells.getCapacity(); slot++) {
+            long key = cells.keyAt(slot);
+            if (key == LongSet.EMPTY) continue;
+            int x = SparseUniverse.xOf(key);
+            int y = SparseUniverse.yOf(key);
+            while (!fits(mRoot, x, y))
+                mRoot = expand(mRoot);
+            mRoot = set(mRoot, x, y);
+        }
+    }
+
+    public void load(boolean[][] data) {
+        load(BitGrid.fromArray(data));
+    }
+
+    // Writes the window that load placed the grid in back into it
+    public void copyTo(BitGrid grid) {
+        grid.clear();
+        long half = 1L << (mRoot.level - 1);
+        copyNode(mRoot, -half, -half, grid, -(grid.getCols() / 2), -(grid.getRows() / 2));
+    }
+
+    // Replaces the plane's cells with every live cell in the universe, less any past its LIMIT
+    public void copyTo(SparseUniverse plane) {
+        plane.clear();
+        long half = 1L << (mRoot.level - 1);
+        copyNode(mRoot, -half, -half, plane);
+    }
+
+    public void copyTo(boolean[][] data) {
+        BitGrid grid = new BitGrid(data.length, data[0].length);
+        copyTo(grid);
+        grid.copyTo(data);
+    }
+
+    public boolean get(long x, long y) {
+        Node node = mRoot;
+        long half = 1L << (node.level - 1);
+        x += half;
+        y += half;
+        if (x < 0 || y < 0 || x >= half * 2 || y >= half * 2) return false;
+
+        // Walk down, keeping x and y relative to the top left corner of the current node
+        while (node.level > 0) {
+            half = 1L << (node.level - 1);
+            boolean east = x >= half;
+            boolean south = y >= half;
+            node = south ? (east ? node.se : node.sw) : (east ? node.ne : node.nw);
+            if (east) x -= half;
+            if (south) y -= half;
+        }
+        return node == mAlive;
+    }
+
+    // Advances the universe by any number of generations, one power of two at a time
+    public void advance(long generations) {
+        for (int exponent = 0; generations != 0; exponent++, generations >>>= 1) {
+            if ((generations & 1) == 0) continue;
+            advancePower(exponent);
+        }
+    }
+
+    // Advances 2^exponent generations, in smaller steps if one that big outgrows the table
+    private void advancePower(int exponent) {
+        boolean collected = mNodeCount > mMaxNodes;
+        if (collected) rebuildTable();
+
+        Node start = mRoot;
+        while (true) {
+            // Pad until everything alive is at least a quarter of the root away from its
+            // edge, and the root is big enough to take a step of this size
+            while (mRoot.level < exponent + 3 || !isPadded(mRoot))
+                mRoot = expand(mRoot);
+            mRoot = expand(mRoot);
+
+            mNodeLimit = exponent > 0 ? mMaxNodes : Integer.MAX_VALUE;
+            try {
+                mRoot = step(mRoot, exponent);
+                mGeneration += 1L << exponent;
+                return;
+            } catch (TableFullException e) {
+                // Nothing has moved yet, so the step can start over from a clean table
+                mRoot = start;
+                rebuildTable();
+                if (collected) break;
+                collected = true;
+            } finally {
+                mNodeLimit = Integer.MAX_VALUE;
+            }
+        }
+
+        advancePower(exponent - 1);
+        advancePower(exponent - 1);
+    }
+
+    /**
+     * Returns the center of the node, half its size, advanced by 2^exponent generations.
+     * The exponent can be at most level - 2, since that is as far as light can travel in
+     * from the edges before reaching the center.
+     */
+    private Node step(Node node, int exponent) {
+        if (node.result != null && node.resultExponent == exponent)
+            return node.result;
+
+        Node result;
+        if (node.population == 0) {
+            result = node.nw;
+        } else if (node.level == 2) {
+            result = leafStep(node);
+        } else if (exponent == node.level - 2) {
+            // Full speed: two half steps through nine overlapping sub-results
+            Node n00 = step(node.nw, exponent - 1);
+            Node n01 = step(horizontal(node.nw, node.ne), exponent - 1);
+            Node n02 = step(node.ne, exponent - 1);
+            Node n10 = step(vertical(node.nw, node.sw), exponent - 1);
+            Node n11 = step(centered(node), exponent - 1);
+            Node n12 = step(vertical(node.ne, node.se), exponent - 1);
+            Node n20 = step(node.sw, exponent - 1);
+            Node n21 = step(horizontal(node.sw, node.se), exponent - 1);
+            Node n22 = step(node.se, exponent - 1);
+
+            result = join(
+                    step(join(n00, n01, n10, n11), exponent - 1),
+                    step(join(n01, n02, n11, n12), exponent - 1),
+                    step(join(n10, n11, n20, n21), exponent - 1),
+                    step(join(n11, n12, n21, n22), exponent - 1));
+        } else {
+            // Slower than full speed: take the centers without advancing, then one step
+            Node n00 = centered(node.nw);
+            Node n01 = centered(horizontal(node.nw, node.ne));
+            Node n02 = centered(node.ne);
+            Node n10 = centered(vertical(node.nw, node.sw));
+            Node n11 = centered(centered(node));
+            Node n12 = centered(vertical(node.ne, node.se));
+            Node n20 = centered(node.sw);
+            Node n21 = centered(horizontal(node.sw, node.se));
+            Node n22 = centered(node.se);
+
+            result = join(
+                    step(join(n00, n01, n10, n11), exponent),
+                    step(join(n01, n02, n11, n12), exponent),
+                    step(join(n10, n11, n20, n21), exponent),
+                    step(join(n11, n12, n21, n22), exponent));
+        }
+
+        node.result = result;
+        node.resultExponent = exponent;
+        return result;
+    }
+
+    // One generation of a 4x4 block, looked up from its 16 cells
+    private Node leafStep(Node node) {
+        int bits = 0;
+        for (int y = 0; y < 4; y++)
+            for (int x = 0; x < 4; x++)
+                if (leafCell(node, x, y))
+                    bits |= 1 << (y * 4 + x);
+
+        int center = mLeafResults[bits];
+        return join(cell((center & 1) != 0), cell((center & 2) != 0),
+                cell((center & 4) != 0), cell((center & 8) != 0));
+    }
+
+    private static boolean leafCell(Node node, int x, int y) {
+        Node quadrant = y < 2 ? (x < 2 ? node.nw : node.ne) : (x < 2 ? node.sw : node.se);
+        Node leaf = (y & 1) == 0 ? ((x & 1) == 0 ? quadrant.nw : quadrant.ne) : ((x & 1) == 0 ? quadrant.sw : quadrant.se);
+        return leaf.population != 0;
+    }
+
+    private static byte[] buildLeafResults(Rule rule) {
+        byte[] results = new byte[1 << 16];
+        for (int bits = 0; bits < results.length; bits++) {
+            int center = 0;
+            for (int y = 1; y <= 2; y++) {
+                for (int x = 1; x <= 2; x++) {
+                    // Gather the 3x3 neighborhood around (x, y) for the rule's lookup table
+                    int neighborhood = 0;
+                    for (int dy = -1; dy <= 1; dy++)
+                        for (int dx = -1; dx <= 1; dx++)
+                            if ((bits & (1 << ((y + dy) * 4 + x + dx))) != 0)
+                                neighborhood |= 1 << ((dy + 1) * 3 + dx + 1);
+                    if (rule.next(neighborhood))
+                        center |= 1 << ((y - 1) * 2 + (x - 1));
+                }
+            }
+            results[bits] = (byte) center;
+        }
+        return results;
+    }
+
+    private Node cell(boolean alive) {
+        return alive ? mAlive : mDead;
+    }
+
+    // The middle half of a node, without advancing time
+    private Node centered(Node node) {
+        return join(node.nw.se, node.ne.sw, node.sw.ne, node.se.nw);
+    }
+
+    // The node straddling the boundary between two side by side nodes
+    private Node horizontal(Node west, Node east) {
+        return join(west.ne, east.nw, west.se, east.sw);
+    }
+
+    // The node straddling the boundary between two stacked nodes
+    private Node vertical(Node north, Node south) {
+        return join(north.sw, north.se, south.nw, south.ne);
+    }
+
+    // Wraps a node in a border of empty space, doubling its size around the same center
+    private Node expand(Node node) {
+        Node border = empty(node.level - 1);
+        return join(join(border, border, border, node.nw),
+                join(border, border, node.ne, border),
+                join(border, node.sw, border, border),
+                join(node.se, border, border, border));
+    }
+
+    // True when every live cell is inside the middle half of the node
+    private boolean isPadded(Node node) {
+        return node.population == node.nw.se.se.population + node.ne.sw.sw.population
+                + node.sw.ne.ne.population + node.se.nw.nw.population;
+    }
+
+    private boolean fits(Node node, long x, long y) {
+        long half = 1L << (node.level - 1);
+        return x >= -half && y >= -half && x < half && y < half;
+    }
+
+    private Node empty(int level) {
+        if (level >= mEmpty.length) {
+            Node[] grown = new Node[level + 1];
+            System.arraycopy(mEmpty, 0, grown, 0, mEmpty.length);
+            mEmpty = grown;
+        }
+        if (mEmpty[level] == null) {
+            Node child = empty(level - 1);
+            mEmpty[level] = join(child, child, child, child);
+        }
+        return mEmpty[level];
+    }
+
+    // Sets the cell at (x, y), relative to the center of the node, and returns the new node
+    private Node set(Node node, long x, long y) {
+        if (node.level == 1) {
+            Node nw = node.nw, ne = node.ne, sw = node.sw, se = node.se;
+            if (y < 0) {
+                if (x < 0) nw = mAlive;
+                else ne = mAlive;
+            } else {
+                if (x < 0) sw = mAlive;
+                else se = mAlive;
+            }
+            return join(nw, ne, sw, se);
+        }
+
+        long quarter = 1L << (node.level - 2);
+        if (y < 0) {
+            if (x < 0) return join(set(node.nw, x + quarter, y + quarter), node.ne, node.sw, node.se);
+            return join(node.nw, set(node.ne, x - quarter, y + quarter), node.sw, node.se);
+        }
+        if (x < 0) return join(node.nw, node.ne, set(node.sw, x + quarter, y - quarter), node.se);
+        return join(node.nw, node.ne, node.sw, set(node.se, x - quarter, y - quarter));
+    }
+
+    // Copies the live cells of a node whose top left corner is at (x, y) into the grid,
+    // where the grid's own top left corner is at (left, top)
+    private void copyNode(Node node, long x, long y, BitGrid grid, long left, long top) {
+        if (node.population == 0) return;
+        long size = 1L << node.level;
+        if (x + size <= left || y + size <= top || x >= left + grid.getCols() || y >= top + grid.getRows())
+            return;
+
+        if (node.level == 0) {
+            grid.set((int) (y - top), (int) (x - left), true);
+            return;
+        }
+
+        long half = size >> 1;
+        copyNode(node.nw, x, y, grid, left, top);
+        copyNode(node.ne, x + half, y, grid, left, top);
+        copyNode(node.sw, x, y + half, grid, left, top);
+        copyNode(node.se, x + half, y + half, grid, left, top);
+    }
+
+    // Copies the live cells of a node whose top left corner is at (x, y) onto the plane
+    private void copyNode(Node node, long x, long y, SparseUniverse plane) {
+        if (node.population == 0) return;
+        long size = 1L << node.level;
+        long limit = SparseUniverse.LIMIT;
+        if (x + size <= -limit || y + size <= -limit || x >= limit || y >= limit) return;
+
+        if (node.level == 0) {
+            plane.set((int) x, (int) y, true);
+            return;
+        }
+
+        long half = size >> 1;
+        copyNode(node.nw, x, y, plane);
+        copyNode(node.ne, x + half, y, plane);
+        copyNode(node.sw, x, y + half, plane);
+        copyNode(node.se, x + half, y + half, plane);
+    }
+
+    // Returns the one canonical node with these children
+    private Node join(Node nw, Node ne, Node sw, Node se) {
+        int hash = hash(nw, ne, sw, se);
+        int index = hash & (mTable.length - 1);
+        for (Node node = mTable[index]; node != null; node = node.next)
+            if (node.nw == nw && node.ne == ne && node.sw == sw && node.se == se)
+                return node;
+
+        if (mNodeCount >= mNodeLimit) throw TABLE_FULL;
+        Node node = new Node();
+        node.id = mNextId++;
+        node.level = nw.level + 1;
+        node.nw = nw;
+        node.ne = ne;
+        node.sw = sw;
+        node.se = se;
+        node.population = nw.population + ne.population + sw.population + se.population;
+        node.hash = hash;
+        insert(node);
+        return node;
+    }
+
+    private void insert(Node node) {
+        if (mNodeCount >= mTable.length - (mTable.length >>> 2))
+            resize(mTable.length << 1);
+        int index = node.hash & (mTable.length - 1);
+        node.next = mTable[index];
+        mTable[index] = node;
+        mNodeCount++;
+        if (mNodeCount > mPeakNodeCount) mPeakNodeCount = mNodeCount;
+    }
+
+    private void resize(int capacity) {
+        Node[] old = mTable;
+        mTable = new Node[capacity];
+        for (Node head : old) {
+            while (head != null) {
+                Node next = head.next;
+                int index = head.hash & (capacity - 1);
+                head.next = mTable[index];
+                mTable[index] = head;
+                head = next;
+            }
+        }
+    }
+
+    private static int hash(Node nw, Node ne, Node sw, Node se) {
+        int h = nw.id;
+        h = h * 31 + ne.id;
+        h = h * 31 + sw.id;
+        h = h * 31 + se.id;
+        return h ^ (h >>> 16);
+    }
+
+    // Drops every cached result and every node the current pattern doesn't use
+    private void rebuildTable() {
+        mTable = new Node[1 << 16];
+        mNodeCount = 0;
+        for (Node empty : mEmpty)
+            if (empty != null)
+                reinsert(empty);
+        reinsert(mRoot);
+    }
+
+    private void reinsert(Node node) {
+        if (node.level == 0) return;
+
+        // A node reached twice is already back in the table
+        int index = node.hash & (mTable.length - 1);
+        for (Node existing = mTable[index]; existing != null; existing = existing.next)
+            if (existing == node) return;
+
+        reinsert(node.nw);
+        reinsert(node.ne);
+        reinsert(node.sw);
+        reinsert(node.se);
+        node.result = null;
+        insert(node);
+    }
+
+    private static class TableFullException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        TableFullException() {
+            // Thrown often and never shown, so it skips the stack trace
+            super(null, null, false, false);
+        }
+    }
+
+    private static class Node {
+        int id;
+        int level;
+        int hash;
+        long population;
+        Node nw, ne, sw, se;
+        Node result;
+        int resultExponent;
+        Node next;
+    }
+}
@@ -0,0 +1,709 @@
+package com.matthewfortier.gameoflife;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Steps a Game of Life board without touching any Android classes.
+ *
+ * By default the board is a torus. The engine keeps two packed grids that are swapped
+ * after every generation, so stepping never allocates, and each step works on 64 cells
+ * at a time.
+ *
+ * The board is split into DirtyTiles. A tile is only recomputed when it or one of its
+ * neighbors changed in the previous generation; otherwise the back buffer already holds
+ * the same cells, because nothing there changed since it was the front buffer.
+ *
+ * Large boards can be stepped on several threads. The tile rows are split into bands
+ * that run as fork/join tasks; each band only writes its own rows of the back buffer and
+ * only reads the front buffer, so the halo rows at band edges need no coordination. Each
+ * band records its changed tiles in its own slots of a shared array, and those are
+ * merged into the dirty set once every band has finished.
+ *
+ * With wrapping turned off the board is instead a window onto a SparseUniverse, with
+ * row and column 0 at the origin. Cells keep living after they leave the window, and
+ * only the cells that flip inside it are copied onto the grid.
+ *
+ * A board too big for the heap is kept in a MappedGrid store instead, and the engine's
+ * grid is a window onto it, starting at its top left corner and moved with setOrigin.
+ * The store is stepped in place, then the window is copied out of it and compared with
+ * the last one to find the changed tiles. The store always wraps at its own edges, and
+ * so does the window. Jumping a store steps every generation, so the whole store moves
+ * ahead and not just the window.
+ *
+ * Every generation is hashed into a CycleDetector, so the engine knows when the board
+ * has died out, settled or started repeating. The hash and the live count are kept up to
+ * date from the cells that flip, so this costs the same per changed cell however big the
+ * board is. In a store only dying out is noticed, since the store's changes aren't seen.
+ *
+ * On a torus the engine can also keep a GenerationHistory, so the board can be stepped
+ * back or moved to any generation still held. Stepping records each generation from the
+ * tiles that changed; edits are only copied into the history when it is next needed, so a
+ * burst of them costs one copy of the board.
+ */
+public class LifeEngine {
+
+    // Below this many cells the fork overhead costs more than the extra threads save
+    public static final int PARALLEL_THRESHOLD = 128 * 128;
+    // More threads than this only add scheduling overhead on any device there is
+    public static final int MAX_PARALLELISM = 64;
+
+    private final int mRows;
+    private final int mCols;
+    private BitGrid mCurrent;
+    private BitGrid mNext;
+    private long mGeneration = 0;
+    private Rule mRule = Rule.CONWAY;
+
+    // Tiles changed by the last step or edited since, and the ones the next step changes
+    private DirtyTiles mDirty;
+    private DirtyTiles mChanged;
+    // Everything changed since the last call to collectChanges
+    private final DirtyTiles mUncollected;
+    private int mChangedCells;
+
+    // Zobrist hash of every live cell, on the plane when there is one, and the torus's live count
+    private long mHash;
+    private int mLive;
+    private final CycleDetector mCycles = new CycleDetector();
+
+    // Earlier generations on a torus, or null when not kept; stale once the board is edited
+    private GenerationHistory mHistory;
+    private boolean mHistoryStale;
+
+    // The whole plane when not wrapping, or null on a torus
+    private SparseUniverse mPlane;
+
+    // The whole board when it lives in a file, or null when the grid is the whole board
+    private MappedGrid mStore;
+    // Store cell at the window's top left corner, before wrapping round the store's edges
+    private int mOriginRow;
+    private int mOriginCol;
+
+    // Used when stepping with more than one thread; each tile's changed cell count
+    // goes in its own slot so the bands never write to the same place
+    private ForkJoinPool mPool;
+    private int[] mTileChanges;
+
+    public LifeEngine(int rows, int cols) {
+        mRows = rows;
+        mCols = cols;
+        mCurrent = new BitGrid(rows, cols);
+        mNext = new BitGrid(rows, cols);
+        mDirty = new DirtyTiles(rows, cols);
+        mChanged = new DirtyTiles(rows, cols);
+        mUncollected = new DirtyTiles(rows, cols);
+        markAllDirty();
+    }
+
+    public int getRows() {
+        return mRows;
+    }
+
+    public int getCols() {
+        return mCols;
+    }
+
+    public long getGeneration() {
+        return mGeneration;
+    }
+
+    public void setGeneration(long generation) {
+        mHistoryStale = true;
+        // Renumbering doesn't change how far apart the remembered generations are
+        mCycles.offset(generation - mGeneration);
+        mGeneration = generation;
+    }
+
+    // The current generation; it is only valid until the next call to step, and edits
+    // must go through the engine so the changed tiles are tracked
+    public BitGrid getGrid() {
+        return mCurrent;
+    }
+
+    public Rule getRule() {
+        return mRule;
+    }
+
+    public void setRule(Rule rule) {
+        if (rule.equals(mRule)) return;
+        mRule = rule;
+        if (mPlane != null) mPlane.setRule(rule);
+        if (mStore != null) mStore.setRule(rule);
+        // Settled tiles may not be settled under the new rule, nor repeating boards repeat
+        markAllDirty();
+        mCycles.reset();
+    }
+
+    public boolean isAlive(int row, int col) {
+        return mCurrent.get(row, col);
+    }
+
+    public boolean isWrapping() {
+        return mPlane == null;
+    }
+
+    // Switching to the plane starts it from the board; switching back drops anything off it
+    public void setWrapping(boolean wrapping) {
+        if (wrapping == isWrapping() || mStore != null) return;
+        if (wrapping) {
+            mPlane = null;
+            // The back buffer went stale while the plane was being stepped
+            markAllDirty();
+        } else {
+            mPlane = new SparseUniverse();
+            mPlane.setRule(mRule);
+            loadPlane();
+        }
+        rehash();
+    }
+
+    public MappedGrid getStore() {
+        return mStore;
+    }
+
+    // Makes the board a window onto the store, which must be at least as big as the board.
+    // Passing null detaches it and keeps the cells in the window as a torus of their own
+    public void setStore(MappedGrid store) {
+        if (store == mStore) return;
+        if (store != null) {
+            if (store.getRows() < mRows || store.getCols() < mCols)
+                throw new IllegalArgumentException("Store is smaller than the board");
+            mPlane = null;
+            store.copyViewport(mCurrent, 0, 0);
+        }
+        mStore = store;
+        mOriginRow = 0;
+        mOriginCol = 0;
+        markAllDirty();
+        rehash();
+    }
+
+    public int getOriginRow() {
+        return mOriginRow;
+    }
+
+    public int getOriginCol() {
+        return mOriginCol;
+    }
+
+    // Moves the window onto the store so its top left corner is at the given store cell,
+    // counted round the store's edges when outside it. Without a store the board stays put
+    public void setOrigin(int row, int col) {
+        if (mStore == null || (row == mOriginRow && col == mOriginCol)) return;
+        mOriginRow = row;
+        mOriginCol = col;
+        mStore.copyViewport(mCurrent, storeRow(0), storeCol(0));
+        markAllDirty();
+        rehash();
+    }
+
+    public int getParallelism() {
+        return mPool != null ? mPool.getParallelism() : 1;
+    }
+
+    // Number of threads to step with, kept between 1 and MAX_PARALLELISM; boards under
+    // PARALLEL_THRESHOLD always use one
+    public void setParallelism(int threads) {
+        threads = Math.max(1, Math.min(MAX_PARALLELISM, threads));
+        if (threads == getParallelism()) return;
+        stopPool();
+        if (threads > 1) {
+            mPool = new ForkJoinPool(threads);
+            mTileChanges = new int[mDirty.getTileRows() * mDirty.getTileCols()];
+        }
+    }
+
+    // Bytes to keep earlier generations in, or 0 to keep none; starts from the board as it is
+    public void setHistoryBudget(long bytes) {
+        mHistory = bytes > 0 ? new GenerationHistory(bytes) : null;
+        mHistoryStale = true;
+    }
+
+    // Oldest generation that can be gone back to, which is the current one without a history
+    public long getHistoryStart() {
+        if (!hasHistory()) return mGeneration;
+        syncHistory();
+        return mHistory.getStart();
+    }
+
+    // Newest generation that can be gone to, which is after the current one after stepping back
+    public long getHistoryEnd() {
+        if (!hasHistory()) return mGeneration;
+        syncHistory();
+        return mHistory.getEnd();
+    }
+
+    /**
+     * Goes back one generation, by flipping back only the cells that changed when the
+     * history has them. Returns false, doing nothing, if that generation isn't held.
+     */
+    public boolean stepBack() {
+        if (!hasHistory()) return false;
+        syncHistory();
+        if (!mHistory.contains(mGeneration - 1)) return false;
+        int[] indexes = mHistory.getChangedWords(mGeneration);
+        if (indexes == null) return seek(mGeneration - 1);
+
+        long[] flips = mHistory.getFlips(mGeneration);
+        long[] words = mCurrent.getWords();
+        int wordsPerRow = mCurrent.getWordsPerRow();
+        for (int i = 0; i < indexes.length; i++) {
+            int index = indexes[i];
+            int row = index / wordsPerRow;
+            int word = index - row * wordsPerRow;
+            long before = words[index];
+            words[index] ^= flips[i];
+            hashWord(row, word, before, words[index]);
+            mDirty.mark(row / DirtyTiles.TILE_ROWS, word);
+            mUncollected.mark(row / DirtyTiles.TILE_ROWS, word);
+        }
+        mGeneration--;
+        mCycles.reset();
+        return true;
+    }
+
+    // Rebuilds any generation the history holds; returns false, doing nothing, otherwise
+    public boolean seek(long generation) {
+        if (!hasHistory()) return false;
+        syncHistory();
+        if (!mHistory.contains(generation)) return false;
+        mHistory.restore(generation, mCurrent);
+        mGeneration = generation;
+        markAllDirty();
+        rehash();
+        // The board is one the history already holds
+        mHistoryStale = false;
+        return true;
+    }
+
+    // Stops any stepping threads and closes the store; the engine falls back to stepping
+    // the board on its own on the caller's thread
+    public void release() {
+        stopPool();
+        if (mStore != null) {
+            try {
+                mStore.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            setStore(null);
+        }
+    }
+
+    // Live cells on the whole plane or store, or just the board when wrapping
+    public long getTotalPopulation() {
+        if (mStore != null) return mStore.getPopulation();
+        return mPlane != null ? mPlane.getPopulation() : mLive;
+    }
+
+    public void setAlive(int row, int col, boolean alive) {
+        if (mPlane != null) mPlane.set(col, row, alive);
+        if (mStore != null) mStore.set(storeRow(row), storeCol(col), alive);
+        if (mCurrent.get(row, col) != alive) {
+            mHash ^= CycleDetector.cellKey(SparseUniverse.key(col, row));
+            mLive += alive ? 1 : -1;
+        }
+        mCurrent.set(row, col, alive);
+        mDirty.markCell(row, col);
+        mUncollected.markCell(row, col);
+        mCycles.reset();
+        mHistoryStale = true;
+    }
+
+    // Live cells on the board
+    public int getPopulation() {
+        return mPlane == null && mStore == null ? mLive : mCurrent.getPopulation();
+    }
+
+    // Hash of the live cells, on the whole plane when not wrapping; meaningless with a store
+    public long getHash() {
+        return mHash;
+    }
+
+    // One of the CycleDetector states, as of the current generation
+    public int getCycleState() {
+        return mCycles.getState();
+    }
+
+    // Generations between repeats once the board is no longer active
+    public long getPeriod() {
+        return mCycles.getPeriod();
+    }
+
+    /**
+     * Advances n generations without stepping most of them when the board is known to
+     * have died out, settled or be repeating, since only n modulo the period matters.
+     * Returns false, doing nothing, while the board is still active.
+     */
+    public boolean fastForward(long n) {
+        if (mCycles.getState() == CycleDetector.ACTIVE) return false;
+        int rest = (int) (n % mCycles.getPeriod());
+        step(rest);
+        long skipped = n - rest;
+        mGeneration += skipped;
+        if (mStore != null) mStore.setGeneration(mStore.getGeneration() + skipped);
+        mCycles.offset(skipped);
+        // The generations skipped were never recorded
+        mHistoryStale = true;
+        return true;
+    }
+
+    /**
+     * Advances n generations, skipping ahead with HashLife where that gives the same board
+     * as stepping. HashLife only knows an endless plane, so a torus, where cells wrap round
+     * its edges, is stepped one generation at a time instead. On the plane every live cell
+     * jumps, on the board or not, and the board is copied back out of the plane.
+     */
+    public void jump(HashLife hashLife, long n) {
+        if (n <= 0 || fastForward(n)) return;
+        if (isWrapping()) {
+            for (long left = n; left > 0; left -= Integer.MAX_VALUE)
+                step((int) Math.min(left, Integer.MAX_VALUE));
+            return;
+        }
+
+        hashLife.setRule(mRule);
+        hashLife.load(mPlane.getLiveCells());
+        hashLife.advance(n);
+        hashLife.copyTo(mPlane);
+        mGeneration += n;
+        copyPlane();
+        markAllDirty();
+        rehash();
+    }
+
+    // Kills every cell and resets the generation counter
+    public void clear() {
+        mCurrent.clear();
+        if (mPlane != null) mPlane.clear();
+        if (mStore != null) mStore.clear();
+        mGeneration = 0;
+        markAllDirty();
+        rehash();
+    }
+
+    // Copies the cells in from a grid of the same size, leaving the generation alone
+    public void load(boolean[][] data) {
+        mCurrent.load(data);
+        loadPlane();
+        if (mStore != null) mStore.pasteViewport(mCurrent, storeRow(0), storeCol(0));
+        markAllDirty();
+        rehash();
+    }
+
+    public void load(BitGrid grid) {
+        mCurrent.copyFrom(grid);
+        loadPlane();
+        if (mStore != null) mStore.pasteViewport(mCurrent, storeRow(0), storeCol(0));
+        markAllDirty();
+        rehash();
+    }
+
+    // Copies the current cells out into a grid of the same size
+    public void copyTo(boolean[][] data) {
+        mCurrent.copyTo(data);
+    }
+
+    // Number of cells that flipped in the last generation stepped
+    public int getChangedCellCount() {
+        return mChangedCells;
+    }
+
+    // Tiles changed by the last generation stepped, plus any edited since
+    public DirtyTiles getDirtyTiles() {
+        return mDirty;
+    }
+
+    // Adds every tile changed since the last call into the given set and starts over
+    public void collectChanges(DirtyTiles into) {
+        into.or(mUncollected);
+        mUncollected.clear();
+    }
+
+    // Advances the board by n generations
+    public void step(int n) {
+        if (mStore != null) {
+            for (int g = 0; g < n; g++)
+                stepStore();
+            return;
+        }
+        if (mPlane != null) {
+            for (int g = 0; g < n; g++)
+                stepPlane();
+            return;
+        }
+
+        if (mHistory != null) syncHistory();
+        boolean parallel = mPool != null && mRows * mCols >= PARALLEL_THRESHOLD
+                && mDirty.getTileRows() > 1;
+
+        for (int g = 0; g < n; g++) {
+            mChanged.clear();
+            mChangedCells = 0;
+
+            if (parallel) {
+                stepParallel();
+            } else {
+                int tileRows = mDirty.getTileRows();
+                int tileCols = mDirty.getTileCols();
+                for (int tr = 0; tr < tileRows; tr++) {
+                    int fromRow = mDirty.firstRow(tr);
+                    int toRow = mDirty.endRow(tr);
+                    for (int tc = 0; tc < tileCols; tc++) {
+                        // A settled neighborhood stays settled, and the back buffer already matches it
+                        if (!mDirty.isNeighborhoodDirty(tr, tc)) continue;
+
+                        int changed = mCurrent.stepTile(mNext, fromRow, toRow, tc, tc + 1, mRule);
+                        if (changed > 0) {
+                            mChanged.mark(tr, tc);
+                            mChangedCells += changed;
+                        }
+                    }
+                }
+            }
+
+            hashChanges();
+            BitGrid tmp = mCurrent;
+            mCurrent = mNext;
+            mNext = tmp;
+
+            DirtyTiles tiles = mDirty;
+            mDirty = mChanged;
+            mChanged = tiles;
+            mUncollected.or(mDirty);
+            mGeneration++;
+            mCycles.record(mGeneration, mHash, mLive);
+            if (mHistory != null) mHistory.record(mNext, mCurrent, mDirty, mGeneration);
+        }
+    }
+
+    // Folds the cells that differ between the front and back buffers into the hash and live count
+    private void hashChanges() {
+        long[] before = mCurrent.getWords();
+        long[] after = mNext.getWords();
+        int wordsPerRow = mCurrent.getWordsPerRow();
+        for (int tr = 0; tr < mChanged.getTileRows(); tr++) {
+            for (int tc = 0; tc < mChanged.getTileCols(); tc++) {
+                if (!mChanged.isDirty(tr, tc)) continue;
+                for (int row = mChanged.firstRow(tr); row < mChanged.endRow(tr); row++) {
+                    int index = row * wordsPerRow + tc;
+                    if (before[index] != after[index]) hashWord(row, tc, before[index], after[index]);
+                }
+            }
+        }
+    }
+
+    // Folds the cells that differ between two versions of one word into the hash and live count
+    private void hashWord(int row, int word, long before, long after) {
+        long flipped = before ^ after;
+        mLive += Long.bitCount(flipped & after) - Long.bitCount(flipped & before);
+        while (flipped != 0) {
+            int col = (word << 6) + Long.numberOfTrailingZeros(flipped);
+            mHash ^= CycleDetector.cellKey(SparseUniverse.key(col, row));
+            flipped &= flipped - 1;
+        }
+    }
+
+    private boolean hasHistory() {
+        return mHistory != null && mPlane == null && mStore == null;
+    }
+
+    // Copies any edits made since the history last saw the board into it
+    private void syncHistory() {
+        if (!mHistoryStale) return;
+        mHistory.mark(mCurrent, mGeneration);
+        mHistoryStale = false;
+    }
+
+    // Works the hash and live count out from scratch after the board was replaced, and
+    // forgets the cycle history
+    private void rehash() {
+        mHistoryStale = true;
+        mHash = 0;
+        mLive = 0;
+        if (mPlane != null) {
+            LongSet cells = mPlane.getLiveCells();
+            for (int slot = 0; slot < cells.getCapacity(); slot++) {
+                long key = cells.keyAt(slot);
+                if (key != LongSet.EMPTY) mHash ^= CycleDetector.cellKey(key);
+            }
+        } else if (mStore == null) {
+            long[] words = mCurrent.getWords();
+            int wordsPerRow = mCurrent.getWordsPerRow();
+            for (int i = 0; i < words.length; i++) {
+                long word = words[i];
+                mLive += Long.bitCount(word);
+                int row = i / wordsPerRow;
+                while (word != 0) {
+                    int col = ((i - row * wordsPerRow) << 6) + Long.numberOfTrailingZeros(word);
+                    mHash ^= CycleDetector.cellKey(SparseUniverse.key(col, row));
+                    word &= word - 1;
+                }
+            }
+        }
+        mCycles.reset();
+    }
+
+    // Steps every band on the pool, then merges the per-tile counts into mChanged
+    private void stepParallel() {
+        int tileRows = mDirty.getTileRows();
+        int tileCols = mDirty.getTileCols();
+        // A few bands per thread so one busy band doesn't leave the others waiting
+        int grain = Math.max(1, tileRows / (mPool.getParallelism() * 4));
+        mPool.invoke(new BandTask(0, tileRows, grain));
+
+        for (int tr = 0; tr < tileRows; tr++) {
+            for (int tc = 0; tc < tileCols; tc++) {
+                int changed = mTileChanges[tr * tileCols + tc];
+                if (changed > 0) {
+                    mChanged.mark(tr, tc);
+                    mChangedCells += changed;
+                }
+            }
+        }
+    }
+
+    // Steps the plane and copies whatever flipped inside the window onto the board
+    private void stepPlane() {
+        mPlane.step();
+
+        mDirty.clear();
+        mChangedCells = 0;
+        for (int i = 0; i < mPlane.getChangedCount(); i++) {
+            long key = mPlane.getChanged(i);
+            mHash ^= CycleDetector.cellKey(key);
+            int row = SparseUniverse.yOf(key);
+            int col = SparseUniverse.xOf(key);
+            if (row < 0 || col < 0 || row >= mRows || col >= mCols) continue;
+
+            mCurrent.toggle(row, col);
+            mDirty.markCell(row, col);
+            mChangedCells++;
+        }
+        mUncollected.or(mDirty);
+        mGeneration++;
+        mCycles.record(mGeneration, mHash, mPlane.getPopulation());
+    }
+
+    // Steps the store and copies the window out of it, marking the tiles that differ
+    private void stepStore() {
+        mStore.step(mRule);
+        mStore.copyViewport(mNext, storeRow(0), storeCol(0));
+
+        mDirty.clear();
+        mChangedCells = 0;
+        long[] before = mCurrent.getWords();
+        long[] after = mNext.getWords();
+        int wordsPerRow = mCurrent.getWordsPerRow();
+        for (int i = 0; i < before.length; i++) {
+            long diff = before[i] ^ after[i];
+            if (diff == 0) continue;
+            int row = i / wordsPerRow;
+            mDirty.markCell(row, (i - row * wordsPerRow) << 6);
+            mChangedCells += Long.bitCount(diff);
+        }
+
+        BitGrid tmp = mCurrent;
+        mCurrent = mNext;
+        mNext = tmp;
+        mUncollected.or(mDirty);
+        mGeneration++;
+        // Only an empty store can be told apart without seeing its changes
+        if (mStore.getPopulation() == 0) mCycles.record(mGeneration, 0, 0);
+    }
+
+    // Replaces the plane, if there is one, with just the cells on the board
+    private void loadPlane() {
+        if (mPlane == null) return;
+        mPlane.clear();
+        long[] words = mCurrent.getWords();
+        int wordsPerRow = mCurrent.getWordsPerRow();
+        for (int row = 0; row < mRows; row++) {
+            for (int k = 0; k < wordsPerRow; k++) {
+                long word = words[row * wordsPerRow + k];
+                while (word != 0) {
+                    mPlane.set((k << 6) + Long.numberOfTrailingZeros(word), row, true);
+                    word &= word - 1;
+                }
+            }
+        }
+    }
+
+    // Replaces the board with the cells of the plane that fall on it
+    private void copyPlane() {
+        mCurrent.clear();
+        LongSet cells = mPlane.getLiveCells();
+        for (int slot = 0; slot < cells.getCapacity(); slot++) {
+            long key = cells.keyAt(slot);
+            if (key == LongSet.EMPTY) continue;
+            int row = SparseUniverse.yOf(key);
+            int col = SparseUniverse.xOf(key);
+            if (row >= 0 && col >= 0 && row < mRows && col < mCols) mCurrent.set(row, col, true);
+        }
+    }
+
+    // Store row under a row of the window
+    private int storeRow(int row) {
+        return wrap((long) mOriginRow + row, mStore.getRows());
+    }
+
+    private int storeCol(int col) {
+        return wrap((long) mOriginCol + col, mStore.getCols());
+    }
+
+    private static int wrap(long i, int size) {
+        int wrapped = (int) (i % size);
+        return wrapped < 0 ? wrapped + size : wrapped;
+    }
+
+    private void stopPool() {
+        if (mPool != null) mPool.shutdown();
+        mPool = null;
+        mTileChanges = null;
+    }
+
+    private void markAllDirty() {
+        mDirty.markAll();
+        mUncollected.markAll();
+    }
+
+    // Steps tile rows [fromTileRow, toTileRow), splitting in half until a band is small enough
+    private class BandTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int mFromTileRow;
+        private final int mToTileRow;
+        private final int mGrain;
+
+        BandTask(int fromTileRow, int toTileRow, int grain) {
+            mFromTileRow = fromTileRow;
+            mToTileRow = toTileRow;
+            mGrain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (mToTileRow - mFromTileRow > mGrain) {
+                int middle = (mFromTileRow + mToTileRow) >>> 1;
+                invokeAll(new BandTask(mFromTileRow, middle, mGrain),
+                        new BandTask(middle, mToTileRow, mGrain));
+                return;
+            }
+
+            int tileCols = mDirty.getTileCols();
+            for (int tr = mFromTileRow; tr < mToTileRow; tr++) {
+                int fromRow = mDirty.firstRow(tr);
+                int toRow = mDirty.endRow(tr);
+                for (int tc = 0; tc < tileCols; tc++) {
+                    int changed = 0;
+                    if (mDirty.isNeighborhoodDirty(tr, tc))
+                        changed = mCurrent.stepTile(mNext, fromRow, toRow, tc, tc + 1, mRule);
+                    mTileChanges[tr * tileCols + tc] = changed;
+                }
+            }
+        }
+    }
+}
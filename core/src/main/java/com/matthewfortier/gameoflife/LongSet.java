@@ -0,0 +1,139 @@
+package com.matthewfortier.gameoflife;
+
+/**
+ * A set of longs using open addressing with linear probing, so nothing is boxed.
+ *
+ * EMPTY marks a free slot and cannot be stored. To visit every element, loop over the
+ * slots up to getCapacity and skip the ones where keyAt returns EMPTY.
+ */
+public class LongSet {
+
+    public static final long EMPTY = Long.MIN_VALUE;
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] mKeys;
+    private int mSize;
+
+    public LongSet() {
+        this(MIN_CAPACITY);
+    }
+
+    public LongSet(int expected) {
+        mKeys = newTable(capacityFor(expected));
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    public int getCapacity() {
+        return mKeys.length;
+    }
+
+    public long keyAt(int slot) {
+        return mKeys[slot];
+    }
+
+    public boolean contains(long key) {
+        int mask = mKeys.length - 1;
+        for (int i = index(key, mask); ; i = (i + 1) & mask) {
+            long k = mKeys[i];
+            if (k == key) return true;
+            if (k == EMPTY) return false;
+        }
+    }
+
+    // Returns false if the key was already there
+    public boolean add(long key) {
+        if (key == EMPTY)
+            throw new IllegalArgumentException("EMPTY cannot be stored");
+
+        int mask = mKeys.length - 1;
+        int i = index(key, mask);
+        while (mKeys[i] != EMPTY) {
+            if (mKeys[i] == key) return false;
+            i = (i + 1) & mask;
+        }
+        mKeys[i] = key;
+        if (++mSize > mKeys.length >>> 1)
+            rehash(mKeys.length << 1);
+        return true;
+    }
+
+    // Returns false if the key was not there
+    public boolean remove(long key) {
+        int mask = mKeys.length - 1;
+        int i = index(key, mask);
+        while (mKeys[i] != key) {
+            if (mKeys[i] == EMPTY) return false;
+            i = (i + 1) & mask;
+        }
+
+        // Shift later keys of the same probe run back so no tombstones are needed
+        int gap = i;
+        for (int j = (gap + 1) & mask; mKeys[j] != EMPTY; j = (j + 1) & mask) {
+            int home = index(mKeys[j], mask);
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                mKeys[gap] = mKeys[j];
+                gap = j;
+            }
+        }
+        mKeys[gap] = EMPTY;
+        mSize--;
+        return true;
+    }
+
+    // Empties the set, giving back memory if it has grown far bigger than it needs to be
+    public void clear(int expected) {
+        int capacity = capacityFor(expected);
+        if (mKeys.length > capacity * 4) {
+            mKeys = newTable(capacity);
+        } else {
+            for (int i = 0; i < mKeys.length; i++)
+                mKeys[i] = EMPTY;
+        }
+        mSize = 0;
+    }
+
+    public void clear() {
+        clear(MIN_CAPACITY);
+    }
+
+    private void rehash(int capacity) {
+        long[] old = mKeys;
+        mKeys = newTable(capacity);
+        int mask = capacity - 1;
+        for (long key : old) {
+            if (key == EMPTY) continue;
+            int i = index(key, mask);
+            while (mKeys[i] != EMPTY)
+                i = (i + 1) & mask;
+            mKeys[i] = key;
+        }
+    }
+
+    private static int index(long key, int mask) {
+        // Mix the bits so keys that differ only in their high half still spread out
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private static int capacityFor(int expected) {
+        int capacity = MIN_CAPACITY;
+        while (capacity >>> 1 < expected)
+            capacity <<= 1;
+        return capacity;
+    }
+
+    private static long[] newTable(int capacity) {
+        long[] keys = new long[capacity];
+        for (int i = 0; i < capacity; i++)
+            keys[i] = EMPTY;
+        return keys;
+    }
+}
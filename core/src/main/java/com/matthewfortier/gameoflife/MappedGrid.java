@@ -0,0 +1,373 @@
+package com.matthewfortier.gameoflife;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * A packed board kept in a memory mapped file instead of on the heap, so its size is
+ * limited by storage rather than by the app's heap.
+ *
+ * The file is a 64 byte header followed by the rows in the same layout as a BitGrid.
+ * The rows are mapped in chunks of whole rows up to a gigabyte each, since one mapping
+ * is indexed by an int, and the OS pages them in and out as they are touched.
+ *
+ * A step rewrites the file in place a row at a time. Only the rows above, at and below
+ * the one being computed are copied onto the heap, plus the original first row for the
+ * last row to wrap onto, and rows that didn't change are never written back, so their
+ * pages stay clean. Anything shown on screen is copied out of a viewport with
+ * copyViewport, which only touches the rows it covers.
+ *
+ * A MappedGrid is not thread safe; it is meant to be owned by the engine thread.
+ */
+public class MappedGrid implements CellGrid {
+
+    // Each side is kept small enough for a row to fit in a heap buffer
+    public static final int MAX_COLS = 1 << 22;
+    public static final long MAX_CELLS = 1L << 36;
+
+    private static final int MAGIC = 0x474F4C4D; // "GOLM"
+    private static final byte VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int RULE_OFFSET = 26;
+    private static final int MAX_RULE_LENGTH = HEADER_SIZE - RULE_OFFSET;
+    private static final long CHUNK_BYTES = 1L << 30;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final RandomAccessFile mFile;
+    private final FileChannel mChannel;
+    private final int mRows;
+    private final int mCols;
+    private final int mWordsPerRow;
+    private final int mLastBit;
+    private final int mRowsPerChunk;
+
+    private final MappedByteBuffer mHeader;
+    private final MappedByteBuffer[] mChunks;
+    private final LongBuffer[] mWords;
+
+    private long mPopulation;
+
+    // Rows copied onto the heap while stepping
+    private final long[] mUp;
+    private final long[] mMid;
+    private final long[] mDown;
+    private final long[] mFirst;
+    private final long[] mOut;
+
+    private MappedGrid(RandomAccessFile file, int rows, int cols) throws IOException {
+        mFile = file;
+        mChannel = file.getChannel();
+        mRows = rows;
+        mCols = cols;
+        mWordsPerRow = (cols + 63) >>> 6;
+        mLastBit = (cols - 1) & 63;
+        mRowsPerChunk = (int) Math.min(rows, CHUNK_BYTES / (mWordsPerRow * 8L));
+
+        long size = HEADER_SIZE + (long) rows * mWordsPerRow * 8;
+        if (mChannel.size() < size)
+            mFile.setLength(size);
+
+        mHeader = mChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        mHeader.order(ByteOrder.LITTLE_ENDIAN);
+
+        int chunks = (rows + mRowsPerChunk - 1) / mRowsPerChunk;
+        mChunks = new MappedByteBuffer[chunks];
+        mWords = new LongBuffer[chunks];
+        for (int c = 0; c < chunks; c++) {
+            int chunkRows = Math.min(mRowsPerChunk, rows - c * mRowsPerChunk);
+            long offset = HEADER_SIZE + (long) c * mRowsPerChunk * mWordsPerRow * 8;
+            mChunks[c] = mChannel.map(FileChannel.MapMode.READ_WRITE, offset, (long) chunkRows * mWordsPerRow * 8);
+            mChunks[c].order(ByteOrder.LITTLE_ENDIAN);
+            mWords[c] = mChunks[c].asLongBuffer();
+        }
+
+        mUp = new long[mWordsPerRow];
+        mMid = new long[mWordsPerRow];
+        mDown = new long[mWordsPerRow];
+        mFirst = new long[mWordsPerRow];
+        mOut = new long[mWordsPerRow];
+    }
+
+    // Makes an empty board in the given file, replacing whatever was there
+    public static MappedGrid create(File file, int rows, int cols) throws IOException {
+        if (rows < 1 || cols < 1 || cols > MAX_COLS || (long) rows * cols > MAX_CELLS)
+            throw new IOException("Unsupported board size " + cols + "x" + rows);
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            // Truncating first leaves the new length zero filled
+            raf.setLength(0);
+            MappedGrid grid = new MappedGrid(raf, rows, cols);
+            grid.mHeader.putInt(0, MAGIC);
+            grid.mHeader.put(4, VERSION);
+            grid.mHeader.putInt(8, rows);
+            grid.mHeader.putInt(12, cols);
+            grid.setGeneration(0);
+            grid.setRule(Rule.CONWAY);
+            return grid;
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    // Maps an existing board
+    public static MappedGrid open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            FileChannel channel = raf.getChannel();
+            while (header.hasRemaining())
+                if (channel.read(header) < 0)
+                    throw new IOException("Truncated board header");
+
+            if (header.getInt(0) != MAGIC)
+                throw new IOException("Not a mapped board");
+            if (header.get(4) != VERSION)
+                throw new IOException("Unsupported board version " + header.get(4));
+            int rows = header.getInt(8);
+            int cols = header.getInt(12);
+            if (rows < 1 || cols < 1 || cols > MAX_COLS || (long) rows * cols > MAX_CELLS)
+                throw new IOException("Bad board size " + cols + "x" + rows);
+
+            long size = HEADER_SIZE + (long) rows * ((cols + 63) >>> 6) * 8;
+            if (channel.size() < size)
+                throw new IOException("Truncated board");
+
+            MappedGrid grid = new MappedGrid(raf, rows, cols);
+            grid.countPopulation();
+            return grid;
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    // A factory for the pattern readers that makes the board in the given file
+    public static CellGrid.Factory factoryFor(final File file) {
+        return new CellGrid.Factory() {
+            @Override
+            public CellGrid create(int rows, int cols) throws IOException {
+                return MappedGrid.create(file, rows, cols);
+            }
+
+            @Override
+            public long getMaxCells() {
+                return MAX_CELLS;
+            }
+        };
+    }
+
+    @Override
+    public int getRows() {
+        return mRows;
+    }
+
+    @Override
+    public int getCols() {
+        return mCols;
+    }
+
+    @Override
+    public int getWordsPerRow() {
+        return mWordsPerRow;
+    }
+
+    public long getGeneration() {
+        return mHeader.getLong(16);
+    }
+
+    public void setGeneration(long generation) {
+        mHeader.putLong(16, generation);
+    }
+
+    public Rule getRule() {
+        int length = mHeader.getShort(24) & 0xFFFF;
+        if (length > MAX_RULE_LENGTH) return Rule.CONWAY;
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++)
+            bytes[i] = mHeader.get(RULE_OFFSET + i);
+        return Rule.parseOrDefault(new String(bytes, UTF_8));
+    }
+
+    public void setRule(Rule rule) {
+        // A canonical rulestring is at most 21 characters
+        byte[] bytes = rule.toString().getBytes(UTF_8);
+        mHeader.putShort(24, (short) bytes.length);
+        for (int i = 0; i < bytes.length; i++)
+            mHeader.put(RULE_OFFSET + i, bytes[i]);
+    }
+
+    public long getPopulation() {
+        return mPopulation;
+    }
+
+    @Override
+    public boolean get(int row, int col) {
+        return (getWord(row, col >>> 6) & (1L << col)) != 0;
+    }
+
+    @Override
+    public void set(int row, int col, boolean alive) {
+        long word = getWord(row, col >>> 6);
+        setWord(row, col >>> 6, alive ? word | (1L << col) : word & ~(1L << col));
+    }
+
+    @Override
+    public long getWord(int row, int word) {
+        return mWords[row / mRowsPerChunk].get(index(row, word));
+    }
+
+    @Override
+    public void setWord(int row, int word, long bits) {
+        LongBuffer words = mWords[row / mRowsPerChunk];
+        int index = index(row, word);
+        mPopulation += Long.bitCount(bits) - Long.bitCount(words.get(index));
+        words.put(index, bits);
+    }
+
+    public void clear() {
+        for (int i = 0; i < mRows; i++) {
+            LongBuffer words = mWords[i / mRowsPerChunk];
+            int offset = index(i, 0);
+            for (int k = 0; k < mWordsPerRow; k++)
+                words.put(offset + k, 0);
+        }
+        mPopulation = 0;
+        setGeneration(0);
+    }
+
+    /**
+     * Replaces the board with its next generation under the given rule, wrapping at every
+     * edge, and returns how many cells changed.
+     */
+    public long step(Rule rule) {
+        readRow(0, mFirst);
+        readRow(mRows - 1, mUp);
+        System.arraycopy(mFirst, 0, mMid, 0, mWordsPerRow);
+
+        long changed = 0;
+        long population = 0;
+        for (int i = 0; i < mRows; i++) {
+            // Row i + 1 is still the old generation; the last row wraps onto the saved first row
+            if (i == mRows - 1) System.arraycopy(mFirst, 0, mDown, 0, mWordsPerRow);
+            else readRow(i + 1, mDown);
+
+            int rowChanged = BitGrid.stepRow(mUp, 0, mMid, 0, mDown, 0, mOut, 0,
+                    mWordsPerRow, mLastBit, 0, mWordsPerRow, rule);
+            if (rowChanged > 0) writeRow(i, mOut);
+            changed += rowChanged;
+            for (long word : mOut)
+                population += Long.bitCount(word);
+
+            // Roll the old rows up by one
+            System.arraycopy(mMid, 0, mUp, 0, mWordsPerRow);
+            System.arraycopy(mDown, 0, mMid, 0, mWordsPerRow);
+        }
+
+        mPopulation = population;
+        setGeneration(getGeneration() + 1);
+        return changed;
+    }
+
+    // Copies the cells under dst, with its top left corner at the given cell, wrapping at the edges
+    public void copyViewport(BitGrid dst, int top, int left) {
+        int rows = dst.getRows();
+        int cols = dst.getCols();
+        long[] out = dst.getWords();
+        int dstWords = dst.getWordsPerRow();
+        // Word aligned and within the board, so whole words can be copied
+        boolean aligned = (left & 63) == 0 && left + cols <= mCols;
+        long lastMask = -1L >>> (63 - ((cols - 1) & 63));
+
+        for (int i = 0; i < rows; i++) {
+            int row = (top + i) % mRows;
+            int offset = i * dstWords;
+            if (aligned) {
+                LongBuffer words = mWords[row / mRowsPerChunk];
+                int index = index(row, left >>> 6);
+                for (int k = 0; k < dstWords; k++)
+                    out[offset + k] = words.get(index + k);
+                out[offset + dstWords - 1] &= lastMask;
+            } else {
+                for (int j = 0; j < cols; j++)
+                    dst.set(i, j, get(row, (left + j) % mCols));
+            }
+        }
+    }
+
+    // The reverse of copyViewport: writes the cells of src onto the board at the given cell
+    public void pasteViewport(BitGrid src, int top, int left) {
+        int rows = src.getRows();
+        int cols = src.getCols();
+        long[] in = src.getWords();
+        int srcWords = src.getWordsPerRow();
+        boolean aligned = (left & 63) == 0 && left + cols <= mCols;
+        long lastMask = -1L >>> (63 - ((cols - 1) & 63));
+
+        for (int i = 0; i < rows; i++) {
+            int row = (top + i) % mRows;
+            int offset = i * srcWords;
+            if (aligned) {
+                int word = left >>> 6;
+                for (int k = 0; k < srcWords - 1; k++)
+                    setWord(row, word + k, in[offset + k]);
+                // Keep the board's cells past the right edge of src
+                int last = word + srcWords - 1;
+                setWord(row, last, (getWord(row, last) & ~lastMask) | in[offset + srcWords - 1]);
+            } else {
+                for (int j = 0; j < cols; j++)
+                    set(row, (left + j) % mCols, src.get(i, j));
+            }
+        }
+    }
+
+    // Writes the mapped pages out to the file
+    public void flush() {
+        mHeader.force();
+        for (MappedByteBuffer chunk : mChunks)
+            chunk.force();
+    }
+
+    // The mappings are released once the buffers are garbage collected
+    public void close() throws IOException {
+        flush();
+        mFile.close();
+    }
+
+    private int index(int row, int word) {
+        return (row % mRowsPerChunk) * mWordsPerRow + word;
+    }
+
+    private void readRow(int row, long[] dst) {
+        LongBuffer words = mWords[row / mRowsPerChunk];
+        int offset = index(row, 0);
+        for (int k = 0; k < mWordsPerRow; k++)
+            dst[k] = words.get(offset + k);
+    }
+
+    private void writeRow(int row, long[] src) {
+        LongBuffer words = mWords[row / mRowsPerChunk];
+        int offset = index(row, 0);
+        for (int k = 0; k < mWordsPerRow; k++)
+            words.put(offset + k, src[k]);
+    }
+
+    private void countPopulation() {
+        long population = 0;
+        long[] row = new long[mWordsPerRow];
+        for (int i = 0; i < mRows; i++) {
+            readRow(i, row);
+            for (long word : row)
+                population += Long.bitCount(word);
+        }
+        mPopulation = population;
+    }
+}
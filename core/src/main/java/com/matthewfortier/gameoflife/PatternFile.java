@@ -0,0 +1,379 @@
+package com.matthewfortier.gameoflife;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.PushbackInputStream;
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+
+/**
+ * A saved board, and the binary .data format it is stored in.
+ *
+ * The file starts with a fixed header, all numbers big-endian:
+ *
+ *   "GOLP"  magic
+ *   u8      version, currently 1
+ *   u8      body encoding, BODY_PACKED or BODY_RUNS
+ *   i32     rows
+ *   i32     columns
+ *   i64     generation
+ *   i32     alive color, 0 for the default
+ *   i32     dead color, 0 for the default
+ *   u16     length of the rulestring, then its UTF-8 bytes
+ *
+ * A packed body is the BitGrid words, row after row. A run body is the lengths of
+ * alternating dead and live runs over the cells in row-major order, starting with dead,
+ * each as an unsigned LEB128 varint. Whichever is smaller is written.
+ *
+ * Every reader can fill a grid from a CellGrid.Factory instead of the heap, so a board
+ * too big for memory can be read straight into a MappedGrid.
+ *
+ * Files saved before this format were a serialized boolean[][], optionally followed by
+ * the rulestring. Those are still read, through an ObjectInputStream that refuses to
+ * load any class but those two.
+ */
+public class PatternFile {
+
+    public static final int VERSION = 1;
+    public static final int BODY_PACKED = 0;
+    public static final int BODY_RUNS = 1;
+
+    private static final byte[] MAGIC = {'G', 'O', 'L', 'P'};
+    private static final int HEADER_SIZE = 32;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final CellGrid mGrid;
+    private final Rule mRule;
+    private final long mGeneration;
+    private final int mAliveColor;
+    private final int mDeadColor;
+
+    public PatternFile(CellGrid grid, Rule rule, long generation, int aliveColor, int deadColor) {
+        mGrid = grid;
+        mRule = rule;
+        mGeneration = generation;
+        mAliveColor = aliveColor;
+        mDeadColor = deadColor;
+    }
+
+    // Only for patterns read onto the heap, which is what the readers without a factory do
+    public BitGrid getGrid() {
+        return (BitGrid) mGrid;
+    }
+
+    public CellGrid getCells() {
+        return mGrid;
+    }
+
+    public Rule getRule() {
+        return mRule;
+    }
+
+    public long getGeneration() {
+        return mGeneration;
+    }
+
+    public int getAliveColor() {
+        return mAliveColor;
+    }
+
+    public int getDeadColor() {
+        return mDeadColor;
+    }
+
+    public void write(WritableByteChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long runBytes = runBodySize(mGrid);
+        long packedBytes = (long) mGrid.getRows() * mGrid.getWordsPerRow() * 8;
+        int body = runBytes < packedBytes ? BODY_RUNS : BODY_PACKED;
+
+        byte[] rule = mRule.toString().getBytes(UTF_8);
+        buffer.put(MAGIC);
+        buffer.put((byte) VERSION);
+        buffer.put((byte) body);
+        buffer.putInt(mGrid.getRows());
+        buffer.putInt(mGrid.getCols());
+        buffer.putLong(mGeneration);
+        buffer.putInt(mAliveColor);
+        buffer.putInt(mDeadColor);
+        buffer.putShort((short) rule.length);
+        buffer.put(rule);
+
+        if (body == BODY_PACKED) {
+            for (int i = 0; i < mGrid.getRows(); i++) {
+                for (int k = 0; k < mGrid.getWordsPerRow(); k++) {
+                    if (buffer.remaining() < 8) drain(buffer, channel);
+                    buffer.putLong(mGrid.getWord(i, k));
+                }
+            }
+        } else {
+            RunWriter runs = new RunWriter(buffer, channel);
+            forEachRun(mGrid, runs);
+        }
+        drain(buffer, channel);
+    }
+
+    public static PatternFile read(ReadableByteChannel channel) throws IOException {
+        return read(channel, BitGrid.FACTORY);
+    }
+
+    public static PatternFile read(ReadableByteChannel channel, CellGrid.Factory factory) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        buffer.flip();
+
+        fill(buffer, channel, HEADER_SIZE);
+        for (byte b : MAGIC)
+            if (buffer.get() != b) throw new IOException("Not a pattern file");
+        int version = buffer.get() & 0xFF;
+        if (version != VERSION)
+            throw new IOException("Unsupported pattern file version " + version);
+        int body = buffer.get() & 0xFF;
+        int rows = buffer.getInt();
+        int cols = buffer.getInt();
+        long generation = buffer.getLong();
+        int alive = buffer.getInt();
+        int dead = buffer.getInt();
+        int ruleLength = buffer.getShort() & 0xFFFF;
+
+        if (rows < 1 || cols < 1 || (long) rows * cols > factory.getMaxCells())
+            throw new IOException("Bad board size " + rows + "x" + cols);
+
+        fill(buffer, channel, ruleLength);
+        byte[] ruleBytes = new byte[ruleLength];
+        buffer.get(ruleBytes);
+        Rule rule;
+        try {
+            rule = Rule.parse(new String(ruleBytes, UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Bad rule in pattern file", e);
+        }
+
+        if (body != BODY_PACKED && body != BODY_RUNS)
+            throw new IOException("Unknown body encoding " + body);
+
+        CellGrid grid = factory.create(rows, cols);
+        if (body == BODY_PACKED) {
+            int wordsPerRow = grid.getWordsPerRow();
+            long lastMask = -1L >>> (63 - ((cols - 1) & 63));
+            for (int i = 0; i < rows; i++) {
+                for (int k = 0; k < wordsPerRow; k++) {
+                    fill(buffer, channel, 8);
+                    long word = buffer.getLong();
+                    grid.setWord(i, k, k == wordsPerRow - 1 ? word & lastMask : word);
+                }
+            }
+        } else {
+            readRuns(buffer, channel, grid);
+        }
+        return new PatternFile(grid, rule, generation, alive, dead);
+    }
+
+    /**
+     * Reads any pattern file we know, telling the formats apart by their first bytes:
+     * this format, a legacy serialized grid, a .cells file or an .rle file.
+     */
+    public static PatternFile read(InputStream in) throws IOException {
+        return read(in, BitGrid.FACTORY);
+    }
+
+    public static PatternFile read(InputStream in, CellGrid.Factory factory) throws IOException {
+        PushbackInputStream stream = new PushbackInputStream(in, MAGIC.length);
+        byte[] start = new byte[MAGIC.length];
+        int read = 0;
+        while (read < start.length) {
+            int n = stream.read(start, read, start.length - read);
+            if (n < 0) break;
+            read += n;
+        }
+        stream.unread(start, 0, read);
+
+        boolean current = read == MAGIC.length;
+        for (int i = 0; current && i < MAGIC.length; i++)
+            current = start[i] == MAGIC[i];
+        if (current)
+            return read(Channels.newChannel(stream), factory);
+        if (read >= 2 && start[0] == (byte) 0xAC && start[1] == (byte) 0xED)
+            return readLegacy(stream, factory);
+        if (read > 0 && (start[0] == '!' || start[0] == '.' || start[0] == 'O' || start[0] == '*'))
+            return CellsFormat.read(stream, factory);
+        return RleFormat.read(stream, factory);
+    }
+
+    // Reads a serialized boolean[][], and the rulestring if one was saved after it
+    public static PatternFile readLegacy(InputStream in, CellGrid.Factory factory) throws IOException {
+        ObjectInputStream stream = new LegacyInputStream(in);
+        boolean[][] data;
+        try {
+            data = (boolean[][]) stream.readObject();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Not a pattern file", e);
+        }
+        if (data == null || data.length == 0 || data[0] == null || data[0].length == 0)
+            throw new IOException("Empty pattern");
+        for (boolean[] row : data)
+            if (row == null || row.length != data[0].length)
+                throw new IOException("Rows of different lengths");
+
+        String rule = null;
+        try {
+            rule = (String) stream.readObject();
+        } catch (EOFException e) {
+            // Saved before rules were added
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Not a pattern file", e);
+        }
+        // The old app kept its board as [col][row]
+        CellGrid grid = factory.create(data[0].length, data.length);
+        for (int col = 0; col < data.length; col++)
+            for (int row = 0; row < data[0].length; row++)
+                if (data[col][row]) grid.set(row, col, true);
+        return new PatternFile(grid, Rule.parseOrDefault(rule), 0, 0, 0);
+    }
+
+    // Size of the run body in bytes, to pick the smaller encoding
+    private static long runBodySize(CellGrid grid) throws IOException {
+        final long[] size = new long[1];
+        forEachRun(grid, new RunVisitor() {
+            @Override
+            public void run(long length) {
+                size[0] += varintSize(length);
+            }
+        });
+        return size[0];
+    }
+
+    // Visits the alternating dead and live run lengths, starting with a dead run
+    private static void forEachRun(CellGrid grid, RunVisitor visitor) throws IOException {
+        int rows = grid.getRows();
+        int cols = grid.getCols();
+        int wordsPerRow = grid.getWordsPerRow();
+        boolean alive = false;
+        long run = 0;
+
+        for (int i = 0; i < rows; i++) {
+            for (int k = 0; k < wordsPerRow; k++) {
+                long word = grid.getWord(i, k);
+                int bits = Math.min(64, cols - (k << 6));
+                int j = 0;
+                while (j < bits) {
+                    // Skip ahead to the next cell that differs from the current run
+                    long pending = (alive ? ~word : word) >>> j;
+                    int same = pending == 0 ? bits - j : Math.min(bits - j, Long.numberOfTrailingZeros(pending));
+                    run += same;
+                    j += same;
+                    if (j < bits) {
+                        visitor.run(run);
+                        run = 0;
+                        alive = !alive;
+                    }
+                }
+            }
+        }
+        visitor.run(run);
+    }
+
+    private static void readRuns(ByteBuffer buffer, ReadableByteChannel channel, CellGrid grid) throws IOException {
+        long cells = (long) grid.getRows() * grid.getCols();
+        int cols = grid.getCols();
+        long position = 0;
+        boolean alive = false;
+
+        while (position < cells) {
+            long run = readVarint(buffer, channel);
+            if (run > cells - position)
+                throw new IOException("Runs overflow the board");
+            if (alive) {
+                for (long p = position; p < position + run; p++)
+                    grid.set((int) (p / cols), (int) (p % cols), true);
+            }
+            position += run;
+            alive = !alive;
+        }
+    }
+
+    private static long readVarint(ByteBuffer buffer, ReadableByteChannel channel) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            fill(buffer, channel, 1);
+            int b = buffer.get() & 0xFF;
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Varint too long");
+    }
+
+    private static int varintSize(long value) {
+        int size = 1;
+        while ((value >>>= 7) != 0)
+            size++;
+        return size;
+    }
+
+    // Makes sure at least count bytes are waiting in the buffer, which is kept in read mode
+    private static void fill(ByteBuffer buffer, ReadableByteChannel channel, int count) throws IOException {
+        if (buffer.remaining() >= count) return;
+        buffer.compact();
+        while (buffer.position() < count) {
+            if (channel.read(buffer) < 0)
+                throw new EOFException("Pattern file is truncated");
+        }
+        buffer.flip();
+    }
+
+    // Writes out everything in the buffer, which is kept in write mode
+    private static void drain(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    private interface RunVisitor {
+        void run(long length) throws IOException;
+    }
+
+    private static class RunWriter implements RunVisitor {
+
+        private final ByteBuffer mBuffer;
+        private final WritableByteChannel mChannel;
+
+        RunWriter(ByteBuffer buffer, WritableByteChannel channel) {
+            mBuffer = buffer;
+            mChannel = channel;
+        }
+
+        @Override
+        public void run(long length) throws IOException {
+            if (mBuffer.remaining() < 10) drain(mBuffer, mChannel);
+            while ((length & ~0x7FL) != 0) {
+                mBuffer.put((byte) ((length & 0x7F) | 0x80));
+                length >>>= 7;
+            }
+            mBuffer.put((byte) length);
+        }
+    }
+
+    // Only lets the classes a legacy save can contain be deserialized
+    private static class LegacyInputStream extends ObjectInputStream {
+
+        LegacyInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            String name = desc.getName();
+            if (!name.equals("[[Z") && !name.equals("[Z") && !name.equals("java.lang.String"))
+                throw new InvalidClassException(name, "Not allowed in a pattern file");
+            return super.resolveClass(desc);
+        }
+    }
+}
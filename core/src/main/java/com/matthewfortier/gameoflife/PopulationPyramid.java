@@ -0,0 +1,138 @@
+package com.matthewfortier.gameoflife;
+
+import java.util.Arrays;
+
+/**
+ * Live cell counts of a board at every power of two, for drawing it smaller than one
+ * pixel per cell.
+ *
+ * Level k counts the live cells in each 2^k by 2^k square, starting at level 1 and going
+ * up until a level is a single square. Squares on the right and bottom edges are cut
+ * short when the board isn't a multiple of their size. Flipping a cell updates one count
+ * per level, so the pyramid keeps up with a board for the cost of the cells that change.
+ *
+ * Each level is stored in the narrowest type its counts fit: bytes up to 8x8 squares,
+ * shorts up to 128x128 and ints above that. All the levels together take under 3 bits
+ * per board cell, which is less than three times the BitGrid they count.
+ */
+public class PopulationPyramid {
+
+    // The highest levels whose counts fit a byte and a short
+    private static final int BYTE_LEVELS = 3;
+    private static final int SHORT_LEVELS = 7;
+
+    private final int mRows;
+    private final int mCols;
+    private final int mLevels;
+    // Index 0 is level 1; each level is in just one of these, the others hold null for it
+    private final byte[][] mByteCounts;
+    private final short[][] mShortCounts;
+    private final int[][] mIntCounts;
+    private final int[] mLevelRows;
+    private final int[] mLevelCols;
+
+    public PopulationPyramid(int rows, int cols) {
+        mRows = rows;
+        mCols = cols;
+        int levels = 0;
+        while ((rows - 1) >> levels > 0 || (cols - 1) >> levels > 0)
+            levels++;
+
+        mLevels = levels;
+        mByteCounts = new byte[levels][];
+        mShortCounts = new short[levels][];
+        mIntCounts = new int[levels][];
+        mLevelRows = new int[levels];
+        mLevelCols = new int[levels];
+        for (int k = 1; k <= levels; k++) {
+            mLevelRows[k - 1] = ((rows - 1) >> k) + 1;
+            mLevelCols[k - 1] = ((cols - 1) >> k) + 1;
+            int squares = mLevelRows[k - 1] * mLevelCols[k - 1];
+            if (k <= BYTE_LEVELS) mByteCounts[k - 1] = new byte[squares];
+            else if (k <= SHORT_LEVELS) mShortCounts[k - 1] = new short[squares];
+            else mIntCounts[k - 1] = new int[squares];
+        }
+    }
+
+    // Levels above the cells themselves; the last one is a single square
+    public int getLevels() {
+        return mLevels;
+    }
+
+    public int getRows(int level) {
+        return level == 0 ? mRows : mLevelRows[level - 1];
+    }
+
+    public int getCols(int level) {
+        return level == 0 ? mCols : mLevelCols[level - 1];
+    }
+
+    // Live cells in the square at the given row and column of a level from 1 up
+    public int getCount(int level, int row, int col) {
+        return countAt(level, row * mLevelCols[level - 1] + col);
+    }
+
+    // Cells a square at the given row and column of a level covers, smaller at the edges
+    public int getArea(int level, int row, int col) {
+        int height = Math.min(mRows, (row + 1) << level) - (row << level);
+        int width = Math.min(mCols, (col + 1) << level) - (col << level);
+        return height * width;
+    }
+
+    // Adds 1 for a cell that was born or -1 for one that died
+    public void add(int row, int col, int delta) {
+        for (int k = 1; k <= mLevels; k++)
+            addAt(k, (row >> k) * mLevelCols[k - 1] + (col >> k), delta);
+    }
+
+    public void clear() {
+        for (int k = 1; k <= mLevels; k++)
+            clear(k);
+    }
+
+    // Counts a whole board from scratch: level 1 from the words, each level after from the one below
+    public void load(BitGrid grid) {
+        if (mLevels == 0) return;
+        byte[] first = mByteCounts[0];
+        Arrays.fill(first, (byte) 0);
+        long[] words = grid.getWords();
+        int wordsPerRow = grid.getWordsPerRow();
+        int levelCols = mLevelCols[0];
+        for (int row = 0; row < mRows; row++) {
+            for (int w = 0; w < wordsPerRow; w++) {
+                long word = words[row * wordsPerRow + w];
+                while (word != 0) {
+                    int col = (w << 6) + Long.numberOfTrailingZeros(word);
+                    first[(row >> 1) * levelCols + (col >> 1)]++;
+                    word &= word - 1;
+                }
+            }
+        }
+
+        for (int k = 2; k <= mLevels; k++) {
+            clear(k);
+            int belowCols = mLevelCols[k - 2];
+            for (int r = 0; r < mLevelRows[k - 2]; r++)
+                for (int c = 0; c < belowCols; c++)
+                    addAt(k, (r >> 1) * mLevelCols[k - 1] + (c >> 1), countAt(k - 1, r * belowCols + c));
+        }
+    }
+
+    private int countAt(int level, int index) {
+        if (level <= BYTE_LEVELS) return mByteCounts[level - 1][index];
+        if (level <= SHORT_LEVELS) return mShortCounts[level - 1][index];
+        return mIntCounts[level - 1][index];
+    }
+
+    private void addAt(int level, int index, int delta) {
+        if (level <= BYTE_LEVELS) mByteCounts[level - 1][index] += delta;
+        else if (level <= SHORT_LEVELS) mShortCounts[level - 1][index] += delta;
+        else mIntCounts[level - 1][index] += delta;
+    }
+
+    private void clear(int level) {
+        if (level <= BYTE_LEVELS) Arrays.fill(mByteCounts[level - 1], (byte) 0);
+        else if (level <= SHORT_LEVELS) Arrays.fill(mShortCounts[level - 1], (short) 0);
+        else Arrays.fill(mIntCounts[level - 1], 0);
+    }
+}
@@ -0,0 +1,212 @@
+package com.matthewfortier.gameoflife;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * Reads and writes the run length encoded .rle format most pattern collections use.
+ *
+ * A file is optional # comment lines, a header such as "x = 3, y = 3, rule = B3/S23",
+ * then runs like "2bo$obo!" where b is a dead cell, o a live one, $ the end of a row and
+ * ! the end of the pattern. Each tag can be preceded by a repeat count.
+ *
+ * The body is parsed a byte at a time straight into the grid, so a pattern takes no
+ * more memory than its board no matter how long the file is.
+ *
+ * The body on its own, without the header or line breaks, is also how GamePattern
+ * stores cells in the cloud.
+ */
+public class RleFormat {
+
+    // Writers of the format keep lines under 70 characters
+    private static final int LINE_LENGTH = 70;
+
+    public static PatternFile read(InputStream in) throws IOException {
+        return read(in, BitGrid.FACTORY);
+    }
+
+    public static PatternFile read(InputStream in, CellGrid.Factory factory) throws IOException {
+        InputStream stream = in instanceof BufferedInputStream ? in : new BufferedInputStream(in);
+
+        // Skip comments up to the header line
+        int c = stream.read();
+        while (c == '#' || isSpace(c)) {
+            if (c == '#') skipLine(stream);
+            c = stream.read();
+        }
+        if (c != 'x' && c != 'X')
+            throw new IOException("RLE header missing");
+
+        StringBuilder header = new StringBuilder();
+        while (c >= 0 && c != '\n' && c != '\r') {
+            header.append((char) c);
+            c = stream.read();
+        }
+
+        int cols = -1, rows = -1;
+        Rule rule = Rule.CONWAY;
+        for (String field : header.toString().split(",")) {
+            int equals = field.indexOf('=');
+            if (equals < 0) continue;
+            String key = field.substring(0, equals).trim().toLowerCase(Locale.US);
+            String value = field.substring(equals + 1).trim();
+            try {
+                if (key.equals("x")) cols = Integer.parseInt(value);
+                else if (key.equals("y")) rows = Integer.parseInt(value);
+                // Drop any bounded grid suffix such as :T100,100
+                else if (key.equals("rule")) rule = Rule.parse(value.split(":")[0]);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Bad RLE header: " + header, e);
+            }
+        }
+        // An empty pattern still needs a board to show
+        cols = Math.max(cols, 1);
+        rows = Math.max(rows, 1);
+        if ((long) rows * cols > factory.getMaxCells())
+            throw new IOException("Pattern too large: " + cols + "x" + rows);
+
+        CellGrid grid = factory.create(rows, cols);
+        readBody(stream, grid);
+        return new PatternFile(grid, rule, 0, 0, 0);
+    }
+
+    private static void readBody(InputStream stream, CellGrid grid) throws IOException {
+        int rows = grid.getRows();
+        int cols = grid.getCols();
+        int row = 0, col = 0;
+        long count = 0;
+
+        for (int c = stream.read(); c >= 0 && c != '!'; c = stream.read()) {
+            if (c >= '0' && c <= '9') {
+                count = count * 10 + (c - '0');
+                if (count > Integer.MAX_VALUE)
+                    throw new IOException("Run too long");
+                continue;
+            }
+            if (isSpace(c)) continue;
+            if (c == '#') {
+                skipLine(stream);
+                continue;
+            }
+
+            int n = count == 0 ? 1 : (int) count;
+            count = 0;
+            if (c == '$') {
+                row += n;
+                col = 0;
+            } else if (c == 'b' || c == '.') {
+                col += n;
+            } else if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+                // o is alive; the letters of multi-state rules are treated as alive too.
+                // Cells outside the declared size are dropped rather than failing the load
+                if (row < rows) {
+                    int end = (int) Math.min((long) col + n, cols);
+                    for (int j = col; j < end; j++)
+                        grid.set(row, j, true);
+                }
+                col += n;
+            } else {
+                throw new IOException("Unexpected character in RLE: " + (char) c);
+            }
+            // Keep far-off runs from overflowing
+            if (col > cols) col = cols;
+            if (row > rows) row = rows;
+        }
+    }
+
+    public static void write(CellGrid grid, Rule rule, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
+        writer.write("x = " + grid.getCols() + ", y = " + grid.getRows() + ", rule = " + rule + "\n");
+        writeBody(grid, new LineWriter(writer, LINE_LENGTH));
+        writer.flush();
+    }
+
+    // The runs of a grid on one line, ending with !
+    public static String encodeBody(CellGrid grid) {
+        StringWriter writer = new StringWriter();
+        try {
+            writeBody(grid, new LineWriter(writer, Integer.MAX_VALUE));
+        } catch (IOException e) {
+            // A StringWriter never throws
+            throw new IllegalStateException(e);
+        }
+        return writer.toString().trim();
+    }
+
+    // Fills an empty grid from a body made by encodeBody, or any other RLE body
+    public static void decodeBody(String body, CellGrid grid) throws IOException {
+        readBody(new ByteArrayInputStream(body.getBytes("US-ASCII")), grid);
+    }
+
+    private static void writeBody(CellGrid grid, LineWriter line) throws IOException {
+        int pendingRows = 0;
+        for (int i = 0; i < grid.getRows(); i++) {
+            // Trailing dead cells in a row are implied by the $ that ends it
+            int last = grid.getCols() - 1;
+            while (last >= 0 && !grid.get(i, last))
+                last--;
+            if (last < 0) {
+                pendingRows++;
+                continue;
+            }
+
+            if (pendingRows > 0) line.run(pendingRows, '$');
+            pendingRows = 1;
+
+            int j = 0;
+            while (j <= last) {
+                boolean alive = grid.get(i, j);
+                int start = j;
+                while (j <= last && grid.get(i, j) == alive)
+                    j++;
+                line.run(j - start, alive ? 'o' : 'b');
+            }
+        }
+        line.end();
+    }
+
+    private static boolean isSpace(int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    private static void skipLine(InputStream stream) throws IOException {
+        int c = stream.read();
+        while (c >= 0 && c != '\n')
+            c = stream.read();
+    }
+
+    // Writes runs, breaking lines before they pass the maximum length
+    private static class LineWriter {
+
+        private final Writer mWriter;
+        private final int mMaxLength;
+        private int mLength;
+
+        LineWriter(Writer writer, int maxLength) {
+            mWriter = writer;
+            mMaxLength = maxLength;
+        }
+
+        void run(int count, char tag) throws IOException {
+            String token = count == 1 ? String.valueOf(tag) : count + String.valueOf(tag);
+            if (mLength + token.length() > mMaxLength) {
+                mWriter.write('\n');
+                mLength = 0;
+            }
+            mWriter.write(token);
+            mLength += token.length();
+        }
+
+        void end() throws IOException {
+            mWriter.write("!\n");
+        }
+    }
+}
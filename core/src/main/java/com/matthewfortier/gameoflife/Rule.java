@@ -0,0 +1,140 @@
+package com.matthewfortier.gameoflife;
+
+import java.util.Locale;
+
+/**
+ * A life-like rule, written as a B/S rulestring such as B3/S23.
+ *
+ * The digits after B are the neighbor counts that bring a dead cell to life, and the
+ * digits after S the counts that keep a live cell alive. The older S/B form, such as
+ * 23/3, is read as well. Rules with B0 are rejected, since they would fill empty space
+ * on every other generation and nothing here can represent an infinite live background.
+ *
+ * Parsing compiles the rule into lookup tables once, so stepping under any rule costs
+ * the same: a table indexed by (alive, neighbor count), one indexed by the nine bits of a
+ * 3x3 neighborhood, and one all-ones or all-zero word mask per count for the packed kernel.
+ */
+public class Rule {
+
+    private static final int CONWAY_BIRTH = 1 << 3;
+    private static final int CONWAY_SURVIVE = (1 << 2) | (1 << 3);
+
+    public static final Rule CONWAY = parse("B3/S23");
+    public static final Rule HIGHLIFE = parse("B36/S23");
+    public static final Rule DAY_AND_NIGHT = parse("B3678/S34678");
+    public static final Rule SEEDS = parse("B2/S");
+
+    private final int mBirth;
+    private final int mSurvive;
+
+    // Bit (alive ? 9 : 0) + count is set when the cell is alive next generation
+    private final int mTable;
+    // Indexed by a 3x3 neighborhood, bit 4 being the cell itself
+    private final boolean[] mNeighborhoods = new boolean[512];
+    // -1L for the counts in each set, 0 for the rest
+    final long[] mBirthMasks = new long[9];
+    final long[] mSurviveMasks = new long[9];
+
+    private Rule(int birth, int survive) {
+        mBirth = birth;
+        mSurvive = survive;
+        mTable = birth | (survive << 9);
+
+        for (int count = 0; count <= 8; count++) {
+            mBirthMasks[count] = -((birth >>> count) & 1L);
+            mSurviveMasks[count] = -((survive >>> count) & 1L);
+        }
+        for (int bits = 0; bits < 512; bits++)
+            mNeighborhoods[bits] = next((bits & 16) != 0, Integer.bitCount(bits & ~16));
+    }
+
+    /**
+     * Reads a rulestring such as B36/S23, b3/s23 or 23/3.
+     *
+     * @throws IllegalArgumentException if it is not a valid life-like rule
+     */
+    public static Rule parse(String rulestring) {
+        String rule = rulestring.trim().toUpperCase(Locale.US);
+        int slash = rule.indexOf('/');
+        if (slash < 0)
+            throw new IllegalArgumentException("Not a B/S rule: " + rulestring);
+
+        String first = rule.substring(0, slash);
+        String second = rule.substring(slash + 1);
+        int birth, survive;
+        if (first.startsWith("B") && second.startsWith("S")) {
+            birth = counts(first.substring(1), rulestring);
+            survive = counts(second.substring(1), rulestring);
+        } else if (first.startsWith("S") && second.startsWith("B")) {
+            survive = counts(first.substring(1), rulestring);
+            birth = counts(second.substring(1), rulestring);
+        } else {
+            // S/B without letters, as in 23/3
+            survive = counts(first, rulestring);
+            birth = counts(second, rulestring);
+        }
+
+        if ((birth & 1) != 0)
+            throw new IllegalArgumentException("B0 rules are not supported: " + rulestring);
+        return new Rule(birth, survive);
+    }
+
+    // Falls back to Conway's rule for a missing or unreadable rulestring, as in older saves
+    public static Rule parseOrDefault(String rulestring) {
+        if (rulestring == null || rulestring.isEmpty()) return CONWAY;
+        try {
+            return parse(rulestring);
+        } catch (IllegalArgumentException e) {
+            return CONWAY;
+        }
+    }
+
+    private static int counts(String digits, String rulestring) {
+        int counts = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            int count = digits.charAt(i) - '0';
+            if (count < 0 || count > 8)
+                throw new IllegalArgumentException("Bad neighbor count in rule: " + rulestring);
+            counts |= 1 << count;
+        }
+        return counts;
+    }
+
+    public boolean isConway() {
+        return mBirth == CONWAY_BIRTH && mSurvive == CONWAY_SURVIVE;
+    }
+
+    public boolean next(boolean alive, int neighbors) {
+        return ((mTable >>> ((alive ? 9 : 0) + neighbors)) & 1) != 0;
+    }
+
+    // The 3x3 neighborhood is row major, so bit 4 is the cell and bit 0 its top left neighbor
+    public boolean next(int neighborhood) {
+        return mNeighborhoods[neighborhood];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Rule)) return false;
+        Rule rule = (Rule) o;
+        return mBirth == rule.mBirth && mSurvive == rule.mSurvive;
+    }
+
+    @Override
+    public int hashCode() {
+        return mTable;
+    }
+
+    // The canonical B/S form, which parse reads back to an equal rule
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("B");
+        for (int count = 0; count <= 8; count++)
+            if ((mBirth & (1 << count)) != 0) builder.append(count);
+        builder.append("/S");
+        for (int count = 0; count <= 8; count++)
+            if ((mSurvive & (1 << count)) != 0) builder.append(count);
+        return builder.toString();
+    }
+}
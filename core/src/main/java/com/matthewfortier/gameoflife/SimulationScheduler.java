@@ -0,0 +1,274 @@
+package com.matthewfortier.gameoflife;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs a LifeEngine on its own thread and publishes snapshots of it.
+ *
+ * The engine is only ever touched by the simulation thread. Everything else, including
+ * single steps and cell edits, is queued as an Edit and applied between generations.
+ *
+ * With a positive interval the board advances one generation per interval and every
+ * generation is published. With an interval of 0 it runs as fast as it can and publishes
+ * at most once per frame, skipping the generations in between.
+ *
+ * Every generation can be timed into a StepMetrics and wrapped in a trace section; both
+ * are off until set.
+ *
+ * With auto-stop on, running stops by itself as soon as the board dies out, settles or
+ * starts repeating. Starting it again on a board that has already settled keeps it going.
+ */
+public class SimulationScheduler {
+
+    // Roughly one display frame at 60 fps
+    private static final long FRAME_NANOS = 16666667L;
+    private static final String STEP_SECTION = "LifeEngine.step";
+
+    private final Object mLock = new Object();
+    private final List<Edit> mEdits = new ArrayList<Edit>();
+    private final Listener mListener;
+
+    // Guarded by mLock
+    private boolean mRunning;
+    private boolean mShutdown;
+    private int mIntervalMillis;
+    private long mNextStep;
+    private boolean mAutoStop;
+
+    // Only touched by the simulation thread
+    private LifeEngine mEngine;
+    private boolean mWasSettled;
+
+    private volatile StepMetrics mMetrics;
+    private volatile Tracer mTracer;
+
+    public SimulationScheduler(LifeEngine engine, int intervalMillis, Listener listener) {
+        mEngine = engine;
+        mIntervalMillis = intervalMillis;
+        mListener = listener;
+
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runLoop();
+            }
+        }, "LifeSimulation");
+        thread.start();
+
+        // Let the listener see the starting board
+        refresh();
+    }
+
+    // The first generation comes one interval after starting, like the old Handler loop
+    public void start() {
+        synchronized (mLock) {
+            mRunning = true;
+            mNextStep = System.currentTimeMillis() + mIntervalMillis;
+            mLock.notifyAll();
+        }
+    }
+
+    public void stop() {
+        synchronized (mLock) {
+            mRunning = false;
+            mLock.notifyAll();
+        }
+    }
+
+    public boolean isRunning() {
+        synchronized (mLock) {
+            return mRunning;
+        }
+    }
+
+    // Records the time, population and changed cells of every generation from now on, or stops with null
+    public void setMetrics(StepMetrics metrics) {
+        mMetrics = metrics;
+    }
+
+    // Marks every step as a section in traces, or stops with null
+    public void setTracer(Tracer tracer) {
+        mTracer = tracer;
+    }
+
+    // Whether to stop running when the board stops doing anything new
+    public void setAutoStop(boolean autoStop) {
+        synchronized (mLock) {
+            mAutoStop = autoStop;
+        }
+    }
+
+    // Milliseconds between generations, or 0 to run as fast as possible
+    public void setInterval(int intervalMillis) {
+        synchronized (mLock) {
+            mIntervalMillis = Math.max(0, intervalMillis);
+            mLock.notifyAll();
+        }
+    }
+
+    // Queues a change to the engine; a snapshot is published once it has been applied
+    public void edit(Edit edit) {
+        synchronized (mLock) {
+            mEdits.add(edit);
+            mLock.notifyAll();
+        }
+    }
+
+    // Publishes a snapshot of the board as it is
+    public void refresh() {
+        edit(new Edit() {
+            @Override
+            public void apply(LifeEngine engine) {
+            }
+        });
+    }
+
+    public void step(final int generations) {
+        edit(new Edit() {
+            @Override
+            public void apply(LifeEngine engine) {
+                timedStep(engine, generations);
+            }
+        });
+    }
+
+    // Swaps in a different engine, for example after the board is resized, and releases
+    // the old one's stepping threads and store
+    public void setEngine(final LifeEngine engine) {
+        edit(new Edit() {
+            @Override
+            public void apply(LifeEngine current) {
+                current.release();
+                mEngine = engine;
+            }
+        });
+    }
+
+    // Stops the thread for good; pending edits are dropped
+    public void shutdown() {
+        synchronized (mLock) {
+            mShutdown = true;
+            mLock.notifyAll();
+        }
+    }
+
+    private void runLoop() {
+        List<Edit> edits = new ArrayList<Edit>();
+
+        while (true) {
+            boolean running;
+            int interval;
+            synchronized (mLock) {
+                while (!mShutdown && mEdits.isEmpty()) {
+                    if (mRunning && mIntervalMillis == 0)
+                        break;
+                    long wait = mRunning ? mNextStep - System.currentTimeMillis() : 0;
+                    if (mRunning && wait <= 0)
+                        break;
+                    try {
+                        mLock.wait(wait);
+                    } catch (InterruptedException e) {
+                        mEngine.release();
+                        return;
+                    }
+                }
+                if (mShutdown) {
+                    mEngine.release();
+                    return;
+                }
+
+                edits.addAll(mEdits);
+                mEdits.clear();
+                running = mRunning;
+                interval = mIntervalMillis;
+            }
+
+            if (!edits.isEmpty()) {
+                for (Edit edit : edits)
+                    edit.apply(mEngine);
+                edits.clear();
+                // A board that was settled by hand isn't stopped for when running starts
+                mWasSettled = mEngine.getCycleState() != CycleDetector.ACTIVE;
+                publish();
+            } else if (running && interval > 0) {
+                timedStep(mEngine, 1);
+                stopIfSettled();
+                publish();
+                synchronized (mLock) {
+                    mNextStep = System.currentTimeMillis() + interval;
+                }
+            } else if (running) {
+                runFrame();
+            }
+        }
+    }
+
+    // Steps for up to one frame, then publishes only the last generation reached
+    private void runFrame() {
+        long deadline = System.nanoTime() + FRAME_NANOS;
+        do {
+            timedStep(mEngine, 1);
+        } while (!stopIfSettled() && System.nanoTime() < deadline && !hasPendingWork());
+        publish();
+    }
+
+    // Stops running when the last generation is the one where the board settled
+    private boolean stopIfSettled() {
+        boolean settled = mEngine.getCycleState() != CycleDetector.ACTIVE;
+        boolean justSettled = settled && !mWasSettled;
+        mWasSettled = settled;
+        if (!justSettled) return false;
+        synchronized (mLock) {
+            if (!mAutoStop) return false;
+            mRunning = false;
+        }
+        return true;
+    }
+
+    private void timedStep(LifeEngine engine, int generations) {
+        StepMetrics metrics = mMetrics;
+        Tracer tracer = mTracer;
+        if (tracer != null) tracer.beginSection(STEP_SECTION);
+        long start = System.nanoTime();
+        engine.step(generations);
+        long end = System.nanoTime();
+        if (tracer != null) tracer.endSection();
+        if (metrics != null)
+            metrics.recordStep(end, end - start, engine.getGeneration(), engine.getTotalPopulation(),
+                    engine.getChangedCellCount());
+    }
+
+    private boolean hasPendingWork() {
+        synchronized (mLock) {
+            return !mEdits.isEmpty() || !mRunning || mShutdown;
+        }
+    }
+
+    private void publish() {
+        BitGrid grid = mEngine.getGrid();
+        DirtyTiles changes = new DirtyTiles(grid.getRows(), grid.getCols());
+        mEngine.collectChanges(changes);
+        mListener.onSnapshot(new GridSnapshot(grid, mEngine.getGeneration(), changes,
+                mEngine.getCycleState(), mEngine.getPeriod(),
+                mEngine.getHistoryStart(), mEngine.getHistoryEnd(),
+                mEngine.getOriginRow(), mEngine.getOriginCol()));
+    }
+
+    // A change to the board, applied on the simulation thread
+    public interface Edit {
+        void apply(LifeEngine engine);
+    }
+
+    // Called on the simulation thread, so implementations must hand off to the UI themselves
+    public interface Listener {
+        void onSnapshot(GridSnapshot snapshot);
+    }
+
+    // Lets the platform's tracer see the work done on the simulation thread
+    public interface Tracer {
+        void beginSection(String name);
+
+        void endSection();
+    }
+}
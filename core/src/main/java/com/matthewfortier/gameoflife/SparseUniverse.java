@@ -0,0 +1,174 @@
+package com.matthewfortier.gameoflife;
+
+/**
+ * An unbounded Game of Life plane that only stores live cells.
+ *
+ * Live cells are kept in a LongSet keyed by their packed coordinates, and a step only
+ * visits the live cells and their neighbors, so memory and time grow with the population
+ * rather than with the area the pattern covers. Gliders and guns can run off in any
+ * direction without ever meeting their own tails.
+ *
+ * Cells farther than LIMIT from the origin are dropped, which at the speed of light takes
+ * over a billion generations to matter.
+ */
+public class SparseUniverse {
+
+    public static final int LIMIT = 1 << 30;
+
+    private Rule mRule = Rule.CONWAY;
+    private LongSet mLive = new LongSet();
+    private LongSet mNextLive = new LongSet();
+
+    // Neighbor counts for one step; bit 0 is set for a live cell and each neighbor adds 2
+    private long[] mCountKeys = newKeys(16);
+    private byte[] mCounts = new byte[16];
+
+    // Cells that flipped in the last step
+    private long[] mChanged = new long[16];
+    private int mChangedCount;
+
+    public static long key(int x, int y) {
+        return ((long) y << 32) | (x & 0xFFFFFFFFL);
+    }
+
+    public static int xOf(long key) {
+        return (int) key;
+    }
+
+    public static int yOf(long key) {
+        return (int) (key >> 32);
+    }
+
+    public Rule getRule() {
+        return mRule;
+    }
+
+    public void setRule(Rule rule) {
+        mRule = rule;
+    }
+
+    public boolean get(int x, int y) {
+        return mLive.contains(key(x, y));
+    }
+
+    public void set(int x, int y, boolean alive) {
+        if (!inBounds(x, y)) return;
+        if (alive) mLive.add(key(x, y));
+        else mLive.remove(key(x, y));
+    }
+
+    public int getPopulation() {
+        return mLive.size();
+    }
+
+    public void clear() {
+        mLive.clear();
+        mChangedCount = 0;
+    }
+
+    // The live cells, to be visited slot by slot while skipping LongSet.EMPTY
+    public LongSet getLiveCells() {
+        return mLive;
+    }
+
+    public int getChangedCount() {
+        return mChangedCount;
+    }
+
+    // Packed coordinates of the i-th cell that was born or died in the last step
+    public long getChanged(int i) {
+        return mChanged[i];
+    }
+
+    public void step() {
+        resetCounts(mLive.size() * 9);
+
+        for (int slot = 0; slot < mLive.getCapacity(); slot++) {
+            long key = mLive.keyAt(slot);
+            if (key == LongSet.EMPTY) continue;
+
+            int x = xOf(key);
+            int y = yOf(key);
+            addCount(key, 1);
+            addCount(key(x - 1, y - 1), 2);
+            addCount(key(x, y - 1), 2);
+            addCount(key(x + 1, y - 1), 2);
+            addCount(key(x - 1, y), 2);
+            addCount(key(x + 1, y), 2);
+            addCount(key(x - 1, y + 1), 2);
+            addCount(key(x, y + 1), 2);
+            addCount(key(x + 1, y + 1), 2);
+        }
+
+        mNextLive.clear(mLive.size());
+        mChangedCount = 0;
+        for (int slot = 0; slot < mCountKeys.length; slot++) {
+            long key = mCountKeys[slot];
+            if (key == LongSet.EMPTY) continue;
+
+            int count = mCounts[slot];
+            boolean alive = (count & 1) != 0;
+            if (mRule.next(alive, count >> 1)) {
+                if (!inBounds(xOf(key), yOf(key))) continue;
+                mNextLive.add(key);
+                if (!alive) addChanged(key);
+            } else if (alive) {
+                addChanged(key);
+            }
+        }
+
+        LongSet tmp = mLive;
+        mLive = mNextLive;
+        mNextLive = tmp;
+    }
+
+    private static boolean inBounds(int x, int y) {
+        return x > -LIMIT && x < LIMIT && y > -LIMIT && y < LIMIT;
+    }
+
+    // Sizes the count table for the given number of entries at most half full, and empties it
+    private void resetCounts(int entries) {
+        int capacity = 16;
+        while (capacity >>> 1 < entries)
+            capacity <<= 1;
+
+        if (capacity > mCountKeys.length || capacity * 4 < mCountKeys.length) {
+            mCountKeys = newKeys(capacity);
+            mCounts = new byte[capacity];
+        } else {
+            for (int i = 0; i < mCountKeys.length; i++)
+                mCountKeys[i] = LongSet.EMPTY;
+        }
+    }
+
+    private void addCount(long key, int amount) {
+        int mask = mCountKeys.length - 1;
+        long h = key * 0x9E3779B97F4A7C15L;
+        int i = (int) (h ^ (h >>> 32)) & mask;
+        while (mCountKeys[i] != LongSet.EMPTY && mCountKeys[i] != key)
+            i = (i + 1) & mask;
+
+        if (mCountKeys[i] == LongSet.EMPTY) {
+            mCountKeys[i] = key;
+            mCounts[i] = (byte) amount;
+        } else {
+            mCounts[i] += amount;
+        }
+    }
+
+    private void addChanged(long key) {
+        if (mChangedCount == mChanged.length) {
+            long[] grown = new long[mChanged.length * 2];
+            System.arraycopy(mChanged, 0, grown, 0, mChangedCount);
+            mChanged = grown;
+        }
+        mChanged[mChangedCount++] = key;
+    }
+
+    private static long[] newKeys(int capacity) {
+        long[] keys = new long[capacity];
+        for (int i = 0; i < capacity; i++)
+            keys[i] = LongSet.EMPTY;
+        return keys;
+    }
+}
@@ -0,0 +1,182 @@
+package com.matthewfortier.gameoflife;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Keeps the timings of the most recent generations and frames for the metrics overlay
+ * and for exporting.
+ *
+ * Each kind of sample goes in a fixed ring of primitive arrays, so recording allocates
+ * nothing and costs a few stores under an uncontended lock. The oldest samples are
+ * overwritten once a ring is full. Steps are recorded by the simulation thread, frames
+ * by the render thread and dropped frames by the main thread; any thread can summarize.
+ */
+public class StepMetrics {
+
+    public static final int DEFAULT_CAPACITY = 512;
+
+    private static final String CSV_HEADER = "kind,time_ns,duration_ns,generation,population,changed";
+
+    private final int mCapacity;
+
+    // One entry per generation stepped
+    private final long[] mStepTimes;
+    private final long[] mStepNanos;
+    private final long[] mGenerations;
+    private final long[] mPopulations;
+    private final int[] mChanged;
+    private long mSteps;
+
+    // One entry per frame drawn
+    private final long[] mFrameTimes;
+    private final long[] mFrameNanos;
+    private long mFrames;
+
+    private long mDroppedFrames;
+
+    public StepMetrics() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public StepMetrics(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("Capacity must be positive");
+        mCapacity = capacity;
+        mStepTimes = new long[capacity];
+        mStepNanos = new long[capacity];
+        mGenerations = new long[capacity];
+        mPopulations = new long[capacity];
+        mChanged = new int[capacity];
+        mFrameTimes = new long[capacity];
+        mFrameNanos = new long[capacity];
+    }
+
+    // time is System.nanoTime() when the step finished
+    public synchronized void recordStep(long time, long nanos, long generation, long population, int changed) {
+        int i = (int) (mSteps++ % mCapacity);
+        mStepTimes[i] = time;
+        mStepNanos[i] = nanos;
+        mGenerations[i] = generation;
+        mPopulations[i] = population;
+        mChanged[i] = changed;
+    }
+
+    public synchronized void recordFrame(long time, long nanos) {
+        int i = (int) (mFrames++ % mCapacity);
+        mFrameTimes[i] = time;
+        mFrameNanos[i] = nanos;
+    }
+
+    public synchronized void recordDroppedFrames(int count) {
+        mDroppedFrames += count;
+    }
+
+    public synchronized void clear() {
+        mSteps = 0;
+        mFrames = 0;
+        mDroppedFrames = 0;
+    }
+
+    public synchronized Summary summarize() {
+        Summary summary = new Summary();
+        int steps = (int) Math.min(mSteps, mCapacity);
+        if (steps > 0) {
+            long[] sorted = Arrays.copyOf(mStepNanos, steps);
+            Arrays.sort(sorted);
+            summary.mStepP50 = percentile(sorted, 0.5);
+            summary.mStepP99 = percentile(sorted, 0.99);
+
+            int last = (int) ((mSteps - 1) % mCapacity);
+            int first = (int) ((mSteps - steps) % mCapacity);
+            summary.mGeneration = mGenerations[last];
+            summary.mPopulation = mPopulations[last];
+            summary.mChanged = mChanged[last];
+            long elapsed = mStepTimes[last] - mStepTimes[first];
+            if (elapsed > 0)
+                summary.mGenerationsPerSecond = (mGenerations[last] - mGenerations[first]) * 1e9 / elapsed;
+        }
+
+        int frames = (int) Math.min(mFrames, mCapacity);
+        if (frames > 0) {
+            long[] sorted = Arrays.copyOf(mFrameNanos, frames);
+            Arrays.sort(sorted);
+            summary.mRenderP50 = percentile(sorted, 0.5);
+            summary.mRenderP99 = percentile(sorted, 0.99);
+        }
+        summary.mDroppedFrames = mDroppedFrames;
+        return summary;
+    }
+
+    // Writes every sample still held, oldest first, steps then frames
+    public synchronized void writeCsv(Writer out) throws IOException {
+        out.write(CSV_HEADER);
+        out.write('\n');
+        for (long n = Math.max(0, mSteps - mCapacity); n < mSteps; n++) {
+            int i = (int) (n % mCapacity);
+            out.write("step," + mStepTimes[i] + ',' + mStepNanos[i] + ',' + mGenerations[i] + ','
+                    + mPopulations[i] + ',' + mChanged[i] + '\n');
+        }
+        for (long n = Math.max(0, mFrames - mCapacity); n < mFrames; n++) {
+            int i = (int) (n % mCapacity);
+            out.write("frame," + mFrameTimes[i] + ',' + mFrameNanos[i] + ",,,\n");
+        }
+        out.flush();
+    }
+
+    // Nearest rank, so it is always one of the samples
+    private static long percentile(long[] sorted, double p) {
+        int rank = (int) Math.ceil(p * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    // The recent samples boiled down; times are in nanoseconds and zero when nothing was recorded
+    public static class Summary {
+
+        private long mStepP50;
+        private long mStepP99;
+        private double mGenerationsPerSecond;
+        private long mGeneration;
+        private long mPopulation;
+        private int mChanged;
+        private long mRenderP50;
+        private long mRenderP99;
+        private long mDroppedFrames;
+
+        public long getStepP50() {
+            return mStepP50;
+        }
+
+        public long getStepP99() {
+            return mStepP99;
+        }
+
+        public double getGenerationsPerSecond() {
+            return mGenerationsPerSecond;
+        }
+
+        public long getGeneration() {
+            return mGeneration;
+        }
+
+        public long getPopulation() {
+            return mPopulation;
+        }
+
+        public int getChanged() {
+            return mChanged;
+        }
+
+        public long getRenderP50() {
+            return mRenderP50;
+        }
+
+        public long getRenderP99() {
+            return mRenderP99;
+        }
+
+        public long getDroppedFrames() {
+            return mDroppedFrames;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.matthewfortier.gameoflife;
+
+/**
+ * Which part of a board is on screen, and how big its cells are drawn.
+ *
+ * The scale is in pixels per cell, and left and top are the board coordinates, in cells,
+ * at the view's top left corner. It starts out fitting the whole board in the view with
+ * square cells and can be zoomed in down to MAX_CELL_SIZE pixels per cell, but never out
+ * past fitting. Along a side where the board is smaller than the view it stays centered;
+ * along a side where it is bigger it can be panned up to its edges.
+ *
+ * Below one pixel per cell the board is drawn from a PopulationPyramid, at the level whose
+ * squares are the smallest that are still at least a pixel across.
+ */
+public class Viewport {
+
+    public static final float MAX_CELL_SIZE = 64f;
+
+    private int mRows = 1;
+    private int mCols = 1;
+    private int mWidth;
+    private int mHeight;
+
+    private float mScale = 1;
+    private float mLeft;
+    private float mTop;
+    // Whether to keep fitting the board when the view or board is resized
+    private boolean mFit = true;
+
+    // Copies another viewport, for drawing from while the original keeps changing
+    public void set(Viewport other) {
+        mRows = other.mRows;
+        mCols = other.mCols;
+        mWidth = other.mWidth;
+        mHeight = other.mHeight;
+        mScale = other.mScale;
+        mLeft = other.mLeft;
+        mTop = other.mTop;
+        mFit = other.mFit;
+    }
+
+    // Fits the new board unless it is the same size as the old one
+    public void setBoard(int rows, int cols) {
+        if (rows == mRows && cols == mCols) return;
+        mRows = rows;
+        mCols = cols;
+        fit();
+    }
+
+    public void setView(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+        if (mFit) fit();
+        else zoom(1, 0, 0);
+    }
+
+    public void fit() {
+        mFit = true;
+        mScale = getFitScale();
+        clamp();
+    }
+
+    public boolean isFit() {
+        return mFit;
+    }
+
+    public float getScale() {
+        return mScale;
+    }
+
+    public float getLeft() {
+        return mLeft;
+    }
+
+    public float getTop() {
+        return mTop;
+    }
+
+    // Pixels per cell with the whole board in view
+    public float getFitScale() {
+        if (mWidth <= 0 || mHeight <= 0) return 1;
+        return Math.min((float) mWidth / mCols, (float) mHeight / mRows);
+    }
+
+    // Scales by a factor, keeping the board under the focus point where it is
+    public void zoom(float factor, float focusX, float focusY) {
+        float col = toCol(focusX);
+        float row = toRow(focusY);
+        float fitScale = getFitScale();
+        mScale = Math.max(fitScale, Math.min(Math.max(fitScale, MAX_CELL_SIZE), mScale * factor));
+        mFit = mScale == fitScale;
+        mLeft = col - focusX / mScale;
+        mTop = row - focusY / mScale;
+        clamp();
+    }
+
+    // Keeps the same cells in view after the board's origin moved by whole cells, as when a
+    // window onto a bigger board is moved along it
+    public void moveOrigin(int rows, int cols) {
+        mTop -= rows;
+        mLeft -= cols;
+        clamp();
+    }
+
+    // Moves the view by a distance in pixels, as when dragged the other way
+    public void pan(float dx, float dy) {
+        mLeft += dx / mScale;
+        mTop += dy / mScale;
+        clamp();
+    }
+
+    public float toCol(float x) {
+        return mLeft + x / mScale;
+    }
+
+    public float toRow(float y) {
+        return mTop + y / mScale;
+    }
+
+    public float toX(float col) {
+        return (col - mLeft) * mScale;
+    }
+
+    public float toY(float row) {
+        return (row - mTop) * mScale;
+    }
+
+    // First column at least partly in view
+    public int getFirstCol() {
+        return Math.max(0, (int) Math.floor(mLeft));
+    }
+
+    // One past the last column at least partly in view
+    public int getEndCol() {
+        return Math.min(mCols, (int) Math.ceil(toCol(mWidth)));
+    }
+
+    public int getFirstRow() {
+        return Math.max(0, (int) Math.floor(mTop));
+    }
+
+    public int getEndRow() {
+        return Math.min(mRows, (int) Math.ceil(toRow(mHeight)));
+    }
+
+    // PopulationPyramid level to draw from, or 0 to draw every cell
+    public int getLevel() {
+        int level = 0;
+        while (mScale * (1 << level) < 1)
+            level++;
+        return level;
+    }
+
+    private void clamp() {
+        mLeft = clamp(mLeft, mCols, mWidth / mScale);
+        mTop = clamp(mTop, mRows, mHeight / mScale);
+    }
+
+    // Centers a side shorter than the view, or keeps a longer one covering it
+    private static float clamp(float start, int cells, float visible) {
+        if (visible >= cells) return (cells - visible) / 2;
+        return Math.max(0, Math.min(cells - visible, start));
+    }
+}
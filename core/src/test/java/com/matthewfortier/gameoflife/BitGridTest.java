@@ -0,0 +1,106 @@
+package com.matthewfortier.gameoflife;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class BitGridTest {
+
+    @Test
+    public void arrayRoundTrip_keepsEveryCell() {
+        boolean[][] data = randomGrid(7, 130, new Random(1));
+
+        BitGrid grid = BitGrid.fromArray(data);
+        assertArrayEquals(data, grid.toArray());
+        assertEquals(3, grid.getWordsPerRow());
+    }
+
+    @Test
+    public void step_matchesCellByCellRule() {
+        // Widths on both sides of a word boundary exercise the wrap carries
+        int[] widths = {1, 3, 63, 64, 65, 128, 130};
+        Random random = new Random(42);
+
+        for (int cols : widths) {
+            boolean[][] data = randomGrid(9, cols, random);
+            BitGrid grid = BitGrid.fromArray(data);
+            BitGrid next = new BitGrid(9, cols);
+
+            for (int g = 0; g < 8; g++) {
+                data = naiveStep(data);
+                grid.step(next);
+                BitGrid tmp = grid;
+                grid = next;
+                next = tmp;
+                assertArrayEquals("width " + cols + " generation " + g, data, grid.toArray());
+            }
+        }
+    }
+
+    @Test
+    public void step_matchesCellByCellForOtherRules() {
+        Rule[] rules = {Rule.HIGHLIFE, Rule.DAY_AND_NIGHT, Rule.SEEDS, Rule.parse("B1357/S02468")};
+        Random random = new Random(17);
+
+        for (Rule rule : rules) {
+            for (int cols : new int[]{5, 64, 70}) {
+                boolean[][] data = randomGrid(11, cols, random);
+                BitGrid grid = BitGrid.fromArray(data);
+                BitGrid next = new BitGrid(11, cols);
+
+                for (int g = 0; g < 6; g++) {
+                    data = naiveStep(data, rule);
+                    grid.step(next, rule);
+                    BitGrid tmp = grid;
+                    grid = next;
+                    next = tmp;
+                    assertArrayEquals(rule + " width " + cols + " generation " + g, data, grid.toArray());
+                }
+            }
+        }
+    }
+
+    private static boolean[][] randomGrid(int rows, int cols, Random random) {
+        boolean[][] data = new boolean[rows][cols];
+        for (int i = 0; i < rows; i++)
+            for (int j = 0; j < cols; j++)
+                data[i][j] = random.nextInt(3) == 0;
+        return data;
+    }
+
+    private static boolean[][] naiveStep(boolean[][] data) {
+        int rows = data.length;
+        int cols = data[0].length;
+        boolean[][] next = new boolean[rows][cols];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                int count = 0;
+                for (int di = -1; di <= 1; di++)
+                    for (int dj = -1; dj <= 1; dj++)
+                        if ((di != 0 || dj != 0) && data[(i + di + rows) % rows][(j + dj + cols) % cols])
+                            count++;
+                next[i][j] = count == 3 || (count == 2 && data[i][j]);
+            }
+        }
+        return next;
+    }
+
+    private static boolean[][] naiveStep(boolean[][] data, Rule rule) {
+        int rows = data.length;
+        int cols = data[0].length;
+        boolean[][] next = new boolean[rows][cols];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                int count = 0;
+                for (int di = -1; di <= 1; di++)
+                    for (int dj = -1; dj <= 1; dj++)
+                        if ((di != 0 || dj != 0) && data[(i + di + rows) % rows][(j + dj + cols) % cols])
+                            count++;
+                next[i][j] = rule.next(data[i][j], count);
+            }
+        }
+        return next;
+    }
+}
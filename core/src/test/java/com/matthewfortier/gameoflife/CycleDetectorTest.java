@@ -0,0 +1,38 @@
+package com.matthewfortier.gameoflife;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CycleDetectorTest {
+
+    @Test
+    public void repeats_areFoundAfterOldHashesAreEvicted() {
+        CycleDetector detector = new CycleDetector(4);
+        long generation = 0;
+        // More distinct hashes than the history holds
+        for (long hash = 1; hash <= 10; hash++) {
+            detector.record(++generation, hash * 0x9E3779B97F4A7C15L, 1);
+            assertEquals(CycleDetector.ACTIVE, detector.getState());
+        }
+
+        // Hash 1 was evicted, so it looks new
+        detector.record(++generation, 0x9E3779B97F4A7C15L, 1);
+        assertEquals(CycleDetector.ACTIVE, detector.getState());
+
+        // Hash 9 is still remembered, from three records ago
+        detector.record(++generation, 9 * 0x9E3779B97F4A7C15L, 1);
+        assertEquals(CycleDetector.PERIODIC, detector.getState());
+        assertEquals(3, detector.getPeriod());
+
+        detector.record(++generation, 9 * 0x9E3779B97F4A7C15L, 1);
+        assertEquals(CycleDetector.STABLE, detector.getState());
+
+        detector.record(++generation, 42, 0);
+        assertEquals(CycleDetector.EXTINCT, detector.getState());
+
+        detector.reset();
+        detector.record(++generation, 9 * 0x9E3779B97F4A7C15L, 1);
+        assertEquals(CycleDetector.ACTIVE, detector.getState());
+    }
+}
@@ -0,0 +1,72 @@
+package com.matthewfortier.gameoflife;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class GamePatternTest {
+
+    @Test
+    public void flatten_roundTripsNonSquareGrid() {
+        boolean[][] data = new boolean[2][3];
+        data[0][2] = true;
+        data[1][0] = true;
+
+        GamePattern pattern = new GamePattern(GamePattern.flatten(data), 2, 3, "title", 0, 0, "title.png", "B36/S23");
+        assertEquals(Arrays.asList(false, false, true, true, false, false), pattern.getData());
+        assertArrayEquals(data, pattern.toGrid());
+        assertEquals(Rule.HIGHLIFE, Rule.parseOrDefault(pattern.getRule()));
+    }
+
+    @Test
+    public void toGrid_readsLegacySquareRecords() {
+        // Legacy records have no size and store cell (row, col) at col * size + row
+        GamePattern pattern = new GamePattern();
+        pattern.setData(Arrays.asList(false, true, false, false));
+
+        boolean[][] grid = pattern.toGrid();
+        assertEquals(2, grid.length);
+        assertEquals(Rule.CONWAY, Rule.parseOrDefault(pattern.getRule()));
+        assertTrue(grid[1][0]);
+        assertFalse(grid[0][1]);
+    }
+
+    @Test
+    public void cells_areStoredAsAnRleBody() {
+        BitGrid grid = new BitGrid(3, 70);
+        grid.set(0, 1, true);
+        grid.set(1, 2, true);
+        grid.set(2, 0, true);
+        grid.set(2, 1, true);
+        grid.set(2, 69, true);
+
+        GamePattern pattern = new GamePattern(grid, "glider", 0, 0, "glider.png", "B3/S23");
+        assertEquals("bo$2bo$2o67bo!", pattern.getCells());
+        assertNull(pattern.getData());
+        assertFalse(pattern.hasLegacyData());
+        BitGrid decoded = pattern.toBitGrid();
+        assertEquals(3, decoded.getRows());
+        assertEquals(70, decoded.getCols());
+        assertArrayEquals(grid.getWords(), decoded.getWords());
+    }
+
+    @Test
+    public void toCompact_migratesLegacyRecords() {
+        boolean[][] data = new boolean[2][3];
+        data[0][2] = true;
+        data[1][0] = true;
+        GamePattern legacy = new GamePattern(GamePattern.flatten(data), 2, 3, "title", 5, 6, "title.png", "B36/S23");
+        assertTrue(legacy.hasLegacyData());
+
+        GamePattern compact = legacy.toCompact();
+        assertFalse(compact.hasLegacyData());
+        assertEquals("2bo$o!", compact.getCells());
+        assertArrayEquals(data, compact.toGrid());
+        assertEquals("title", compact.getTitle());
+        assertEquals(5, compact.getAlive());
+        assertEquals(6, compact.getDead());
+        assertEquals("B36/S23", compact.getRule());
+    }
+}
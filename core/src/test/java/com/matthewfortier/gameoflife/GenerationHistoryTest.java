@@ -0,0 +1,97 @@
+package com.matthewfortier.gameoflife;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class GenerationHistoryTest {
+
+    @Test
+    public void restore_rebuildsEveryGenerationHeld() {
+        LifeEngine engine = randomEngine(40, 130, 5);
+        GenerationHistory history = new GenerationHistory(Long.MAX_VALUE);
+        List<BitGrid> boards = new ArrayList<BitGrid>();
+
+        BitGrid before = copy(engine.getGrid());
+        boards.add(before);
+        for (int g = 1; g <= 150; g++) {
+            engine.step(1);
+            BitGrid after = copy(engine.getGrid());
+            DirtyTiles changed = new DirtyTiles(40, 130);
+            changed.markAll();
+            history.record(before, after, changed, g);
+            boards.add(after);
+            before = after;
+        }
+
+        assertEquals(0, history.getStart());
+        assertEquals(150, history.getEnd());
+        BitGrid restored = new BitGrid(40, 130);
+        for (int g = 0; g <= 150; g += 7) {
+            history.restore(g, restored);
+            assertArrayEquals(boards.get(g).getWords(), restored.getWords());
+        }
+    }
+
+    @Test
+    public void budget_dropsTheOldestGenerationsFirst() {
+        LifeEngine engine = randomEngine(64, 64, 9);
+        // Room for a handful of keyframes of a 64 by 64 board
+        GenerationHistory history = new GenerationHistory(4 * 64 * 8 + 64 * 1024);
+        BitGrid before = copy(engine.getGrid());
+        for (int g = 1; g <= 1000; g++) {
+            engine.step(1);
+            BitGrid after = copy(engine.getGrid());
+            DirtyTiles changed = new DirtyTiles(64, 64);
+            changed.markAll();
+            history.record(before, after, changed, g);
+            before = after;
+        }
+
+        assertEquals(1000, history.getEnd());
+        assertTrue(history.getStart() > 0);
+        assertTrue(history.getMemoryUsage() <= 4 * 64 * 8 + 64 * 1024);
+        BitGrid restored = new BitGrid(64, 64);
+        history.restore(1000, restored);
+        assertArrayEquals(engine.getGrid().getWords(), restored.getWords());
+    }
+
+    @Test
+    public void mark_replacesEverythingFromItsGeneration() {
+        GenerationHistory history = new GenerationHistory(Long.MAX_VALUE);
+        BitGrid grid = new BitGrid(8, 8);
+        history.mark(grid, 3);
+        grid.set(1, 1, true);
+        history.mark(grid, 4);
+        grid.set(2, 2, true);
+        history.mark(grid, 4);
+        assertEquals(3, history.getStart());
+        assertEquals(4, history.getEnd());
+
+        // A generation that doesn't follow on starts again
+        history.mark(grid, 10);
+        assertEquals(10, history.getStart());
+        assertFalse(history.contains(4));
+    }
+
+    private static LifeEngine randomEngine(int rows, int cols, long seed) {
+        boolean[][] data = new boolean[rows][cols];
+        Random random = new Random(seed);
+        for (int r = 0; r < rows; r++)
+            for (int c = 0; c < cols; c++)
+                data[r][c] = random.nextInt(3) == 0;
+        LifeEngine engine = new LifeEngine(rows, cols);
+        engine.load(data);
+        return engine;
+    }
+
+    private static BitGrid copy(BitGrid grid) {
+        BitGrid copy = new BitGrid(grid.getRows(), grid.getCols());
+        copy.copyFrom(grid);
+        return copy;
+    }
+}
@@ -0,0 +1,42 @@
+package com.matthewfortier.gameoflife;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GridRasterTest {
+
+    private static final int ALIVE = 1;
+    private static final int DEAD = 0;
+
+    @Test
+    public void renderRow_scalesSmallBoardsUp() {
+        BitGrid grid = new BitGrid(2, 3);
+        grid.set(1, 2, true);
+        int[] pixels = new int[9];
+
+        GridRaster.renderRow(grid, 4, 9, 6, ALIVE, DEAD, new long[1], pixels);
+        assertArrayEquals(new int[]{0, 0, 0, 0, 0, 0, 1, 1, 1}, pixels);
+        GridRaster.renderRow(grid, 2, 9, 6, ALIVE, DEAD, new long[1], pixels);
+        assertArrayEquals(new int[9], pixels);
+    }
+
+    @Test
+    public void renderRow_showsAnyLiveCellWhenShrinking() {
+        // 4 by 4 blocks of a 200 wide board, spanning word boundaries
+        BitGrid grid = new BitGrid(8, 200);
+        grid.set(3, 63, true);
+        grid.set(6, 64, true);
+        grid.set(7, 199, true);
+        int[] pixels = new int[50];
+        long[] cells = new long[grid.getWordsPerRow()];
+
+        GridRaster.renderRow(grid, 0, 50, 2, ALIVE, DEAD, cells, pixels);
+        for (int x = 0; x < 50; x++)
+            assertEquals(x == 15 ? ALIVE : DEAD, pixels[x]);
+
+        GridRaster.renderRow(grid, 1, 50, 2, ALIVE, DEAD, cells, pixels);
+        for (int x = 0; x < 50; x++)
+            assertEquals(x == 16 || x == 49 ? ALIVE : DEAD, pixels[x]);
+    }
+}
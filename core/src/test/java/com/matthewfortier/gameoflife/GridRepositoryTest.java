@@ -0,0 +1,25 @@
+package com.matthewfortier.gameoflife;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GridRepositoryTest {
+
+    @Test
+    public void share_handsOutTheSameGrid() {
+        GridRepository repository = new GridRepository();
+        BitGrid grid = new BitGrid(4, 4);
+        long id = repository.put(grid);
+        long clone = repository.share(id);
+
+        assertNotEquals(id, clone);
+        assertSame(grid, repository.get(clone));
+
+        repository.release(id);
+        assertNull(repository.get(id));
+        assertSame(grid, repository.get(clone));
+        repository.release(clone);
+        assertEquals(0, repository.size());
+    }
+}
@@ -0,0 +1,125 @@
+package com.matthewfortier.gameoflife;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class HashLifeTest {
+
+    @Test
+    public void advance_matchesLifeEngineAwayFromTheEdges() {
+        // The soup sits far enough inside the board that nothing reaches the wrap
+        BitGrid start = soup(200, 150, 20, 7);
+        LifeEngine engine = new LifeEngine(200, 150);
+        engine.load(start);
+        engine.step(45);
+
+        HashLife life = new HashLife();
+        life.load(start);
+        life.advance(45);
+
+        BitGrid end = new BitGrid(200, 150);
+        life.copyTo(end);
+        assertArrayEquals(engine.getGrid().getWords(), end.getWords());
+        assertEquals(45, life.getGeneration());
+    }
+
+    @Test
+    public void glider_travelsAQuarterCellPerGeneration() {
+        HashLife life = new HashLife();
+        life.load(glider());
+        life.advance(1L << 40);
+
+        // The glider is centered on the origin, so it has moved 2^38 cells down and right
+        long d = 1L << 38;
+        assertEquals(5, life.getPopulation());
+        assertTrue(life.get(d, d - 1));
+        assertTrue(life.get(d + 1, d));
+        assertTrue(life.get(d - 1, d + 1));
+        assertTrue(life.get(d, d + 1));
+        assertTrue(life.get(d + 1, d + 1));
+    }
+
+    @Test
+    public void eviction_keepsResultsCorrect() {
+        BitGrid start = soup(120, 120, 16, 3);
+        HashLife unlimited = new HashLife();
+        unlimited.load(start);
+        unlimited.advance(1000);
+
+        HashLife small = new HashLife(2000);
+        small.load(start);
+        for (int i = 0; i < 10; i++)
+            small.advance(100);
+
+        assertEquals(unlimited.getPopulation(), small.getPopulation());
+        for (long y = -400; y < 400; y++)
+            for (long x = -400; x < 400; x++)
+                assertEquals(unlimited.get(x, y), small.get(x, y));
+    }
+
+    @Test
+    public void bigJumps_stayWithinTheNodeLimit() {
+        BitGrid start = soup(120, 120, 16, 5);
+        HashLife unlimited = new HashLife();
+        unlimited.load(start);
+        unlimited.advance(1 << 12);
+
+        HashLife small = new HashLife(2000);
+        small.load(start);
+        small.advance(1 << 12);
+
+        assertTrue(unlimited.getPeakNodeCount() > 2000);
+        assertTrue(small.getPeakNodeCount() <= 2000);
+        assertEquals(unlimited.getPopulation(), small.getPopulation());
+        for (long y = -1200; y < 1200; y++)
+            for (long x = -1200; x < 1200; x++)
+                assertEquals(unlimited.get(x, y), small.get(x, y));
+    }
+
+    @Test
+    public void highLife_matchesTheOtherEngines() {
+        BitGrid start = soup(160, 160, 16, 21);
+        LifeEngine engine = new LifeEngine(160, 160);
+        engine.setRule(Rule.HIGHLIFE);
+        engine.load(start);
+        engine.step(30);
+
+        LifeEngine plane = new LifeEngine(160, 160);
+        plane.setRule(Rule.HIGHLIFE);
+        plane.setWrapping(false);
+        plane.load(start);
+        plane.step(30);
+
+        HashLife life = new HashLife();
+        life.setRule(Rule.HIGHLIFE);
+        life.load(start);
+        life.advance(30);
+        BitGrid end = new BitGrid(160, 160);
+        life.copyTo(end);
+
+        assertArrayEquals(engine.getGrid().getWords(), end.getWords());
+        assertArrayEquals(engine.getGrid().getWords(), plane.getGrid().getWords());
+    }
+
+    private static BitGrid glider() {
+        BitGrid grid = new BitGrid(3, 3);
+        grid.set(0, 1, true);
+        grid.set(1, 2, true);
+        grid.set(2, 0, true);
+        grid.set(2, 1, true);
+        grid.set(2, 2, true);
+        return grid;
+    }
+
+    private static BitGrid soup(int rows, int cols, int size, long seed) {
+        Random random = new Random(seed);
+        BitGrid grid = new BitGrid(rows, cols);
+        for (int i = (rows - size) / 2; i < (rows + size) / 2; i++)
+            for (int j = (cols - size) / 2; j < (cols + size) / 2; j++)
+                grid.set(i, j, random.nextBoolean());
+        return grid;
+    }
+}
@@ -0,0 +1,331 @@
+package com.matthewfortier.gameoflife;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LifeEngineTest {
+
+    @Test
+    public void blinker_oscillatesWithPeriodTwo() {
+        LifeEngine engine = new LifeEngine(5, 5);
+        engine.setAlive(2, 1, true);
+        engine.setAlive(2, 2, true);
+        engine.setAlive(2, 3, true);
+
+        engine.step(1);
+        assertTrue(engine.isAlive(1, 2));
+        assertTrue(engine.isAlive(2, 2));
+        assertTrue(engine.isAlive(3, 2));
+        assertFalse(engine.isAlive(2, 1));
+        assertEquals(3, engine.getPopulation());
+
+        engine.step(1);
+        assertTrue(engine.isAlive(2, 1));
+        assertTrue(engine.isAlive(2, 3));
+        assertEquals(2, engine.getGeneration());
+    }
+
+    @Test
+    public void glider_wrapsAroundTheTorus() {
+        boolean[][] start = new boolean[20][20];
+        start[0][1] = true;
+        start[1][2] = true;
+        start[2][0] = true;
+        start[2][1] = true;
+        start[2][2] = true;
+
+        LifeEngine engine = new LifeEngine(20, 20);
+        engine.load(start);
+
+        // A glider moves one cell diagonally every 4 generations
+        engine.step(80);
+
+        boolean[][] end = new boolean[20][20];
+        engine.copyTo(end);
+        assertArrayEquals(start, end);
+    }
+
+    @Test
+    public void jump_onATorusMatchesStepping() {
+        boolean[][] start = new boolean[20][20];
+        start[0][1] = true;
+        start[1][2] = true;
+        start[2][0] = true;
+        start[2][1] = true;
+        start[2][2] = true;
+
+        LifeEngine engine = new LifeEngine(20, 20);
+        engine.load(start);
+
+        // HashLife would have let the glider off the edge instead of wrapping it round
+        engine.jump(new HashLife(), 80);
+
+        boolean[][] end = new boolean[20][20];
+        engine.copyTo(end);
+        assertArrayEquals(start, end);
+        assertEquals(80, engine.getGeneration());
+    }
+
+    @Test
+    public void clear_resetsCellsAndGeneration() {
+        LifeEngine engine = new LifeEngine(3, 4);
+        engine.setAlive(1, 3, true);
+        engine.step(2);
+
+        engine.clear();
+        assertEquals(0, engine.getPopulation());
+        assertEquals(0, engine.getGeneration());
+    }
+
+    @Test
+    public void step_skippingSettledTilesMatchesFullStep() {
+        // Several tiles each way, with a soup in one corner and a glider crossing tile edges
+        int rows = 150;
+        int cols = 200;
+        Random random = new Random(7);
+        LifeEngine engine = new LifeEngine(rows, cols);
+        BitGrid reference = new BitGrid(rows, cols);
+        for (int i = 0; i < 40; i++)
+            for (int j = 0; j < 40; j++)
+                if (random.nextInt(3) == 0) {
+                    engine.setAlive(i, j, true);
+                    reference.set(i, j, true);
+                }
+
+        BitGrid next = new BitGrid(rows, cols);
+        for (int g = 0; g < 300; g++) {
+            // Edits between steps must wake up their tiles again
+            if (g == 150) {
+                engine.setAlive(100, 130, true);
+                engine.setAlive(100, 131, true);
+                engine.setAlive(100, 132, true);
+                reference.set(100, 130, true);
+                reference.set(100, 131, true);
+                reference.set(100, 132, true);
+            }
+
+            engine.step(1);
+            reference.step(next);
+            BitGrid tmp = reference;
+            reference = next;
+            next = tmp;
+            assertArrayEquals("generation " + g, reference.getWords(), engine.getGrid().getWords());
+        }
+    }
+
+    @Test
+    public void collectChanges_coversEveryFlippedCell() {
+        LifeEngine engine = new LifeEngine(130, 130);
+        DirtyTiles changes = new DirtyTiles(130, 130);
+        engine.collectChanges(changes);
+
+        // A blinker inside the bottom right tile
+        engine.setAlive(128, 128, true);
+        engine.setAlive(128, 129, true);
+        engine.setAlive(128, 127, true);
+        changes.clear();
+        engine.collectChanges(changes);
+        engine.step(1);
+        engine.collectChanges(changes);
+
+        assertTrue(changes.isDirty(2, 1));
+        assertTrue(changes.isDirty(2, 2));
+        assertFalse(changes.isDirty(0, 0));
+        assertEquals(4, engine.getChangedCellCount());
+    }
+
+    @Test
+    public void plane_letsGlidersLeaveAndForgetsThemWhenWrappingAgain() {
+        LifeEngine engine = new LifeEngine(10, 10);
+        engine.setWrapping(false);
+        engine.setAlive(0, 1, true);
+        engine.setAlive(1, 2, true);
+        engine.setAlive(2, 0, true);
+        engine.setAlive(2, 1, true);
+        engine.setAlive(2, 2, true);
+
+        // Far enough for the glider to be well off the board, where a torus would bring it back
+        engine.step(60);
+        assertEquals(0, engine.getPopulation());
+        assertEquals(5, engine.getTotalPopulation());
+
+        engine.setWrapping(true);
+        engine.step(60);
+        assertEquals(0, engine.getTotalPopulation());
+    }
+
+    @Test
+    public void jump_onThePlaneKeepsCellsOffTheBoard() {
+        LifeEngine stepped = new LifeEngine(10, 10);
+        LifeEngine jumped = new LifeEngine(10, 10);
+        for (LifeEngine engine : new LifeEngine[]{stepped, jumped}) {
+            engine.setWrapping(false);
+            // A glider heading off the board and a block staying on it
+            engine.setAlive(0, 1, true);
+            engine.setAlive(1, 2, true);
+            engine.setAlive(2, 0, true);
+            engine.setAlive(2, 1, true);
+            engine.setAlive(2, 2, true);
+            engine.setAlive(7, 0, true);
+            engine.setAlive(7, 1, true);
+            engine.setAlive(8, 0, true);
+            engine.setAlive(8, 1, true);
+        }
+
+        // Far enough that the glider is only on the plane
+        stepped.step(100);
+        jumped.jump(new HashLife(), 100);
+
+        assertEquals(9, jumped.getTotalPopulation());
+        assertEquals(4, jumped.getPopulation());
+        assertEquals(stepped.getHash(), jumped.getHash());
+        assertArrayEquals(stepped.getGrid().getWords(), jumped.getGrid().getWords());
+        assertEquals(100, jumped.getGeneration());
+    }
+
+    @Test
+    public void parallelStep_matchesSingleThreadedStep() {
+        Random random = new Random(9);
+        boolean[][] start = new boolean[300][200];
+        for (int row = 0; row < 300; row++)
+            for (int col = 0; col < 200; col++)
+                start[row][col] = random.nextInt(3) == 0;
+
+        LifeEngine single = new LifeEngine(300, 200);
+        single.load(start);
+        LifeEngine parallel = new LifeEngine(300, 200);
+        parallel.load(start);
+        parallel.setParallelism(4);
+
+        try {
+            for (int g = 0; g < 50; g++) {
+                single.step(1);
+                parallel.step(1);
+                assertEquals(single.getChangedCellCount(), parallel.getChangedCellCount());
+            }
+            assertArrayEquals(single.getGrid().getWords(), parallel.getGrid().getWords());
+        } finally {
+            parallel.release();
+        }
+    }
+
+    @Test
+    public void parallelism_isKeptInRange() {
+        LifeEngine engine = new LifeEngine(10, 10);
+        try {
+            engine.setParallelism(100000);
+            assertEquals(LifeEngine.MAX_PARALLELISM, engine.getParallelism());
+            engine.setParallelism(-3);
+            assertEquals(1, engine.getParallelism());
+        } finally {
+            engine.release();
+        }
+    }
+
+    @Test
+    public void cycles_areFoundOnceTheBoardRepeats() {
+        LifeEngine engine = new LifeEngine(64, 64);
+        engine.setAlive(10, 10, true);
+        engine.setAlive(10, 11, true);
+        engine.setAlive(10, 12, true);
+        // A block well away from the blinker
+        engine.setAlive(40, 40, true);
+        engine.setAlive(40, 41, true);
+        engine.setAlive(41, 40, true);
+        engine.setAlive(41, 41, true);
+
+        engine.step(1);
+        assertEquals(CycleDetector.ACTIVE, engine.getCycleState());
+        engine.step(2);
+        assertEquals(CycleDetector.PERIODIC, engine.getCycleState());
+        assertEquals(2, engine.getPeriod());
+        assertEquals(7, engine.getPopulation());
+
+        // Killing the blinker leaves the block, which never changes
+        engine.setAlive(9, 11, false);
+        engine.setAlive(10, 11, false);
+        engine.setAlive(11, 11, false);
+        engine.step(2);
+        assertEquals(CycleDetector.STABLE, engine.getCycleState());
+
+        engine.clear();
+        engine.setAlive(5, 5, true);
+        engine.step(1);
+        assertEquals(CycleDetector.EXTINCT, engine.getCycleState());
+    }
+
+    @Test
+    public void hash_dependsOnlyOnTheLiveCells() {
+        boolean[][] start = new boolean[30][70];
+        Random random = new Random(3);
+        for (int r = 0; r < 30; r++)
+            for (int c = 0; c < 70; c++)
+                start[r][c] = random.nextBoolean();
+
+        LifeEngine stepped = new LifeEngine(30, 70);
+        stepped.load(start);
+        stepped.step(9);
+
+        boolean[][] end = new boolean[30][70];
+        stepped.copyTo(end);
+        LifeEngine loaded = new LifeEngine(30, 70);
+        loaded.load(end);
+        assertEquals(loaded.getHash(), stepped.getHash());
+        assertEquals(loaded.getPopulation(), stepped.getPopulation());
+    }
+
+    @Test
+    public void fastForward_skipsWholePeriods() {
+        LifeEngine engine = new LifeEngine(8, 8);
+        engine.setAlive(2, 1, true);
+        engine.setAlive(2, 2, true);
+        engine.setAlive(2, 3, true);
+        assertFalse(engine.fastForward(1000001));
+
+        engine.step(3);
+        assertTrue(engine.fastForward(1000001));
+        assertEquals(1000004, engine.getGeneration());
+        // An even number of generations after the start, so back to horizontal
+        assertTrue(engine.isAlive(2, 1));
+        assertFalse(engine.isAlive(1, 2));
+        assertEquals(CycleDetector.PERIODIC, engine.getCycleState());
+    }
+
+    @Test
+    public void stepBack_undoesStepsAndEdits() {
+        boolean[][] start = new boolean[50][100];
+        Random random = new Random(11);
+        for (int r = 0; r < 50; r++)
+            for (int c = 0; c < 100; c++)
+                start[r][c] = random.nextBoolean();
+
+        LifeEngine engine = new LifeEngine(50, 100);
+        engine.setHistoryBudget(1 << 20);
+        engine.load(start);
+        engine.step(5);
+        boolean[][] fifth = new boolean[50][100];
+        engine.copyTo(fifth);
+        long hash = engine.getHash();
+        engine.step(5);
+
+        engine.setAlive(0, 0, !engine.isAlive(0, 0));
+        // Back past the edit to the generation before it
+        for (int i = 0; i < 5; i++)
+            assertTrue(engine.stepBack());
+        boolean[][] end = new boolean[50][100];
+        engine.copyTo(end);
+        assertArrayEquals(fifth, end);
+        assertEquals(hash, engine.getHash());
+        assertEquals(5, engine.getGeneration());
+
+        assertTrue(engine.seek(0));
+        engine.copyTo(end);
+        assertArrayEquals(start, end);
+        assertFalse(engine.stepBack());
+        // The edited tenth generation is still there to go forward to
+        assertEquals(10, engine.getHistoryEnd());
+    }
+}
@@ -0,0 +1,167 @@
+package com.matthewfortier.gameoflife;
+
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.channels.Channels;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MappedGridTest {
+
+    // Qualified, since Rule here is the game's rule
+    @org.junit.Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void step_matchesBitGrid() throws Exception {
+        Random random = new Random(13);
+        // Odd sizes so rows wrap across word boundaries
+        BitGrid grid = new BitGrid(37, 150);
+        MappedGrid store = MappedGrid.create(mFolder.newFile(), 37, 150);
+        for (int i = 0; i < 37; i++) {
+            for (int j = 0; j < 150; j++) {
+                boolean alive = random.nextInt(3) == 0;
+                grid.set(i, j, alive);
+                store.set(i, j, alive);
+            }
+        }
+
+        BitGrid next = new BitGrid(37, 150);
+        for (int g = 0; g < 30; g++) {
+            Rule rule = g % 2 == 0 ? Rule.CONWAY : Rule.HIGHLIFE;
+            grid.step(next, rule);
+            grid.copyFrom(next);
+            store.step(rule);
+        }
+
+        assertEquals(30, store.getGeneration());
+        assertEquals(grid.getPopulation(), store.getPopulation());
+        for (int i = 0; i < 37; i++)
+            for (int j = 0; j < 150; j++)
+                assertEquals(grid.get(i, j), store.get(i, j));
+        store.close();
+    }
+
+    @Test
+    public void open_keepsTheBoardAndHeader() throws Exception {
+        File file = mFolder.newFile();
+        MappedGrid store = MappedGrid.create(file, 70, 70);
+        store.set(0, 1, true);
+        store.set(69, 69, true);
+        store.setRule(Rule.DAY_AND_NIGHT);
+        store.setGeneration(12);
+        store.close();
+
+        MappedGrid reopened = MappedGrid.open(file);
+        assertEquals(70, reopened.getRows());
+        assertEquals(70, reopened.getCols());
+        assertEquals(2, reopened.getPopulation());
+        assertTrue(reopened.get(0, 1));
+        assertTrue(reopened.get(69, 69));
+        assertEquals(Rule.DAY_AND_NIGHT, reopened.getRule());
+        assertEquals(12, reopened.getGeneration());
+        reopened.close();
+    }
+
+    @Test
+    public void engine_showsAWindowOntoTheStore() throws Exception {
+        // A glider heading down and right, which leaves the 10x10 window but not the store
+        MappedGrid store = MappedGrid.create(mFolder.newFile(), 100, 130);
+        LifeEngine engine = new LifeEngine(10, 10);
+        engine.setStore(store);
+        engine.setAlive(0, 1, true);
+        engine.setAlive(1, 2, true);
+        engine.setAlive(2, 0, true);
+        engine.setAlive(2, 1, true);
+        engine.setAlive(2, 2, true);
+
+        engine.step(4);
+        assertEquals(5, engine.getPopulation());
+        assertTrue(engine.isAlive(3, 3));
+        assertTrue(engine.getDirtyTiles().isDirty(0, 0));
+
+        engine.step(40);
+        assertEquals(0, engine.getPopulation());
+        assertEquals(5, engine.getTotalPopulation());
+        assertTrue(store.get(13, 13));
+        engine.release();
+    }
+
+    @Test
+    public void jump_stepsTheWholeStore() throws Exception {
+        MappedGrid store = MappedGrid.create(mFolder.newFile(), 100, 130);
+        LifeEngine engine = new LifeEngine(10, 10);
+        engine.setStore(store);
+        engine.setAlive(0, 1, true);
+        engine.setAlive(1, 2, true);
+        engine.setAlive(2, 0, true);
+        engine.setAlive(2, 1, true);
+        engine.setAlive(2, 2, true);
+
+        // The glider ends up outside the window, 11 cells down and right
+        engine.jump(new HashLife(), 44);
+        assertEquals(44, engine.getGeneration());
+        assertEquals(44, store.getGeneration());
+        assertEquals(5, store.getPopulation());
+        assertTrue(store.get(11, 12));
+        assertTrue(store.get(12, 13));
+        assertTrue(store.get(13, 11));
+        assertTrue(store.get(13, 12));
+        assertTrue(store.get(13, 13));
+        engine.release();
+    }
+
+    @Test
+    public void setOrigin_movesTheWindowAndItsEdits() throws Exception {
+        MappedGrid store = MappedGrid.create(mFolder.newFile(), 100, 130);
+        store.set(50, 60, true);
+        store.set(2, 3, true);
+        LifeEngine engine = new LifeEngine(10, 10);
+        engine.setStore(store);
+        assertEquals(1, engine.getPopulation());
+
+        engine.setOrigin(45, 55);
+        assertTrue(engine.isAlive(5, 5));
+        engine.setAlive(0, 0, true);
+        assertTrue(store.get(45, 55));
+
+        // Above and left of the store wraps round to its far edges
+        engine.setOrigin(-5, -5);
+        assertEquals(-5, engine.getOriginRow());
+        assertEquals(-5, engine.getOriginCol());
+        assertTrue(engine.isAlive(7, 8));
+        assertEquals(1, engine.getPopulation());
+        engine.release();
+    }
+
+    @Test
+    public void patternFile_readsIntoAMappedGrid() throws Exception {
+        BitGrid grid = new BitGrid(40, 90);
+        grid.set(0, 0, true);
+        grid.set(20, 64, true);
+        grid.set(39, 89, true);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new PatternFile(grid, Rule.SEEDS, 3, 0, 0).write(Channels.newChannel(out));
+
+        PatternFile pattern = PatternFile.read(new ByteArrayInputStream(out.toByteArray()),
+                MappedGrid.factoryFor(mFolder.newFile()));
+        MappedGrid store = (MappedGrid) pattern.getCells();
+        assertEquals(3, store.getPopulation());
+        assertTrue(store.get(20, 64));
+        assertTrue(store.get(39, 89));
+
+        BitGrid window = new BitGrid(30, 80);
+        store.copyViewport(window, 20, 64);
+        assertTrue(window.get(0, 0));
+        assertTrue(window.get(19, 25));
+        // Wraps past the bottom right corner
+        assertTrue(window.get(20, 26));
+        assertEquals(3, window.getPopulation());
+        store.close();
+    }
+}
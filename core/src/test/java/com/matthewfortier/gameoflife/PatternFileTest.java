@@ -0,0 +1,103 @@
+package com.matthewfortier.gameoflife;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PatternFileTest {
+
+    @Test
+    public void roundTrip_keepsEverythingForBothBodies() throws IOException {
+        Random random = new Random(3);
+        for (int cols : new int[]{1, 63, 64, 65, 200}) {
+            // A sparse board is written as runs and a dense one packed
+            for (int density : new int[]{50, 2}) {
+                BitGrid grid = new BitGrid(37, cols);
+                for (int i = 0; i < 37; i++)
+                    for (int j = 0; j < cols; j++)
+                        grid.set(i, j, random.nextInt(density) == 0);
+
+                PatternFile read = roundTrip(new PatternFile(grid, Rule.HIGHLIFE, 12345678901L, 0xFF00FF00, 7));
+                assertArrayEquals(grid.getWords(), read.getGrid().getWords());
+                assertEquals(37, read.getGrid().getRows());
+                assertEquals(cols, read.getGrid().getCols());
+                assertEquals(Rule.HIGHLIFE, read.getRule());
+                assertEquals(12345678901L, read.getGeneration());
+                assertEquals(0xFF00FF00, read.getAliveColor());
+                assertEquals(7, read.getDeadColor());
+            }
+        }
+    }
+
+    @Test
+    public void runs_areMuchSmallerThanSerializedArrays() throws IOException {
+        BitGrid grid = new BitGrid(1000, 1000);
+        grid.set(500, 500, true);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new PatternFile(grid, Rule.CONWAY, 0, 0, 0).write(Channels.newChannel(out));
+        assertTrue(out.size() < 100);
+    }
+
+    @Test
+    public void legacyFiles_stillLoad() throws IOException {
+        // Laid out as the old SaveActivity wrote it: 4 columns of 3 rows, alive at row 1, col 3
+        boolean[][] data = new boolean[4][3];
+        data[3][1] = true;
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(out);
+        oos.writeObject(data);
+        oos.close();
+        PatternFile read = PatternFile.read(new ByteArrayInputStream(out.toByteArray()));
+        BitGrid grid = read.getGrid();
+        assertEquals(3, grid.getRows());
+        assertEquals(4, grid.getCols());
+        assertTrue(grid.get(1, 3));
+        assertEquals(1, grid.getPopulation());
+        assertEquals(Rule.CONWAY, read.getRule());
+
+        out = new ByteArrayOutputStream();
+        oos = new ObjectOutputStream(out);
+        oos.writeObject(data);
+        oos.writeObject("B36/S23");
+        oos.close();
+        read = PatternFile.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(Rule.HIGHLIFE, read.getRule());
+    }
+
+    @Test(expected = IOException.class)
+    public void legacyReader_refusesOtherClasses() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(out);
+        oos.writeObject(new ArrayList<Integer>(Arrays.asList(1, 2, 3)));
+        oos.close();
+        PatternFile.read(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedFiles_fail() throws IOException {
+        BitGrid grid = new BitGrid(64, 64);
+        grid.set(3, 3, true);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new PatternFile(grid, Rule.CONWAY, 0, 0, 0).write(Channels.newChannel(out));
+
+        byte[] bytes = Arrays.copyOf(out.toByteArray(), out.size() - 1);
+        PatternFile.read(new ByteArrayInputStream(bytes));
+    }
+
+    private static PatternFile roundTrip(PatternFile pattern) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        pattern.write(Channels.newChannel(out));
+        return PatternFile.read(new ByteArrayInputStream(out.toByteArray()));
+    }
+}
@@ -0,0 +1,71 @@
+package com.matthewfortier.gameoflife;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PopulationPyramidTest {
+
+    @Test
+    public void load_matchesCellsAddedOneAtATime() {
+        Random random = new Random(3);
+        BitGrid grid = new BitGrid(37, 150);
+        PopulationPyramid added = new PopulationPyramid(37, 150);
+        for (int row = 0; row < 37; row++) {
+            for (int col = 0; col < 150; col++) {
+                if (random.nextInt(3) != 0) continue;
+                grid.set(row, col, true);
+                added.add(row, col, 1);
+            }
+        }
+        PopulationPyramid loaded = new PopulationPyramid(37, 150);
+        loaded.load(grid);
+
+        assertEquals(8, loaded.getLevels());
+        for (int level = 1; level <= loaded.getLevels(); level++)
+            for (int r = 0; r < loaded.getRows(level); r++)
+                for (int c = 0; c < loaded.getCols(level); c++)
+                    assertEquals(added.getCount(level, r, c), loaded.getCount(level, r, c));
+        int top = loaded.getLevels();
+        assertEquals(1, loaded.getRows(top));
+        assertEquals(1, loaded.getCols(top));
+        assertEquals(grid.getPopulation(), loaded.getCount(top, 0, 0));
+    }
+
+    @Test
+    public void fullSquares_fitEveryLevel() {
+        BitGrid grid = new BitGrid(512, 512);
+        for (int row = 0; row < 512; row++)
+            for (int col = 0; col < 512; col++)
+                grid.set(row, col, true);
+        PopulationPyramid pyramid = new PopulationPyramid(512, 512);
+        pyramid.load(grid);
+
+        for (int level = 1; level <= pyramid.getLevels(); level++)
+            assertEquals(1 << (2 * level), pyramid.getCount(level, 0, 0));
+        pyramid.add(511, 511, -1);
+        assertEquals(63, pyramid.getCount(3, 63, 63));
+        assertEquals((1 << 14) - 1, pyramid.getCount(7, 3, 3));
+    }
+
+    @Test
+    public void edgeSquares_areCutShort() {
+        PopulationPyramid pyramid = new PopulationPyramid(5, 7);
+        assertEquals(3, pyramid.getRows(1));
+        assertEquals(4, pyramid.getCols(1));
+        assertEquals(4, pyramid.getArea(1, 0, 0));
+        assertEquals(2, pyramid.getArea(1, 0, 3));
+        assertEquals(1, pyramid.getArea(1, 2, 3));
+        assertEquals(35, pyramid.getArea(pyramid.getLevels(), 0, 0));
+
+        pyramid.add(4, 6, 1);
+        pyramid.add(4, 6, -1);
+        pyramid.add(4, 6, 1);
+        assertEquals(1, pyramid.getCount(1, 2, 3));
+        assertEquals(1, pyramid.getCount(2, 1, 1));
+        pyramid.clear();
+        assertEquals(0, pyramid.getCount(1, 2, 3));
+    }
+}
@@ -0,0 +1,43 @@
+package com.matthewfortier.gameoflife;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RuleTest {
+
+    @Test
+    public void parse_readsBothNotations() {
+        assertEquals(Rule.CONWAY, Rule.parse("23/3"));
+        assertEquals(Rule.CONWAY, Rule.parse("s23/b3"));
+        assertEquals(Rule.HIGHLIFE, Rule.parse(" b36/s23 "));
+        assertTrue(Rule.parse("B3/S23").isConway());
+        assertFalse(Rule.HIGHLIFE.isConway());
+        assertEquals("B3678/S34678", Rule.DAY_AND_NIGHT.toString());
+        assertEquals("B2/S", Rule.SEEDS.toString());
+    }
+
+    @Test
+    public void lookups_agree() {
+        for (int bits = 0; bits < 512; bits++) {
+            boolean alive = (bits & 16) != 0;
+            int count = Integer.bitCount(bits & ~16);
+            assertEquals(Rule.HIGHLIFE.next(alive, count), Rule.HIGHLIFE.next(bits));
+        }
+        assertTrue(Rule.HIGHLIFE.next(false, 6));
+        assertFalse(Rule.CONWAY.next(false, 6));
+        assertFalse(Rule.SEEDS.next(true, 2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parse_rejectsBirthOnZero() {
+        Rule.parse("B03/S23");
+    }
+
+    @Test
+    public void parseOrDefault_fallsBackToConway() {
+        assertEquals(Rule.CONWAY, Rule.parseOrDefault(null));
+        assertEquals(Rule.CONWAY, Rule.parseOrDefault("B9/S"));
+        assertEquals(Rule.SEEDS, Rule.parseOrDefault("B2/S"));
+    }
+}
@@ -0,0 +1,96 @@
+package com.matthewfortier.gameoflife;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class SimulationSchedulerTest {
+
+    @Test
+    public void step_publishesSnapshotOfEditedBoard() throws Exception {
+        LifeEngine engine = new LifeEngine(5, 5);
+        final CountDownLatch latch = new CountDownLatch(1);
+        final GridSnapshot[] last = new GridSnapshot[1];
+
+        SimulationScheduler scheduler = new SimulationScheduler(engine, 1000, new SimulationScheduler.Listener() {
+            @Override
+            public void onSnapshot(GridSnapshot snapshot) {
+                if (snapshot.getGeneration() == 1) {
+                    last[0] = snapshot;
+                    latch.countDown();
+                }
+            }
+        });
+
+        // A horizontal blinker turns vertical after one step
+        scheduler.edit(new SimulationScheduler.Edit() {
+            @Override
+            public void apply(LifeEngine engine) {
+                engine.setAlive(2, 1, true);
+                engine.setAlive(2, 2, true);
+                engine.setAlive(2, 3, true);
+            }
+        });
+        scheduler.step(1);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(last[0].getGrid().get(1, 2));
+        assertTrue(last[0].getGrid().get(3, 2));
+        assertEquals(3, last[0].getPopulation());
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void fastMode_skipsIntermediateGenerations() throws Exception {
+        LifeEngine engine = new LifeEngine(8, 8);
+        final CountDownLatch latch = new CountDownLatch(1);
+        final int[] published = new int[1];
+
+        SimulationScheduler scheduler = new SimulationScheduler(engine, 0, new SimulationScheduler.Listener() {
+            @Override
+            public void onSnapshot(GridSnapshot snapshot) {
+                published[0]++;
+                if (snapshot.getGeneration() >= 10000)
+                    latch.countDown();
+            }
+        });
+        scheduler.start();
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        scheduler.shutdown();
+        assertTrue(published[0] < 10000);
+    }
+
+    @Test
+    public void autoStop_stopsOnceTheBoardRepeats() throws Exception {
+        LifeEngine engine = new LifeEngine(8, 8);
+        engine.setAlive(2, 1, true);
+        engine.setAlive(2, 2, true);
+        engine.setAlive(2, 3, true);
+        final CountDownLatch latch = new CountDownLatch(1);
+        final GridSnapshot[] last = new GridSnapshot[1];
+
+        SimulationScheduler scheduler = new SimulationScheduler(engine, 0, new SimulationScheduler.Listener() {
+            @Override
+            public void onSnapshot(GridSnapshot snapshot) {
+                if (snapshot.getCycleState() != CycleDetector.ACTIVE) {
+                    last[0] = snapshot;
+                    latch.countDown();
+                }
+            }
+        });
+        scheduler.setAutoStop(true);
+        scheduler.start();
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(CycleDetector.PERIODIC, last[0].getCycleState());
+        assertEquals(2, last[0].getPeriod());
+        // The blinker first repeats two generations after its first
+        assertEquals(3, last[0].getGeneration());
+        assertFalse(scheduler.isRunning());
+        scheduler.shutdown();
+    }
+}
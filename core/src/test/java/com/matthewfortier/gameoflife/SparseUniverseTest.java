@@ -0,0 +1,74 @@
+package com.matthewfortier.gameoflife;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class SparseUniverseTest {
+
+    @Test
+    public void step_matchesTheTorusAwayFromTheEdges() {
+        Random random = new Random(11);
+        LifeEngine engine = new LifeEngine(120, 120);
+        SparseUniverse universe = new SparseUniverse();
+        for (int row = 50; row < 70; row++) {
+            for (int col = 50; col < 70; col++) {
+                if (random.nextBoolean()) {
+                    engine.setAlive(row, col, true);
+                    universe.set(col, row, true);
+                }
+            }
+        }
+
+        for (int g = 0; g < 40; g++) {
+            engine.step(1);
+            universe.step();
+        }
+
+        assertEquals(engine.getPopulation(), universe.getPopulation());
+        for (int row = 0; row < 120; row++)
+            for (int col = 0; col < 120; col++)
+                assertEquals(engine.isAlive(row, col), universe.get(col, row));
+    }
+
+    @Test
+    public void glider_travelsPastNegativeCoordinates() {
+        SparseUniverse universe = new SparseUniverse();
+        // Heading up and left
+        universe.set(0, 0, true);
+        universe.set(1, 0, true);
+        universe.set(2, 0, true);
+        universe.set(0, 1, true);
+        universe.set(1, 2, true);
+
+        for (int g = 0; g < 400; g++)
+            universe.step();
+
+        assertEquals(5, universe.getPopulation());
+        assertTrue(universe.get(-100, -100));
+        assertTrue(universe.get(-99, -100));
+        assertTrue(universe.get(-98, -100));
+    }
+
+    @Test
+    public void longSet_matchesHashSet() {
+        Random random = new Random(5);
+        LongSet set = new LongSet();
+        Set<Long> expected = new HashSet<Long>();
+        for (int i = 0; i < 20000; i++) {
+            long key = random.nextInt(500) - 250;
+            if (random.nextBoolean())
+                assertEquals(expected.add(key), set.add(key));
+            else
+                assertEquals(expected.remove(key), set.remove(key));
+        }
+
+        assertEquals(expected.size(), set.size());
+        for (long key = -260; key < 260; key++)
+            assertEquals(expected.contains(key), set.contains(key));
+    }
+}
@@ -0,0 +1,53 @@
+package com.matthewfortier.gameoflife;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+public class StepMetricsTest {
+
+    @Test
+    public void summarize_usesOnlyTheNewestSamples() {
+        StepMetrics metrics = new StepMetrics(100);
+        // The first 50 are slow and should have been overwritten
+        for (int g = 1; g <= 150; g++)
+            metrics.recordStep(g * 1000000L, g <= 50 ? 999 : g - 50, g, 10 * g, g % 7);
+        metrics.recordFrame(0, 4);
+        metrics.recordFrame(1, 8);
+        metrics.recordDroppedFrames(2);
+        metrics.recordDroppedFrames(1);
+
+        StepMetrics.Summary summary = metrics.summarize();
+        assertEquals(50, summary.getStepP50());
+        assertEquals(99, summary.getStepP99());
+        // A generation every millisecond
+        assertEquals(1000, summary.getGenerationsPerSecond(), 1e-9);
+        assertEquals(150, summary.getGeneration());
+        assertEquals(1500, summary.getPopulation());
+        assertEquals(150 % 7, summary.getChanged());
+        assertEquals(4, summary.getRenderP50());
+        assertEquals(8, summary.getRenderP99());
+        assertEquals(3, summary.getDroppedFrames());
+    }
+
+    @Test
+    public void writeCsv_listsStepsThenFramesOldestFirst() throws Exception {
+        StepMetrics metrics = new StepMetrics(2);
+        metrics.recordStep(10, 1, 1, 5, 3);
+        metrics.recordStep(20, 2, 2, 6, 4);
+        metrics.recordStep(30, 3, 3, 7, 5);
+        metrics.recordFrame(40, 9);
+
+        StringWriter out = new StringWriter();
+        metrics.writeCsv(out);
+        assertEquals("kind,time_ns,duration_ns,generation,population,changed\n"
+                + "step,20,2,2,6,4\n"
+                + "step,30,3,3,7,5\n"
+                + "frame,40,9,,,\n", out.toString());
+
+        metrics.clear();
+        assertEquals(0, metrics.summarize().getStepP50());
+    }
+}
@@ -0,0 +1,84 @@
+package com.matthewfortier.gameoflife;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TextFormatTest {
+
+    // The Gosper glider gun, as published
+    private static final String GUN =
+            "#N Gosper glider gun\n"
+            + "#C The first known gun\n"
+            + "x = 36, y = 9, rule = B3/S23\n"
+            + "24bo$22bobo$12b2o6b2o12b2o$11bo3bo4b2o12b2o$2o8bo5bo3b2o$2o8bo3bob2o4b\n"
+            + "obo$10bo5bo7bo$11bo3bo$12b2o!\n";
+
+    @Test
+    public void rle_readsAPublishedPattern() throws IOException {
+        PatternFile pattern = PatternFile.read(stream(GUN));
+        BitGrid grid = pattern.getGrid();
+        assertEquals(9, grid.getRows());
+        assertEquals(36, grid.getCols());
+        assertEquals(36, grid.getPopulation());
+        assertTrue(grid.get(0, 24));
+        assertTrue(grid.get(4, 0));
+        assertTrue(grid.get(8, 13));
+        assertEquals(Rule.CONWAY, pattern.getRule());
+    }
+
+    @Test
+    public void rle_roundTripsWithItsRule() throws IOException {
+        BitGrid grid = random(40, 90, 5);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RleFormat.write(grid, Rule.HIGHLIFE, out);
+
+        PatternFile read = PatternFile.read(new ByteArrayInputStream(out.toByteArray()));
+        assertArrayEquals(grid.getWords(), read.getGrid().getWords());
+        assertEquals(Rule.HIGHLIFE, read.getRule());
+        for (String line : out.toString("UTF-8").split("\n"))
+            assertTrue(line.length() <= 70);
+    }
+
+    @Test
+    public void cells_roundTripsAndKeepsBlankRows() throws IOException {
+        PatternFile glider = PatternFile.read(stream("!Name: Glider\n.O\n..O\nOOO\n\n"));
+        assertEquals(4, glider.getGrid().getRows());
+        assertEquals(3, glider.getGrid().getCols());
+        assertEquals(5, glider.getGrid().getPopulation());
+        assertTrue(glider.getGrid().get(0, 1));
+
+        BitGrid grid = random(17, 33, 3);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CellsFormat.write(grid, "random", out);
+        BitGrid read = PatternFile.read(new ByteArrayInputStream(out.toByteArray())).getGrid();
+
+        // Trailing dead columns and rows are not written, so compare cell by cell
+        for (int i = 0; i < 17; i++)
+            for (int j = 0; j < 33; j++)
+                assertEquals(grid.get(i, j), i < read.getRows() && j < read.getCols() && read.get(i, j));
+    }
+
+    @Test(expected = IOException.class)
+    public void rle_withoutHeaderFails() throws IOException {
+        RleFormat.read(stream("#C nothing here\nbo$obo!"));
+    }
+
+    private static ByteArrayInputStream stream(String text) throws IOException {
+        return new ByteArrayInputStream(text.getBytes("UTF-8"));
+    }
+
+    private static BitGrid random(int rows, int cols, long seed) {
+        Random random = new Random(seed);
+        BitGrid grid = new BitGrid(rows, cols);
+        for (int i = 0; i < rows; i++)
+            for (int j = 0; j < cols; j++)
+                grid.set(i, j, random.nextInt(4) == 0);
+        return grid;
+    }
+}
@@ -0,0 +1,91 @@
+package com.matthewfortier.gameoflife;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ViewportTest {
+
+    private static final float DELTA = 1e-3f;
+
+    @Test
+    public void fit_centersTheBoardWithSquareCells() {
+        Viewport viewport = new Viewport();
+        viewport.setBoard(50, 100);
+        viewport.setView(1000, 800);
+
+        assertEquals(10, viewport.getScale(), DELTA);
+        assertEquals(0, viewport.getLeft(), DELTA);
+        // 80 rows fit, so the 50 are centered
+        assertEquals(-15, viewport.getTop(), DELTA);
+        assertEquals(0, viewport.getFirstRow());
+        assertEquals(50, viewport.getEndRow());
+        assertEquals(100, viewport.getEndCol());
+        assertEquals(0, viewport.getLevel());
+    }
+
+    @Test
+    public void zoom_keepsTheFocusOverTheSameCell() {
+        Viewport viewport = new Viewport();
+        viewport.setBoard(100, 100);
+        viewport.setView(500, 500);
+
+        float col = viewport.toCol(200);
+        float row = viewport.toRow(300);
+        viewport.zoom(4, 200, 300);
+        assertFalse(viewport.isFit());
+        assertEquals(20, viewport.getScale(), DELTA);
+        assertEquals(200, viewport.toX(col), DELTA);
+        assertEquals(300, viewport.toY(row), DELTA);
+        assertEquals(25, viewport.getEndCol() - viewport.getFirstCol());
+
+        // Never past a whole board or the largest cells
+        viewport.zoom(1000, 0, 0);
+        assertEquals(Viewport.MAX_CELL_SIZE, viewport.getScale(), DELTA);
+        viewport.zoom(0.001f, 0, 0);
+        assertTrue(viewport.isFit());
+        assertEquals(5, viewport.getScale(), DELTA);
+    }
+
+    @Test
+    public void pan_stopsAtTheEdges() {
+        Viewport viewport = new Viewport();
+        viewport.setBoard(100, 100);
+        viewport.setView(500, 500);
+        viewport.zoom(2, 0, 0);
+
+        viewport.pan(-1000, 100);
+        assertEquals(0, viewport.getLeft(), DELTA);
+        assertEquals(10, viewport.getTop(), DELTA);
+        viewport.pan(100000, 100000);
+        assertEquals(50, viewport.getLeft(), DELTA);
+        assertEquals(50, viewport.getTop(), DELTA);
+    }
+
+    @Test
+    public void moveOrigin_keepsTheSameCellsInView() {
+        Viewport viewport = new Viewport();
+        viewport.setBoard(100, 100);
+        viewport.setView(500, 500);
+        viewport.zoom(5, 0, 0);
+        viewport.pan(0, 500);
+
+        // The window moved 20 rows down its board, so row 20 of it is now row 0
+        viewport.moveOrigin(20, 0);
+        assertEquals(0, viewport.getTop(), DELTA);
+        assertEquals(0, viewport.getFirstRow());
+    }
+
+    @Test
+    public void level_growsAsCellsShrinkBelowAPixel() {
+        Viewport viewport = new Viewport();
+        viewport.setBoard(4096, 4096);
+        viewport.setView(1000, 1000);
+        assertEquals(3, viewport.getLevel());
+
+        viewport.zoom(2, 0, 0);
+        assertEquals(2, viewport.getLevel());
+        viewport.zoom(8, 0, 0);
+        assertEquals(0, viewport.getLevel());
+    }
+}